@@ -27,6 +27,7 @@ export const bundleSrc = `${typescriptDir}/front_end/src/index.js`;
 // for letting Spring Boot back-end serve the page/JavaScript:
 export const bundleDir = `${backEndResourcesDir}/static`;
 export const bundleFile = `${bundleDir}/bundle.js`;
+export const assetsDir = `${bundleDir}/assets`;
 
 export const buildScript = `${rootDir}/build.sh`;
 export const tsc = `${buildBinariesDir}/tsc`;
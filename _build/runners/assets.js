@@ -0,0 +1,63 @@
+import { timeAsync } from "../util/build_lib.js";
+import { createHash } from "node:crypto";
+import fs from "node:fs/promises";
+import pathLib from "node:path";
+import zlib from "node:zlib";
+import { promisify } from "node:util";
+
+const gzip = promisify(zlib.gzip);
+const brotliCompress = promisify(zlib.brotliCompress);
+
+const HASH_LENGTH = 16;
+
+// Moves the bundle to a content-hashed name in the assets directory, points the
+// HTML at it, and writes brotli and gzip variants next to every file. The back
+// end serves the assets directory as immutable, so a file's name must change
+// whenever its content does; the HTML keeps its name and is revalidated instead.
+export async function runAsync({ bundleFile, assetsDir, htmlFiles }, header) {
+  return await timeAsync(async () => {
+    process.stdout.write(`${header}: `);
+
+    const bundle = await fs.readFile(bundleFile, "utf8");
+    const hash = createHash("sha256").update(bundle).digest("hex").substring(0, HASH_LENGTH);
+    const bundleName = pathLib.basename(bundleFile);
+    const hashedName = bundleName.replace(/\.js$/, `.${hash}.js`);
+    const hashedFile = `${assetsDir}/${hashedName}`;
+
+    await fs.rm(assetsDir, { recursive: true, force: true });
+    await fs.mkdir(assetsDir, { recursive: true });
+    await fs.writeFile(
+      hashedFile,
+      bundle.replace(`sourceMappingURL=${bundleName}.map`, `sourceMappingURL=${hashedName}.map`),
+    );
+    await fs.rename(`${bundleFile}.map`, `${hashedFile}.map`);
+    await fs.rm(bundleFile);
+    process.stdout.write(".");
+
+    const assetPath = `${pathLib.basename(assetsDir)}/${hashedName}`;
+    await Promise.all(htmlFiles.map(async (htmlFile) => {
+      const html = await fs.readFile(htmlFile, "utf8");
+      await fs.writeFile(htmlFile, html.replaceAll(`"${bundleName}"`, `"${assetPath}"`));
+      process.stdout.write(".");
+    }));
+
+    await Promise.all([ hashedFile, `${hashedFile}.map`, ...htmlFiles ].map(precompressAsync));
+  });
+}
+
+async function precompressAsync(file) {
+  const content = await fs.readFile(file);
+  const [ gzipped, brotlied ] = await Promise.all([
+    gzip(content, { level: zlib.constants.Z_BEST_COMPRESSION }),
+    brotliCompress(content, {
+      params: {
+        [zlib.constants.BROTLI_PARAM_MODE]: zlib.constants.BROTLI_MODE_TEXT,
+        [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+        [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length,
+      },
+    }),
+  ]);
+  await fs.writeFile(`${file}.gz`, gzipped);
+  await fs.writeFile(`${file}.br`, brotlied);
+  process.stdout.write(".");
+}
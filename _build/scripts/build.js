@@ -10,6 +10,7 @@ import * as sh from "../util/sh.js";
 import childProcess from "node:child_process";
 import { pathToFile } from "../util/module_paths.js";
 import * as swc from "../runners/swc.js";
+import * as assets from "../runners/assets.js";
 
 shell.config.fatal = true;
 
@@ -131,6 +132,14 @@ build.incrementalTask("bundle", paths.bundleDependencies(), async () => {
 		process.stdout.write(".");
 	});
 
+	await assets.runAsync({
+		bundleFile: paths.bundleFile,
+		assetsDir: paths.assetsDir,
+		htmlFiles: paths.frontEndStaticFiles().map(file => {
+			return `${paths.bundleDir}/${rootRelativePath(paths.frontEndSrcDir, file)}`;
+		}),
+	}, "Hashing and precompressing assets");
+
 	function copyFrontEndFiles() {
 		paths.frontEndStaticFiles().forEach(file => {
 			const relativePath = rootRelativePath(paths.frontEndSrcDir, file);
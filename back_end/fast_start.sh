@@ -0,0 +1,52 @@
+#!/bin/sh
+# Builds and starts the back-end in fast-start mode: Spring AOT processing,
+# lazy initialization (the fast-start profile) and an AppCDS archive created
+# by a training run the first time this script is run.
+#
+# Pass --rebuild to rebuild the jar and regenerate the archive. The training
+# run answers with canned text and gives up after TRAINING_TIMEOUT seconds (120).
+# Other arguments are passed to the application.
+
+set -e
+cd "$(dirname "$0")"
+
+JAR=target/back_end-0.0.1-SNAPSHOT.jar
+ARCHIVE=target/back_end.jsa
+PORT=${SERVER_PORT:-8080}
+
+if [ "$1" = "--rebuild" ]; then
+	shift
+	rm -f "$ARCHIVE"
+	./mvnw -B -q -Pfast-start -DskipTests clean package
+elif [ ! -f "$JAR" ] || [ ! -d target/lib ]; then
+	./mvnw -B -q -Pfast-start -DskipTests package
+fi
+
+CLASSPATH="$JAR:$(ls target/lib/*.jar | tr '\n' ':')"
+JAVA_OPTS="-Dspring.aot.enabled=true -Dspring.profiles.active=fast-start -Dserver.port=$PORT"
+
+if [ ! -f "$ARCHIVE" ]; then
+	echo "Training run: generating $ARCHIVE..."
+	java -XX:ArchiveClassesAtExit="$ARCHIVE" $JAVA_OPTS -Dopenai.stubbed=true -Djournal.directory= -cp "$CLASSPATH" dev.ted.stream.ai_chronicles.AiChroniclesApplication &
+	PID=$!
+	DEADLINE=$(( $(date +%s) + ${TRAINING_TIMEOUT:-120} ))
+	until curl -sf -o /dev/null -H "Content-Type: application/json" -d '{"message":"training run"}' "http://localhost:$PORT/say"; do
+		if ! kill -0 $PID 2>/dev/null; then
+			echo "Training run exited before answering /say" >&2
+			rm -f "$ARCHIVE"
+			exit 1
+		fi
+		if [ "$(date +%s)" -ge "$DEADLINE" ]; then
+			echo "Training run didn't answer /say within ${TRAINING_TIMEOUT:-120}s" >&2
+			kill -TERM $PID
+			wait $PID || true
+			rm -f "$ARCHIVE"
+			exit 1
+		fi
+		sleep 0.2
+	done
+	kill -TERM $PID
+	wait $PID || true
+fi
+
+exec java -XX:SharedArchiveFile="$ARCHIVE" $JAVA_OPTS -cp "$CLASSPATH" dev.ted.stream.ai_chronicles.AiChroniclesApplication "$@"
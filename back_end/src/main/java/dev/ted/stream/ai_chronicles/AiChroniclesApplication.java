@@ -1,13 +1,19 @@
 package dev.ted.stream.ai_chronicles;
 
+import dev.ted.stream.ai_chronicles.application.WorldGenerationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class AiChroniclesApplication {
 
   public static void main(String[] args) {
-    SpringApplication.run(AiChroniclesApplication.class, args);
+    ConfigurableApplicationContext context = SpringApplication.run(AiChroniclesApplication.class, args);
+    // A world generation batch has finished by the time run() returns
+    if (context.getBeanProvider(WorldGenerationRunner.class).getIfAvailable() != null) {
+      System.exit(SpringApplication.exit(context));
+    }
   }
 
 }
@@ -1,10 +1,10 @@
 package dev.ted.stream.ai_chronicles;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class OutputListener<T> {
-  private final List<OutputTracker<T>> listeners = new ArrayList<>();
+  private final List<OutputTracker<T>> listeners = new CopyOnWriteArrayList<>();
 
   public void emit(T data) {
     listeners.forEach(
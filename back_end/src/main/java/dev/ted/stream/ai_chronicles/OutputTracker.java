@@ -1,10 +1,11 @@
 package dev.ted.stream.ai_chronicles;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class OutputTracker<T> {
-  private final List<T> output = new ArrayList<>();
+  private final List<T> output = Collections.synchronizedList(new ArrayList<>());
   private final OutputListener<T> outputListener;
 
   public OutputTracker(OutputListener<T> outputListener) {
@@ -16,7 +17,9 @@ public class OutputTracker<T> {
   }
 
   public List<T> output() {
-    return List.copyOf(output);
+    synchronized (output) {
+      return List.copyOf(output);
+    }
   }
 
   public void clear() {
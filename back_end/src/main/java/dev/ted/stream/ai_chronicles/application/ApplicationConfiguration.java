@@ -0,0 +1,207 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.infrastructure.CompletionCache;
+import dev.ted.stream.ai_chronicles.infrastructure.LocalCompletionCache;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.PartitionedCompletionCache;
+import dev.ted.stream.ai_chronicles.infrastructure.PromptPrefix;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@EnableScheduling
+public class ApplicationConfiguration {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationConfiguration.class);
+
+  // With spring.main.lazy-initialization (the fast-start profile), these are
+  // still created at startup so the first /say doesn't pay for them.
+  @Bean
+  static LazyInitializationExcludeFilter eagerSayPath() {
+    return LazyInitializationExcludeFilter.forBeanTypes(
+      SayController.class, SayChannelHandler.class, Sessions.class, UsageLedger.class, BrownoutController.class,
+      OpenAiClient.class, TranscriptJournal.class, TranscriptStore.class, CompletionCache.class,
+      LongTermMemory.class, SceneController.class, TurnEngine.class);
+  }
+
+  @Bean
+  public OpenAiClient openAiClient(@Value("${openai.api-key}") String apiKey,
+                                   @Value("${openai.stubbed}") boolean stubbed,
+                                   @Value("${prompt.prefix-version}") String prefixVersion,
+                                   CompletionCache completionCache) {
+    if (stubbed) {
+      LOGGER.warn("openai.stubbed is set; /say will return canned answers");
+      return OpenAiClient.createNull();
+    }
+    if (apiKey.isBlank()) {
+      throw new IllegalStateException("openai.api-key is not set: set OPENAI_API_KEY, "
+                                      + "or openai.stubbed=true for tests, benchmarks and training runs");
+    }
+    PromptPrefix prefix = PromptPrefix.fromResource(prefixVersion);
+    LOGGER.info("Prompt prefix {} (fingerprint {})", prefix.version(), prefix.fingerprint());
+    return OpenAiClient.create(apiKey, completionCache, prefix);
+  }
+
+  @Bean
+  public LocalCompletionCache localCompletionCache(@Value("${cache.max-entries}") int maxEntries) {
+    return new LocalCompletionCache(maxEntries);
+  }
+
+  @Bean
+  @Primary
+  public CompletionCache completionCache(@Value("${cache.mode}") String mode,
+                                         @Value("${cache.self-url}") String selfUrl,
+                                         @Value("${cache.nodes}") List<String> nodeUrls,
+                                         @Value("${cache.peer-timeout}") Duration peerTimeout,
+                                         @Value("${cache.peer-secret:}") String peerSecret,
+                                         LocalCompletionCache localCompletionCache) {
+    return switch (mode) {
+      case "none" -> CompletionCache.disabled();
+      case "local" -> localCompletionCache;
+      case "partitioned" -> PartitionedCompletionCache.create(selfUrl, nodeUrls, localCompletionCache, peerTimeout, peerSecret);
+      default -> throw new IllegalArgumentException("Unknown cache.mode: " + mode);
+    };
+  }
+
+  @Bean
+  public TranscriptJournal transcriptJournal(@Value("${journal.directory}") String directory) {
+    if (directory.isBlank()) {
+      LOGGER.warn("journal.directory is not set; sessions will not survive a restart");
+      return TranscriptJournal.createNull();
+    }
+    return TranscriptJournal.create(Path.of(directory));
+  }
+
+  @Bean
+  public UsageLedger usageLedger(@Value("${usage.session-budget-tokens}") long sessionBudgetTokens,
+                                 @Value("${usage.over-budget}") UsageBudget.OverBudget overBudget,
+                                 @Value("${usage.downgraded-max-tokens}") int downgradedMaxTokens,
+                                 @Value("${usage.max-sessions}") int maxSessions) {
+    return new UsageLedger(new UsageBudget(sessionBudgetTokens, overBudget, downgradedMaxTokens), maxSessions);
+  }
+
+  @Bean
+  public UsageEndpoint usageEndpoint(UsageLedger usageLedger) {
+    return new UsageEndpoint(usageLedger);
+  }
+
+  @Bean
+  public HttpPhasesEndpoint httpPhasesEndpoint(OpenAiClient openAiClient) {
+    return new HttpPhasesEndpoint(openAiClient.httpPhaseHistograms());
+  }
+
+  // Level 0 is full quality; each level below keeps the previous cuts and adds one.
+  @Bean
+  public BrownoutController brownoutController(@Value("${brownout.target-latency}") Duration targetLatency,
+                                               @Value("${brownout.recovery-ratio}") double recoveryRatio,
+                                               @Value("${brownout.window}") int window,
+                                               @Value("${brownout.max-tokens}") int maxTokens,
+                                               @Value("${brownout.history-depth}") int historyDepth,
+                                               @Value("${brownout.fast-model}") String fastModel) {
+    return new BrownoutController(targetLatency, recoveryRatio, window, List.of(
+      BrownoutController.Degradation.FULL_QUALITY,
+      new BrownoutController.Degradation(maxTokens, null, null),
+      new BrownoutController.Degradation(maxTokens, historyDepth, null),
+      new BrownoutController.Degradation(maxTokens, historyDepth, fastModel)));
+  }
+
+  @Bean
+  public BrownoutEndpoint brownoutEndpoint(BrownoutController brownoutController) {
+    return new BrownoutEndpoint(brownoutController);
+  }
+
+  @Bean
+  public TranscriptStore transcriptStore(@Value("${sessions.spill-directory}") String spillDirectory,
+                                         @Value("${sessions.compress-after}") Duration compressAfter,
+                                         @Value("${sessions.spill-after}") Duration spillAfter) {
+    if (spillDirectory.isBlank()) {
+      LOGGER.warn("sessions.spill-directory is not set; idle transcripts will stay in memory, compressed");
+      return TranscriptStore.createInMemory(compressAfter);
+    }
+    return TranscriptStore.create(Path.of(spillDirectory), compressAfter, spillAfter);
+  }
+
+  @Bean
+  public SessionStoreEndpoint sessionStoreEndpoint(TranscriptStore transcriptStore, OpenAiClient openAiClient) {
+    return new SessionStoreEndpoint(transcriptStore, openAiClient);
+  }
+
+  @Bean
+  public LongTermMemory longTermMemory(@Value("${memory.enabled}") boolean enabled,
+                                       @Value("${memory.recent-exchanges}") int recentExchanges,
+                                       @Value("${memory.top-k}") int topK,
+                                       @Value("${memory.max-sessions}") int maxSessions) {
+    if (!enabled) return LongTermMemory.disabled();
+    return LongTermMemory.create(recentExchanges, topK, maxSessions);
+  }
+
+  @Bean
+  public Sessions sessions(OpenAiClient openAiClient, TranscriptJournal transcriptJournal, UsageLedger usageLedger,
+                           BrownoutController brownoutController, TranscriptStore transcriptStore,
+                           LongTermMemory longTermMemory,
+                           @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+    return new Sessions(openAiClient, transcriptJournal, usageLedger, brownoutController, transcriptStore,
+      new SessionExecutor(taskExecutor), longTermMemory);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "scene.enabled", havingValue = "true")
+  public TurnEngine turnEngine(Sessions sessions, @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+    return new TurnEngine(sessions, taskExecutor);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "warmup.enabled", havingValue = "true")
+  public WarmUpRunner warmUpRunner(OpenAiClient openAiClient,
+                                   @Value("${warmup.iterations}") int iterations,
+                                   @Value("${warmup.connect-timeout}") Duration connectTimeout) {
+    return new WarmUpRunner(openAiClient, iterations, connectTimeout);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "warmup.enabled", havingValue = "true")
+  public WarmUpEndpoint warmUpEndpoint(WarmUpRunner warmUpRunner) {
+    return new WarmUpEndpoint(warmUpRunner);
+  }
+
+  @Bean
+  @Profile("worldgen")
+  @ConditionalOnProperty("worldgen.job-file")
+  public WorldGenerationRunner worldGenerationRunner(OpenAiClient openAiClient,
+                                                     @Value("${worldgen.job-file}") Path jobFile,
+                                                     @Value("${worldgen.output-file}") Path outputFile,
+                                                     @Value("${worldgen.parallelism}") int parallelism,
+                                                     @Value("${worldgen.requests-per-second}") double requestsPerSecond,
+                                                     @Value("${worldgen.job-timeout}") Duration jobTimeout) {
+    WorldGenerator worldGenerator = new WorldGenerator(openAiClient, parallelism, requestsPerSecond, jobTimeout);
+    return new WorldGenerationRunner(worldGenerator, jobFile, outputFile);
+  }
+
+  @Bean
+  public SayChannelHandler sayChannelHandler(Sessions sessions,
+                                             ObjectMapper objectMapper,
+                                             @Value("${channel.max-pending-says}") int maxPendingSays,
+                                             @Value("${channel.send-buffer-limit}") int sendBufferLimit,
+                                             @Value("${channel.send-time-limit}") Duration sendTimeLimit,
+                                             @Value("${say.timeout}") Duration sayTimeout,
+                                             @Value("${channel.stream-events}") boolean streamEvents) {
+    return new SayChannelHandler(sessions, objectMapper, maxPendingSays, sendBufferLimit, sendTimeLimit, sayTimeout,
+      streamEvents);
+  }
+}
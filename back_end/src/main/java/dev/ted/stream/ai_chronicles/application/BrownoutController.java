@@ -0,0 +1,126 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.OutputListener;
+import dev.ted.stream.ai_chronicles.OutputTracker;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+// Trades answer quality for speed while OpenAI is slow. It watches the p90 of
+// recent call latencies: over the target, it steps down one level (fewer
+// max_tokens, then less history, then a faster model); once p90 is well back
+// under the target, it steps up again. After every transition the window is
+// cleared, so each level is judged only on calls made at that level.
+public class BrownoutController {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrownoutController.class);
+  private static final double PERCENTILE = 0.9;
+
+  private final Duration target;
+  private final double recoveryRatio;
+  private final List<Degradation> levels;
+  private final long[] samples;
+  private final OutputListener<Transition> listener = new OutputListener<>();
+  private int sampleCount;
+  private int level;
+  private long degradations;
+  private long recoveries;
+  private Transition lastTransition;
+
+  public static BrownoutController disabled() {
+    return new BrownoutController(Duration.ofDays(1), 1.0, 1, List.of(Degradation.FULL_QUALITY));
+  }
+
+  // levels.get(0) is full quality; each following level is cheaper than the last
+  public BrownoutController(Duration target, double recoveryRatio, int window, List<Degradation> levels) {
+    if (levels.isEmpty()) throw new IllegalArgumentException("Brownout needs at least one level");
+    this.target = target;
+    this.recoveryRatio = recoveryRatio;
+    this.levels = List.copyOf(levels);
+    this.samples = new long[window];
+  }
+
+  public synchronized Degradation current() {
+    return levels.get(level);
+  }
+
+  public synchronized void record(Duration latency) {
+    if (levels.size() == 1) return;
+    samples[sampleCount % samples.length] = latency.toNanos();
+    sampleCount++;
+    if (sampleCount < samples.length) return;
+
+    Duration p90 = recentP90();
+    if (p90.compareTo(target) > 0 && level < levels.size() - 1) {
+      transition(level + 1, p90);
+    } else if (p90.toNanos() < target.toNanos() * recoveryRatio && level > 0) {
+      transition(level - 1, p90);
+    }
+  }
+
+  public synchronized Status status() {
+    return new Status(level, levels.get(level), target,
+      sampleCount == 0 ? Duration.ZERO : recentP90(), degradations, recoveries, lastTransition);
+  }
+
+  public OutputTracker<Transition> trackTransitions() {
+    return listener.createTracker();
+  }
+
+  private void transition(int newLevel, Duration p90) {
+    Transition transition = new Transition(Instant.now(), level, newLevel, p90);
+    if (newLevel > level) {
+      degradations++;
+      LOGGER.warn("Brownout: OpenAI p90 {} is over target {}; degrading from level {} to {} ({})",
+        p90, target, level, newLevel, levels.get(newLevel));
+    } else {
+      recoveries++;
+      LOGGER.info("Brownout: OpenAI p90 {} is back under target {}; restoring from level {} to {} ({})",
+        p90, target, level, newLevel, levels.get(newLevel));
+    }
+    level = newLevel;
+    sampleCount = 0;
+    lastTransition = transition;
+    listener.emit(transition);
+  }
+
+  private Duration recentP90() {
+    long[] recent = Arrays.copyOf(samples, Math.min(sampleCount, samples.length));
+    Arrays.sort(recent);
+    int index = (int) Math.ceil(PERCENTILE * recent.length) - 1;
+    return Duration.ofNanos(recent[Math.max(index, 0)]);
+  }
+
+  // null fields leave that part of the request as it is
+  public record Degradation(Integer maxTokens, Integer historyDepth, String model) {
+    public static final Degradation FULL_QUALITY = new Degradation(null, null, null);
+
+    public OpenAiClient.Options apply(OpenAiClient.Options options) {
+      OpenAiClient.Options degraded = options;
+      if (maxTokens != null && (options.maxTokens() == null || options.maxTokens() > maxTokens)) {
+        degraded = degraded.withMaxTokens(maxTokens);
+      }
+      if (model != null) {
+        degraded = degraded.withModel(model);
+      }
+      return degraded;
+    }
+
+    public List<Exchange> trim(List<Exchange> history) {
+      if (historyDepth == null || history.size() <= historyDepth) return history;
+      return history.subList(history.size() - historyDepth, history.size());
+    }
+  }
+
+  public record Transition(Instant at, int fromLevel, int toLevel, Duration p90) {
+  }
+
+  public record Status(int level, Degradation degradation, Duration target, Duration recentP90,
+                       long degradations, long recoveries, Transition lastTransition) {
+  }
+}
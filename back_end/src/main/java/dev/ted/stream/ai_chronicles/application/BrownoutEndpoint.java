@@ -0,0 +1,19 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+// Current brownout level and how often it has changed since startup.
+@Endpoint(id = "brownout")
+public class BrownoutEndpoint {
+  private final BrownoutController controller;
+
+  public BrownoutEndpoint(BrownoutController controller) {
+    this.controller = controller;
+  }
+
+  @ReadOperation
+  public BrownoutController.Status brownout() {
+    return controller.status();
+  }
+}
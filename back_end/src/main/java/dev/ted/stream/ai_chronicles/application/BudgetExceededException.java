@@ -0,0 +1,11 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class BudgetExceededException extends RuntimeException {
+  public BudgetExceededException(String sessionId, long budgetTokens) {
+    super("Session " + sessionId + " has used its budget of " + budgetTokens + " tokens");
+  }
+}
@@ -0,0 +1,52 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.infrastructure.LocalCompletionCache;
+import dev.ted.stream.ai_chronicles.infrastructure.PartitionedCompletionCache;
+import dev.ted.stream.ai_chronicles.infrastructure.PartitionedCompletionCache.CacheEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Serves this node's partition of the shared completion cache to its peers.
+// Only peers that send the shared cache.peer-secret are answered; with no
+// secret configured, nobody is.
+@RestController
+public class CacheController {
+
+  private final LocalCompletionCache localPartition;
+  private final byte[] peerSecret;
+
+  public CacheController(LocalCompletionCache localPartition,
+                         @Value("${cache.peer-secret:}") String peerSecret) {
+    this.localPartition = localPartition;
+    this.peerSecret = peerSecret.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @GetMapping("/cache/{key}")
+  public ResponseEntity<CacheEntry> get(@PathVariable String key,
+                                        @RequestHeader(name = PartitionedCompletionCache.SECRET_HEADER, required = false) String secret) {
+    if (!isPeer(secret)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    return localPartition.get(key)
+      .map(completion -> ResponseEntity.ok(new CacheEntry(completion)))
+      .orElse(ResponseEntity.notFound().build());
+  }
+
+  @PostMapping("/cache/{key}")
+  public ResponseEntity<CacheEntry> post(@PathVariable String key,
+                                         @RequestHeader(name = PartitionedCompletionCache.SECRET_HEADER, required = false) String secret,
+                                         @RequestBody CacheEntry entry) {
+    if (!isPeer(secret)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    localPartition.put(key, entry.completion());
+    return ResponseEntity.ok(entry);
+  }
+
+  private boolean isPeer(String secret) {
+    return peerSecret.length > 0
+        && secret != null
+        && MessageDigest.isEqual(peerSecret, secret.getBytes(StandardCharsets.UTF_8));
+  }
+}
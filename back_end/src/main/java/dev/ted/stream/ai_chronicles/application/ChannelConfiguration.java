@@ -0,0 +1,23 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class ChannelConfiguration implements WebSocketConfigurer {
+  static final String CHANNEL_PATH = "/channel";
+
+  private final SayChannelHandler sayChannelHandler;
+
+  public ChannelConfiguration(SayChannelHandler sayChannelHandler) {
+    this.sayChannelHandler = sayChannelHandler;
+  }
+
+  @Override
+  public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+    registry.addHandler(sayChannelHandler, CHANNEL_PATH);
+  }
+}
@@ -0,0 +1,24 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.infrastructure.PhaseHistograms;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Outcome;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Phase;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.Map;
+
+// Where OpenAI request time goes, phase by phase and by outcome, since startup.
+@Endpoint(id = "httpphases")
+public class HttpPhasesEndpoint {
+  private final PhaseHistograms histograms;
+
+  public HttpPhasesEndpoint(PhaseHistograms histograms) {
+    this.histograms = histograms;
+  }
+
+  @ReadOperation
+  public Map<Outcome, Map<Phase, PhaseHistograms.Summary>> phases() {
+    return histograms.summarize();
+  }
+}
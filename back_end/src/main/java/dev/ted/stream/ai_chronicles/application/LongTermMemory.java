@@ -0,0 +1,98 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.OutputListener;
+import dev.ted.stream.ai_chronicles.OutputTracker;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.MemoryIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps prompts the same size however long a game runs: instead of the whole
+// transcript, a say sends the last recentExchanges exchanges plus the topK
+// earlier ones most relevant to its message. Exchanges are indexed on a
+// background thread after they're recorded, never while a player waits.
+// Indexes are rebuilt from the transcript when missing (after a restart, or
+// once dropped for being the least recently used beyond maxSessions); until
+// then, recall finds less.
+public class LongTermMemory {
+  private final int recentExchanges;
+  private final int topK;
+  private final Executor indexer;
+  private final Map<String, MemoryIndex> indexes;
+  private final OutputListener<Recall> listener = new OutputListener<>();
+
+  public static LongTermMemory disabled() {
+    return new LongTermMemory(Integer.MAX_VALUE, 0, 0, Runnable::run);
+  }
+
+  public static LongTermMemory create(int recentExchanges, int topK, int maxSessions) {
+    ExecutorService indexer = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "memory-indexer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    return new LongTermMemory(recentExchanges, topK, maxSessions, indexer);
+  }
+
+  public LongTermMemory(int recentExchanges, int topK, int maxSessions, Executor indexer) {
+    this.recentExchanges = recentExchanges;
+    this.topK = topK;
+    this.indexer = indexer;
+    this.indexes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, MemoryIndex> eldest) {
+        return size() > maxSessions;
+      }
+    });
+  }
+
+  // The history to send with a message: recalled exchanges, then recent ones,
+  // each in transcript order
+  public List<Exchange> recall(String sessionId, List<Exchange> transcript, String message) {
+    if (transcript.size() <= recentExchanges) return transcript;
+
+    int recentStart = transcript.size() - recentExchanges;
+    MemoryIndex index = index(sessionId);
+    if (index.size() < recentStart) indexInBackground(sessionId, transcript);
+    List<Integer> recalled = index.search(message, topK, recentStart);
+    listener.emit(new Recall(sessionId, recalled));
+
+    List<Exchange> history = new ArrayList<>(recalled.size() + recentExchanges);
+    recalled.forEach(position -> history.add(transcript.get(position)));
+    history.addAll(transcript.subList(recentStart, transcript.size()));
+    return history;
+  }
+
+  // Call with the session's transcript once an exchange has been recorded
+  public void remember(String sessionId, List<Exchange> transcript) {
+    if (transcript.size() <= recentExchanges) return;
+    indexInBackground(sessionId, transcript);
+  }
+
+  public int indexedSessions() {
+    return indexes.size();
+  }
+
+  public OutputTracker<Recall> trackRecalls() {
+    return listener.createTracker();
+  }
+
+  // Safe to repeat: an index only adds the exchanges it doesn't have yet
+  private void indexInBackground(String sessionId, List<Exchange> transcript) {
+    indexer.execute(() -> index(sessionId).addFrom(transcript));
+  }
+
+  private MemoryIndex index(String sessionId) {
+    return indexes.computeIfAbsent(sessionId, id -> new MemoryIndex());
+  }
+
+  public record Recall(String sessionId, List<Integer> positions) {
+  }
+}
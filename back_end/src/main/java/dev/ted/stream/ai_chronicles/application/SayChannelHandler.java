@@ -0,0 +1,195 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.domain.GameEvent;
+import dev.ted.stream.ai_chronicles.infrastructure.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+// One long-lived connection per player. The client sends "say" frames and gets
+// an "answer" (or "error") frame back with the same id; the server may send
+// "push" frames at any time. With streamEvents, a say is answered with an
+// "event" frame per game event as soon as the model has produced it, then the
+// "answer" frame; the events carry the say's id.
+//
+// Backpressure is per connection: a client may only have a few says pending,
+// and a client that stops reading is disconnected once its send buffer fills.
+public class SayChannelHandler extends TextWebSocketHandler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SayChannelHandler.class);
+  static final String SESSION_PARAMETER = "session";
+  private static final TypeReference<Map<String, Object>> EVENT_FIELDS = new TypeReference<>() {
+  };
+
+  private final Sessions sessions;
+  private final ObjectMapper objectMapper;
+  private final int maxPendingSays;
+  private final int sendBufferLimit;
+  private final Duration sendTimeLimit;
+  private final Duration sayTimeout;
+  private final boolean streamEvents;
+  private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+  public SayChannelHandler(Sessions sessions,
+                           ObjectMapper objectMapper,
+                           int maxPendingSays,
+                           int sendBufferLimit,
+                           Duration sendTimeLimit,
+                           Duration sayTimeout,
+                           boolean streamEvents) {
+    this.sessions = sessions;
+    this.objectMapper = objectMapper;
+    this.maxPendingSays = maxPendingSays;
+    this.sendBufferLimit = sendBufferLimit;
+    this.sendTimeLimit = sendTimeLimit;
+    this.sayTimeout = sayTimeout;
+    this.streamEvents = streamEvents;
+  }
+
+  public void push(String sessionId, String text) {
+    connections.values().stream()
+      .filter(connection -> connection.sessionId().equals(sessionId))
+      .forEach(connection -> send(connection, ChannelMessage.push(text)));
+  }
+
+  public int connectionCount() {
+    return connections.size();
+  }
+
+  @Override
+  public void afterConnectionEstablished(WebSocketSession session) {
+    WebSocketSession bounded = new ConcurrentWebSocketSessionDecorator(
+      session, (int) sendTimeLimit.toMillis(), sendBufferLimit);
+    connections.put(session.getId(),
+      new Connection(sessionIdOf(session), bounded, new Semaphore(maxPendingSays)));
+  }
+
+  @Override
+  protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+    Connection connection = connections.get(session.getId());
+    ChannelMessage frame = parse(message.getPayload());
+    if (frame == null) {
+      send(connection, ChannelMessage.error(null, "malformed frame"));
+      return;
+    }
+
+    if (!ChannelMessage.SAY.equals(frame.type())) {
+      send(connection, ChannelMessage.error(frame.id(), "unsupported frame type: " + frame.type()));
+      return;
+    }
+    if (frame.text() == null || frame.text().isBlank()) {
+      send(connection, ChannelMessage.error(frame.id(), "message must not be blank"));
+      return;
+    }
+    if (!connection.pendingSays().tryAcquire()) {
+      send(connection, ChannelMessage.error(frame.id(), "too many pending messages"));
+      return;
+    }
+
+    // Submitted from the connection's reader thread, so says run in frame
+    // order; time spent queued behind earlier says counts against the deadline
+    Deadline deadline = Deadline.after(sayTimeout);
+    CompletableFuture<String> answering = streamEvents
+      ? sessions.sayStreamingAsync(connection.sessionId(), frame.text(), deadline,
+          event -> send(connection, ChannelMessage.event(frame.id(), fieldsOf(event))))
+      : sessions.sayAsync(connection.sessionId(), frame.text(), deadline);
+    answering
+      .whenComplete((answer, failure) -> {
+        try {
+          if (failure == null) {
+            send(connection, ChannelMessage.answer(frame.id(), answer));
+          } else {
+            LOGGER.warn("Say on channel failed", failure);
+            send(connection, ChannelMessage.error(frame.id(), "say failed"));
+          }
+        } finally {
+          connection.pendingSays().release();
+        }
+      });
+  }
+
+  @Override
+  public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+    connections.remove(session.getId());
+  }
+
+  // null for a malformed frame, including a "null" payload, which parses
+  // without error
+  private ChannelMessage parse(String payload) {
+    try {
+      return objectMapper.readValue(payload, ChannelMessage.class);
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+  }
+
+  // The event's fields, plus its kind, e.g. {"kind":"Hazard","name":...,"severity":...}
+  private Map<String, Object> fieldsOf(GameEvent event) {
+    Map<String, Object> fields = new LinkedHashMap<>();
+    fields.put("kind", event.getClass().getSimpleName());
+    fields.putAll(objectMapper.convertValue(event, EVENT_FIELDS));
+    return fields;
+  }
+
+  private void send(Connection connection, ChannelMessage frame) {
+    try {
+      connection.socket().sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+    } catch (IOException | RuntimeException e) {
+      LOGGER.debug("Dropping frame for closed or slow connection {}", connection.socket().getId(), e);
+    }
+  }
+
+  private static String sessionIdOf(WebSocketSession session) {
+    if (session.getUri() == null) return SayController.DEFAULT_SESSION;
+    String sessionId = UriComponentsBuilder.fromUri(session.getUri())
+      .build()
+      .getQueryParams()
+      .getFirst(SESSION_PARAMETER);
+    return sessionId == null || sessionId.isBlank() ? SayController.DEFAULT_SESSION : sessionId;
+  }
+
+  private record Connection(String sessionId, WebSocketSession socket, Semaphore pendingSays) {
+  }
+
+  // event is only set on "event" frames, and left out of the others
+  record ChannelMessage(String type, String id, String text,
+                        @JsonInclude(JsonInclude.Include.NON_NULL) Map<String, Object> event) {
+    static final String SAY = "say";
+    static final String ANSWER = "answer";
+    static final String PUSH = "push";
+    static final String EVENT = "event";
+    static final String ERROR = "error";
+
+    static ChannelMessage answer(String id, String text) {
+      return new ChannelMessage(ANSWER, id, text, null);
+    }
+
+    static ChannelMessage push(String text) {
+      return new ChannelMessage(PUSH, null, text, null);
+    }
+
+    static ChannelMessage event(String id, Map<String, Object> event) {
+      return new ChannelMessage(EVENT, id, null, event);
+    }
+
+    static ChannelMessage error(String id, String text) {
+      return new ChannelMessage(ERROR, id, text, null);
+    }
+  }
+}
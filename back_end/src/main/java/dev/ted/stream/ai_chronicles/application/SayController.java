@@ -1,17 +1,44 @@
 package dev.ted.stream.ai_chronicles.application;
 
+import dev.ted.stream.ai_chronicles.infrastructure.Deadline;
+import dev.ted.stream.ai_chronicles.infrastructure.DeadlineExceededException;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.time.Duration;
+
 @RestController
 public class SayController {
+  static final String SESSION_HEADER = "X-Session-Id";
+  static final String DEFAULT_SESSION = "default";
+
+  private final Sessions sessions;
+  private final Duration timeout;
+
+  public SayController(Sessions sessions, @Value("${say.timeout}") Duration timeout) {
+    this.sessions = sessions;
+    this.timeout = timeout;
+  }
 
   @PostMapping("/say")
-  public SayResponse post(@Valid @RequestBody SayRequest request) {
-    return new SayResponse("hardcoded_answer");
+  public SayResponse post(@Valid @RequestBody SayRequest request,
+                          @RequestHeader(name = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId) {
+    return new SayResponse(sessions.say(sessionId, request.message(), Deadline.after(timeout)));
+  }
+
+  // Through the error page, like BudgetExceededException's 429
+  @ExceptionHandler(DeadlineExceededException.class)
+  public void deadlineExceeded(DeadlineExceededException e, HttpServletResponse response) throws IOException {
+    response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), e.getMessage());
   }
 }
 
@@ -19,4 +46,4 @@ record SayRequest(@NotBlank String message) {
 }
 
 record SayResponse(String answer) {
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One say, from when it reaches the front of its session's queue until its
+// exchange is recorded. Its prompt is recorded on the same thread, within it.
+@Name("dev.ted.stream.ai_chronicles.Say")
+@Label("Say")
+@Category({"AI Chronicles", "Say"})
+@StackTrace(false)
+class SayEvent extends jdk.jfr.Event {
+  @Label("Session")
+  String sessionId;
+
+  @Label("Model")
+  String model;
+
+  @Label("Prompt Tokens")
+  int promptTokens;
+
+  @Label("Completion Tokens")
+  int completionTokens;
+
+  @Label("Cached Prompt Tokens")
+  int cachedPromptTokens;
+
+  @Label("Outcome")
+  @Description("OK, or the simple name of the exception the say failed with")
+  String outcome;
+}
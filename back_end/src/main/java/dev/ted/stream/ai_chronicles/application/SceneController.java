@@ -0,0 +1,47 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.application.TurnEngine.RobotPrompt;
+import dev.ted.stream.ai_chronicles.application.TurnEngine.RobotReply;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.List;
+
+@RestController
+@ConditionalOnProperty(name = "scene.enabled", havingValue = "true")
+public class SceneController {
+  private final TurnEngine turnEngine;
+  private final Duration timeout;
+
+  public SceneController(TurnEngine turnEngine, @Value("${say.timeout}") Duration timeout) {
+    this.turnEngine = turnEngine;
+    this.timeout = timeout;
+  }
+
+  @PostMapping("/scene")
+  public SceneResponse post(@Valid @RequestBody SceneRequest request,
+                            @RequestHeader(name = SayController.SESSION_HEADER,
+                              defaultValue = SayController.DEFAULT_SESSION) String sessionId) {
+    List<RobotPrompt> scene = request.robots().stream()
+      .map(robot -> new RobotPrompt(robot.robot(), robot.prompt()))
+      .toList();
+    return new SceneResponse(turnEngine.playTurn(sessionId, scene, timeout));
+  }
+}
+
+record SceneRequest(@NotEmpty List<@Valid RobotLine> robots) {
+}
+
+record RobotLine(@NotBlank String robot, @NotBlank String prompt) {
+}
+
+record SceneResponse(List<RobotReply> replies) {
+}
@@ -0,0 +1,112 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+// Actor-style execution: tasks for one session run one at a time, in the order
+// they were submitted, while different sessions run in parallel. A session only
+// has a mailbox while it has work, so idle sessions cost nothing here, and a
+// busy one costs a small deque.
+//
+// The threads come from the executor passed in (Spring's bounded
+// applicationTaskExecutor in production), so this class never owns a pool.
+//
+// A task submitted with the same merge key as the newest task still waiting in
+// the mailbox is merged into it: a double-submitted message gets the same
+// answer instead of a second call. A running task is never merged into, so
+// saying the same thing again once the first one has started is a new turn.
+public class SessionExecutor {
+  private final Executor executor;
+  private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+  // Runs each task on the submitting thread, before submit returns
+  public static SessionExecutor createNull() {
+    return new SessionExecutor(Runnable::run);
+  }
+
+  public SessionExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  public <T> CompletableFuture<T> submit(String sessionId, Object mergeKey, Supplier<T> work) {
+    Task task = new Task(mergeKey, work);
+    Task[] accepted = new Task[1];
+    boolean[] wasIdle = new boolean[1];
+    mailboxes.compute(sessionId, (id, existing) -> {
+      if (existing == null) {
+        Mailbox mailbox = new Mailbox();
+        mailbox.tasks.addLast(task);
+        accepted[0] = task;
+        wasIdle[0] = true;
+        return mailbox;
+      }
+      // The head of the mailbox is running (or about to), so only later tasks can be merged into
+      Task newest = existing.tasks.peekLast();
+      if (existing.tasks.size() > 1 && Objects.equals(newest.mergeKey, mergeKey)) {
+        accepted[0] = newest;
+      } else {
+        existing.tasks.addLast(task);
+        accepted[0] = task;
+      }
+      return existing;
+    });
+
+    if (wasIdle[0]) {
+      executor.execute(() -> runFrom(sessionId, task));
+    }
+    return castResult(accepted[0]);
+  }
+
+  public int activeSessions() {
+    return mailboxes.size();
+  }
+
+  // Runs a task that has reached the head of its mailbox, then hands the next
+  // one (if any) to the executor, or removes the mailbox once it's empty.
+  private void runFrom(String sessionId, Task task) {
+    task.run();
+    Task[] next = new Task[1];
+    mailboxes.computeIfPresent(sessionId, (id, mailbox) -> {
+      mailbox.tasks.pollFirst();
+      next[0] = mailbox.tasks.peekFirst();
+      return next[0] == null ? null : mailbox;
+    });
+    if (next[0] != null) {
+      executor.execute(() -> runFrom(sessionId, next[0]));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> CompletableFuture<T> castResult(Task task) {
+    return (CompletableFuture<T>) task.result;
+  }
+
+  // Only touched inside mailboxes.compute, which serializes access per session
+  private static class Mailbox {
+    private final ArrayDeque<Task> tasks = new ArrayDeque<>(2);
+  }
+
+  private static class Task {
+    private final Object mergeKey;
+    private final Supplier<?> work;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    Task(Object mergeKey, Supplier<?> work) {
+      this.mergeKey = mergeKey;
+      this.work = work;
+    }
+
+    void run() {
+      try {
+        result.complete(work.get());
+      } catch (RuntimeException | Error e) {
+        result.completeExceptionally(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptStore;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+// How many transcripts are in each storage tier, and the memory held for the
+// hot ones' encoded request histories, for sizing nodes.
+@Endpoint(id = "sessionstore")
+public class SessionStoreEndpoint {
+  private final TranscriptStore store;
+  private final OpenAiClient openAiClient;
+
+  public SessionStoreEndpoint(TranscriptStore store, OpenAiClient openAiClient) {
+    this.store = store;
+    this.openAiClient = openAiClient;
+  }
+
+  @ReadOperation
+  public SessionStoreReport sessionStore() {
+    TranscriptStore.Stats stats = store.stats();
+    OpenAiClient.EncodedHistories encoded = openAiClient.encodedHistories();
+    return new SessionStoreReport(stats.hotSessions(), stats.compressedSessions(), stats.spilledSessions(),
+      stats.compressedBytes(), encoded.conversations(), encoded.retainedBytes());
+  }
+
+  public record SessionStoreReport(long hotSessions, long compressedSessions, long spilledSessions,
+                                   long compressedBytes, int encodedHistories, long encodedHistoryBytes) {
+  }
+}
@@ -0,0 +1,204 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.GameEvent;
+import dev.ted.stream.ai_chronicles.domain.Transcript;
+import dev.ted.stream.ai_chronicles.infrastructure.Deadline;
+import dev.ted.stream.ai_chronicles.infrastructure.DeadlineExceededException;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptStore;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+public class Sessions {
+
+  private final OpenAiClient openAiClient;
+  private final TranscriptJournal journal;
+  private final UsageLedger usageLedger;
+  private final BrownoutController brownout;
+  private final TranscriptStore transcripts;
+  private final SessionExecutor executor;
+  private final LongTermMemory memory;
+
+  public Sessions(OpenAiClient openAiClient, TranscriptJournal journal) {
+    this(openAiClient, journal, UsageLedger.unlimited());
+  }
+
+  public Sessions(OpenAiClient openAiClient, TranscriptJournal journal, UsageLedger usageLedger) {
+    this(openAiClient, journal, usageLedger, BrownoutController.disabled(), TranscriptStore.createInMemory(),
+      SessionExecutor.createNull(), LongTermMemory.disabled());
+  }
+
+  public Sessions(OpenAiClient openAiClient, TranscriptJournal journal, UsageLedger usageLedger,
+                  BrownoutController brownout, TranscriptStore transcripts, SessionExecutor executor,
+                  LongTermMemory memory) {
+    this.openAiClient = openAiClient;
+    this.journal = journal;
+    this.usageLedger = usageLedger;
+    this.brownout = brownout;
+    this.transcripts = transcripts;
+    this.executor = executor;
+    this.memory = memory;
+    journal.recover().forEach(transcripts::put);
+  }
+
+  public String say(String sessionId, String message) {
+    return say(sessionId, message, Deadline.none());
+  }
+
+  public String say(String sessionId, String message, Deadline deadline) {
+    return await(sayAsync(sessionId, message, deadline), deadline);
+  }
+
+  // Says for a session run one at a time in the order they arrive; a message
+  // identical to one still waiting its turn shares its answer.
+  public CompletableFuture<String> sayAsync(String sessionId, String message, Deadline deadline) {
+    return executor.submit(sessionId, message, () -> sayInTurn(sessionId, message, deadline,
+      (history, options) -> openAiClient.complete(sessionId, history, message, options, deadline)));
+  }
+
+  // Like sayAsync, but streams the turn as structured output and hands each
+  // game event to onEvent as soon as it has arrived. Never merged with a
+  // duplicate, which would get the answer without the events.
+  public CompletableFuture<String> sayStreamingAsync(String sessionId, String message, Deadline deadline,
+                                                     Consumer<GameEvent> onEvent) {
+    return executor.submit(sessionId, new Object(), () -> sayInTurn(sessionId, message, deadline,
+      (history, options) -> openAiClient.streamTurn(sessionId, history, message, options, deadline, onEvent)));
+  }
+
+  private String sayInTurn(String sessionId, String message, Deadline deadline, Completer completer) {
+    SayEvent event = new SayEvent();
+    event.begin();
+    try {
+      Exchange exchange = sayInTurn(sessionId, message, deadline, completer, event);
+      event.outcome = "OK";
+      return exchange.answer();
+    } catch (RuntimeException e) {
+      event.outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      if (event.shouldCommit()) {
+        event.sessionId = sessionId;
+        event.commit();
+      }
+    }
+  }
+
+  private Exchange sayInTurn(String sessionId, String message, Deadline deadline, Completer completer,
+                             SayEvent event) {
+    // A say that queued behind slow ones until its deadline passed is dropped
+    deadline.requireNotExpired("starting say for session " + sessionId);
+    BrownoutController.Degradation degradation = brownout.current();
+    OpenAiClient.Options options = degradation.apply(usageLedger.admit(sessionId, OpenAiClient.Options.DEFAULT));
+    event.model = options.model();
+    Transcript transcript = transcript(sessionId);
+    List<Exchange> history = degradation.trim(memory.recall(sessionId, transcript.exchanges(), message));
+    OpenAiClient.Completion completion;
+    long start = System.nanoTime();
+    try {
+      completion = completer.complete(history, options);
+    } finally {
+      Duration latency = Duration.ofNanos(System.nanoTime() - start);
+      brownout.record(latency);
+    }
+    event.promptTokens = completion.promptTokens();
+    event.completionTokens = completion.completionTokens();
+    event.cachedPromptTokens = completion.cachedPromptTokens();
+    usageLedger.record(sessionId, completion);
+    Exchange exchange = new Exchange(message, completion.answer());
+    memory.remember(sessionId, record(sessionId, transcript, exchange).exchanges());
+    return exchange;
+  }
+
+  // One robot's line in a scene (see TurnEngine): admitted against the
+  // session's budget and degraded like a say, but sent without the session's
+  // history, and journaled only once the whole scene has played
+  OpenAiClient.Completion promptRobot(String sessionId, String prompt, Deadline deadline) {
+    deadline.requireNotExpired("prompting robot for session " + sessionId);
+    OpenAiClient.Options options = brownout.current().apply(usageLedger.admit(sessionId, OpenAiClient.Options.DEFAULT));
+    OpenAiClient.Completion completion;
+    long start = System.nanoTime();
+    try {
+      completion = openAiClient.complete(prompt, options, deadline);
+    } finally {
+      // A robot cut off because another one failed says nothing about OpenAI's latency
+      if (!deadline.isCancelled()) brownout.record(Duration.ofNanos(System.nanoTime() - start));
+    }
+    usageLedger.record(sessionId, completion);
+    return completion;
+  }
+
+  // Queued behind the session's says, so the scene lands between them in order
+  void recordScene(String sessionId, List<Exchange> exchanges) {
+    await(executor.submit(sessionId, new Object(), () -> {
+      Transcript transcript = transcript(sessionId);
+      for (Exchange exchange : exchanges) {
+        transcript = record(sessionId, transcript, exchange);
+      }
+      memory.remember(sessionId, transcript.exchanges());
+      return sessionId;
+    }), Deadline.none());
+  }
+
+  private static String await(CompletableFuture<String> answer, Deadline deadline) {
+    try {
+      return deadline.isBounded()
+        ? answer.get(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS)
+        : answer.get();
+    } catch (TimeoutException e) {
+      throw new DeadlineExceededException("Say did not finish before its deadline", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException failure) throw failure;
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for say", e);
+    }
+  }
+
+  // Not synchronized: the store is thread-safe, and bringing back a spilled
+  // transcript reads a file
+  public Transcript transcript(String sessionId) {
+    return transcripts.get(sessionId);
+  }
+
+  @Scheduled(fixedDelayString = "${journal.snapshot-interval:PT5M}",
+    initialDelayString = "${journal.snapshot-interval:PT5M}")
+  public void snapshot() {
+    TranscriptStore.Prefetched spilled = transcripts.prefetchSpilled();
+    synchronized (this) {
+      journal.snapshot(transcripts.snapshot(spilled));
+    }
+  }
+
+  // Not synchronized: the store is thread-safe, and sweeping never changes
+  // content. An idle session's encoded history goes with its hot transcript.
+  @Scheduled(fixedDelayString = "${sessions.idle-sweep-interval:PT30S}",
+    initialDelayString = "${sessions.idle-sweep-interval:PT30S}")
+  public void sweepIdle() {
+    transcripts.sweep().forEach(openAiClient::forgetConversation);
+  }
+
+  // Appending and updating the in-memory transcript happen under the same lock
+  // so that a snapshot never contains an exchange that the journal tail replays.
+  // Says for a session run one at a time, so the transcript read at the start
+  // of the turn is still current.
+  private synchronized Transcript record(String sessionId, Transcript before, Exchange exchange) {
+    journal.append(sessionId, exchange);
+    Transcript transcript = before.add(exchange);
+    transcripts.put(sessionId, transcript);
+    return transcript;
+  }
+
+  private interface Completer {
+    OpenAiClient.Completion complete(List<Exchange> history, OpenAiClient.Options options);
+  }
+}
@@ -0,0 +1,40 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+import java.time.Duration;
+
+// Serves the front-end bundle that the build writes to static/. Files under
+// assets/ have content-hashed names, so browsers may cache them forever. The
+// page itself keeps its name and must be revalidated, which its ETag makes
+// cheap. Both are served from the build's precompressed brotli or gzip
+// variants when the browser accepts them (see spring.web.resources.chain.*).
+@Configuration
+public class StaticAssetsConfiguration implements WebMvcConfigurer {
+  static final String ASSETS_PATH = "/assets/**";
+  static final Duration IMMUTABLE_MAX_AGE = Duration.ofDays(365);
+
+  @Override
+  public void addResourceHandlers(ResourceHandlerRegistry registry) {
+    registry.addResourceHandler(ASSETS_PATH)
+      .addResourceLocations("classpath:/static/assets/")
+      .setCacheControl(CacheControl.maxAge(IMMUTABLE_MAX_AGE).cachePublic().immutable())
+      .resourceChain(true)
+      .addResolver(new EncodedResourceResolver());
+  }
+
+  @Bean
+  public FilterRegistrationBean<ShallowEtagHeaderFilter> pageEtagFilter() {
+    FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+      new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+    registration.addUrlPatterns("/", "/index.html");
+    return registration;
+  }
+}
@@ -0,0 +1,104 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.infrastructure.Deadline;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Prompts every robot in a scene at once, so a turn takes about as long as the
+// slowest robot rather than the sum of all of them. If any robot fails, or the
+// deadline passes, the remaining prompts are cancelled and the turn fails.
+// Robot prompts are budgeted and degraded like says (see Sessions.promptRobot),
+// and a finished scene is journaled into the session's transcript.
+public class TurnEngine {
+  private final Sessions sessions;
+  private final Executor executor;
+
+  public TurnEngine(OpenAiClient openAiClient, Executor executor) {
+    this(new Sessions(openAiClient, TranscriptJournal.createNull()), executor);
+  }
+
+  public TurnEngine(Sessions sessions, Executor executor) {
+    this.sessions = sessions;
+    this.executor = executor;
+  }
+
+  public List<RobotReply> playTurn(List<RobotPrompt> scene, Duration timeLimit) {
+    return playTurn(SayController.DEFAULT_SESSION, scene, timeLimit);
+  }
+
+  public List<RobotReply> playTurn(String sessionId, List<RobotPrompt> scene, Duration timeLimit) {
+    // Interrupting a call blocked on a socket does nothing; cancelling the
+    // deadline closes its connection
+    Deadline deadline = Deadline.after(timeLimit).cancellable();
+    CompletionService<IndexedReply> completions = new ExecutorCompletionService<>(executor);
+    List<Future<IndexedReply>> calls = new ArrayList<>();
+    for (int i = 0; i < scene.size(); i++) {
+      int index = i;
+      RobotPrompt robotPrompt = scene.get(i);
+      calls.add(completions.submit(() -> new IndexedReply(index, new RobotReply(robotPrompt.robot(),
+        sessions.promptRobot(sessionId, robotPrompt.prompt(), deadline).answer()))));
+    }
+
+    RobotReply[] replies = new RobotReply[scene.size()];
+    try {
+      for (int received = 0; received < scene.size(); received++) {
+        Future<IndexedReply> completed = deadline.isExpired()
+          ? null
+          : completions.poll(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS);
+        if (completed == null) {
+          throw new TurnMissedDeadlineException("Turn missed its deadline of " + timeLimit);
+        }
+        IndexedReply reply = completed.get();
+        replies[reply.index()] = reply.reply();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof BudgetExceededException overBudget) throw overBudget;
+      throw new TurnFailedException("Robot prompt failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TurnFailedException("Turn interrupted", e);
+    } finally {
+      deadline.cancel();
+      calls.forEach(call -> call.cancel(false));
+    }
+
+    List<Exchange> exchanges = new ArrayList<>();
+    for (int i = 0; i < scene.size(); i++) {
+      exchanges.add(new Exchange(scene.get(i).robot() + ": " + scene.get(i).prompt(), replies[i].reply()));
+    }
+    sessions.recordScene(sessionId, exchanges);
+    return Arrays.asList(replies);
+  }
+
+  private record IndexedReply(int index, RobotReply reply) {
+  }
+
+  public record RobotPrompt(String robot, String prompt) {
+  }
+
+  public record RobotReply(String robot, String reply) {
+  }
+
+  @ResponseStatus(HttpStatus.BAD_GATEWAY)
+  public static class TurnFailedException extends RuntimeException {
+    TurnFailedException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
+  @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+  public static class TurnMissedDeadlineException extends TurnFailedException {
+    TurnMissedDeadlineException(String message) {
+      super(message, null);
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package dev.ted.stream.ai_chronicles.application;
+
+public record UsageBudget(long sessionTokens, OverBudget overBudget, Integer downgradedMaxTokens) {
+
+  public enum OverBudget {
+    THROTTLE,
+    DOWNGRADE
+  }
+}
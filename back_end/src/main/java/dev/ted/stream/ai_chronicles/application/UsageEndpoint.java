@@ -0,0 +1,29 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+// Totals only; a single session's usage needs its ID, so the endpoint
+// never reveals which sessions exist.
+@Endpoint(id = "usage")
+public class UsageEndpoint {
+  private final UsageLedger ledger;
+
+  public UsageEndpoint(UsageLedger ledger) {
+    this.ledger = ledger;
+  }
+
+  @ReadOperation
+  public UsageReport usage() {
+    return new UsageReport(ledger.totalUsage(), ledger.sessionCount());
+  }
+
+  @ReadOperation
+  public UsageLedger.TokenUsage sessionUsage(@Selector String sessionId) {
+    return ledger.usage(sessionId);
+  }
+
+  public record UsageReport(UsageLedger.TokenUsage total, int sessions) {
+  }
+}
@@ -0,0 +1,112 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts OpenAI tokens per session and overall. LongAdder keeps recording
+// contention-free when many sessions finish calls at once.
+//
+// Counters are kept for at most maxSessions sessions. Past that, the ones
+// that recorded least recently are dropped in a batch, and those sessions
+// start again with a fresh budget if they come back.
+public class UsageLedger {
+  static final int DEFAULT_MAX_SESSIONS = 100_000;
+
+  private final UsageBudget budget;
+  private final int maxSessions;
+  private final Map<String, Counters> sessions = new ConcurrentHashMap<>();
+  private final Counters total = new Counters();
+
+  public static UsageLedger unlimited() {
+    return new UsageLedger(new UsageBudget(Long.MAX_VALUE, UsageBudget.OverBudget.THROTTLE, null));
+  }
+
+  public UsageLedger(UsageBudget budget) {
+    this(budget, DEFAULT_MAX_SESSIONS);
+  }
+
+  public UsageLedger(UsageBudget budget, int maxSessions) {
+    this.budget = budget;
+    this.maxSessions = maxSessions;
+  }
+
+  // Decides how a session may call OpenAI, before the call is made.
+  public OpenAiClient.Options admit(String sessionId, OpenAiClient.Options options) {
+    if (usage(sessionId).totalTokens() < budget.sessionTokens()) return options;
+
+    return switch (budget.overBudget()) {
+      case THROTTLE -> throw new BudgetExceededException(sessionId, budget.sessionTokens());
+      case DOWNGRADE -> options.withMaxTokens(budget.downgradedMaxTokens());
+    };
+  }
+
+  public void record(String sessionId, OpenAiClient.Completion completion) {
+    Counters counters = sessions.get(sessionId);
+    if (counters == null) {
+      counters = sessions.computeIfAbsent(sessionId, ignored -> new Counters());
+      if (sessions.size() > maxSessions) evictLeastRecentlyRecorded();
+    }
+    counters.add(completion);
+    total.add(completion);
+  }
+
+  public TokenUsage usage(String sessionId) {
+    Counters counters = sessions.get(sessionId);
+    return counters == null ? TokenUsage.NONE : counters.snapshot();
+  }
+
+  public TokenUsage totalUsage() {
+    return total.snapshot();
+  }
+
+  public int sessionCount() {
+    return sessions.size();
+  }
+
+  // Trims to 90% of maxSessions, so the scan runs once per many new sessions
+  private void evictLeastRecentlyRecorded() {
+    int excess = sessions.size() - maxSessions * 9 / 10;
+    sessions.entrySet().stream()
+      .sorted(Comparator.comparingLong(entry -> entry.getValue().lastRecorded))
+      .limit(Math.max(excess, 0))
+      .map(Map.Entry::getKey)
+      .toList()
+      .forEach(sessions::remove);
+  }
+
+  public record TokenUsage(long calls, long promptTokens, long completionTokens, long cachedPromptTokens) {
+    static final TokenUsage NONE = new TokenUsage(0, 0, 0, 0);
+
+    public TokenUsage(long calls, long promptTokens, long completionTokens) {
+      this(calls, promptTokens, completionTokens, 0);
+    }
+
+    public long totalTokens() {
+      return promptTokens + completionTokens;
+    }
+  }
+
+  private static class Counters {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+    private final LongAdder cachedPromptTokens = new LongAdder();
+    private volatile long lastRecorded = System.nanoTime();
+
+    void add(OpenAiClient.Completion completion) {
+      lastRecorded = System.nanoTime();
+      calls.increment();
+      promptTokens.add(completion.promptTokens());
+      completionTokens.add(completion.completionTokens());
+      cachedPromptTokens.add(completion.cachedPromptTokens());
+    }
+
+    TokenUsage snapshot() {
+      return new TokenUsage(calls.sum(), promptTokens.sum(), completionTokens.sum(), cachedPromptTokens.sum());
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+// What startup warm-up cost and what it left the first request to pay; a 404
+// until warm-up has finished.
+@Endpoint(id = "warmup")
+public class WarmUpEndpoint {
+  private final WarmUpRunner warmUpRunner;
+
+  public WarmUpEndpoint(WarmUpRunner warmUpRunner) {
+    this.warmUpRunner = warmUpRunner;
+  }
+
+  @ReadOperation
+  public WarmUpRunner.Report report() {
+    return warmUpRunner.report();
+  }
+}
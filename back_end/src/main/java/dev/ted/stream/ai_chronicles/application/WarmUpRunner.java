@@ -0,0 +1,87 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.infrastructure.Deadline;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.time.Duration;
+
+// Pays the first request's one-off costs at startup: connecting to OpenAI and
+// JIT-compiling the request and JSON paths. Spring Boot only reports readiness
+// (ACCEPTING_TRAFFIC) after every ApplicationRunner has finished, so
+// /actuator/health/readiness stays OUT_OF_SERVICE until warm-up is done. A
+// failed connection is logged but doesn't stop the node from becoming ready.
+//
+// The report times the same tokenless request twice: first while it opens the
+// connection, then again over the kept-alive connection once the codec has
+// been warmed up. The second is the network round trip the first /say is
+// left with. Both also show up in /actuator/httpphases; the report is at
+// /actuator/warmup.
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class WarmUpRunner implements ApplicationRunner {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WarmUpRunner.class);
+
+  private final OpenAiClient openAiClient;
+  private final int iterations;
+  private final Duration connectTimeout;
+  private volatile Report report;
+
+  public WarmUpRunner(OpenAiClient openAiClient, int iterations, Duration connectTimeout) {
+    this.openAiClient = openAiClient;
+    this.iterations = iterations;
+    this.connectTimeout = connectTimeout;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    Duration connection = null;
+    try {
+      connection = timed(() -> openAiClient.warmUpConnection(Deadline.after(connectTimeout)));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Warm-up couldn't connect to OpenAI; the first /say will pay for connecting", e);
+    }
+
+    Duration codec = timed(() -> openAiClient.warmUpCodec(iterations));
+
+    Duration warmRequest = null;
+    if (connection != null) {
+      try {
+        warmRequest = timed(() -> openAiClient.warmUpConnection(Deadline.after(connectTimeout)));
+      } catch (RuntimeException e) {
+        LOGGER.warn("Warm-up lost its connection to OpenAI; the first /say will pay for reconnecting", e);
+      }
+    }
+
+    Duration total = codec.plus(connection == null ? Duration.ZERO : connection)
+      .plus(warmRequest == null ? Duration.ZERO : warmRequest);
+    report = new Report(connection != null, connection, codec, warmRequest, total);
+    LOGGER.info("Warm-up finished in {} ms ({} codec round trips {} ms); a request to OpenAI took {} ms "
+        + "opening the connection and {} ms once warmed up",
+      total.toMillis(), iterations, codec.toMillis(), millis(connection), millis(warmRequest));
+  }
+
+  private static Duration timed(Runnable step) {
+    long start = System.nanoTime();
+    step.run();
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+
+  private static String millis(Duration duration) {
+    return duration == null ? "-" : String.valueOf(duration.toMillis());
+  }
+
+  // null until warm-up has finished
+  public Report report() {
+    return report;
+  }
+
+  // connection and warmRequest are null when that request failed
+  public record Report(boolean connected, Duration connection, Duration codec, Duration warmRequest,
+                       Duration total) {
+  }
+}
@@ -0,0 +1,36 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+
+import java.nio.file.Path;
+
+// Runs a WorldGenerator batch instead of serving players. Start it with
+//   java -jar back_end.jar --spring.profiles.active=worldgen \
+//     --worldgen.job-file=jobs.jsonl --worldgen.output-file=lore.jsonl
+// The worldgen profile runs without a web server, and main exits with this
+// runner's exit code once the batch is done: 1 if any job failed.
+public class WorldGenerationRunner implements ApplicationRunner, ExitCodeGenerator {
+  private final WorldGenerator worldGenerator;
+  private final Path jobFile;
+  private final Path outputFile;
+  private volatile int exitCode;
+
+  public WorldGenerationRunner(WorldGenerator worldGenerator, Path jobFile, Path outputFile) {
+    this.worldGenerator = worldGenerator;
+    this.jobFile = jobFile;
+    this.outputFile = outputFile;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    WorldGenerator.Summary summary = worldGenerator.run(jobFile, outputFile);
+    exitCode = summary.failed() == 0 ? 0 : 1;
+  }
+
+  @Override
+  public int getExitCode() {
+    return exitCode;
+  }
+}
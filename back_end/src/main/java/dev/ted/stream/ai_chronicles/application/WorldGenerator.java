@@ -0,0 +1,230 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.OutputListener;
+import dev.ted.stream.ai_chronicles.OutputTracker;
+import dev.ted.stream.ai_chronicles.infrastructure.Deadline;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Generates lore offline from a job file of {"id", "prompt"} lines. Prompts run
+// in parallel, paced to stay under the OpenAI rate limit, and each result is
+// appended to the output file as soon as it arrives. The output file is also
+// the checkpoint: on restart, jobs already in it are skipped, and a partial
+// line left by a crash is discarded. Failed jobs aren't written, so the next
+// run retries them.
+public class WorldGenerator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorldGenerator.class);
+  private static final Duration LOG_INTERVAL = Duration.ofSeconds(10);
+
+  private final OpenAiClient openAiClient;
+  private final int parallelism;
+  private final double requestsPerSecond;
+  private final Duration jobTimeout;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final OutputListener<Progress> progressListener = new OutputListener<>();
+
+  public WorldGenerator(OpenAiClient openAiClient, int parallelism, double requestsPerSecond, Duration jobTimeout) {
+    this.openAiClient = openAiClient;
+    this.parallelism = parallelism;
+    this.requestsPerSecond = requestsPerSecond;
+    this.jobTimeout = jobTimeout;
+  }
+
+  public Summary run(Path jobFile, Path outputFile) throws IOException, InterruptedException {
+    List<Job> jobs = readJobs(jobFile);
+    Set<String> done = recoverCompletedIds(outputFile);
+    List<Job> pending = jobs.stream()
+      .filter(job -> !done.contains(job.id()))
+      .toList();
+    LOGGER.info("{} jobs, {} already done, {} to run with parallelism {} at {} requests/s",
+      jobs.size(), jobs.size() - pending.size(), pending.size(), parallelism, requestsPerSecond);
+
+    RunState state = new RunState(pending.size());
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try (BufferedWriter output = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8,
+      StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      Semaphore inFlight = new Semaphore(parallelism);
+      RateLimiter rateLimiter = new RateLimiter(requestsPerSecond);
+      for (Job job : pending) {
+        inFlight.acquire();
+        rateLimiter.acquire();
+        executor.execute(() -> {
+          try {
+            runJob(job, output, state);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+      executor.shutdown();
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        // keep waiting; progress is reported as jobs finish
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Summary summary = new Summary(jobs.size() - pending.size(), state.completed.get(), state.failed.get(), state.elapsed());
+    LOGGER.info("World generation finished: {}", summary);
+    return summary;
+  }
+
+  public OutputTracker<Progress> trackProgress() {
+    return progressListener.createTracker();
+  }
+
+  private void runJob(Job job, BufferedWriter output, RunState state) {
+    try {
+      String answer = openAiClient.complete(job.prompt(), OpenAiClient.Options.DEFAULT, Deadline.after(jobTimeout)).answer();
+      String line = objectMapper.writeValueAsString(new Result(job.id(), job.prompt(), answer));
+      synchronized (output) {
+        output.write(line);
+        output.newLine();
+        output.flush();
+      }
+      state.completed.incrementAndGet();
+    } catch (IOException e) {
+      LOGGER.error("Can't write result of job {} to output", job.id(), e);
+      state.failed.incrementAndGet();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Job {} failed; it will be retried on the next run", job.id(), e);
+      state.failed.incrementAndGet();
+    }
+    report(state);
+  }
+
+  private void report(RunState state) {
+    Progress progress = state.progress();
+    progressListener.emit(progress);
+    if (state.shouldLog()) {
+      LOGGER.info("{}/{} done, {} failed, {} jobs/min, ETA {}",
+        progress.completed(), progress.total(), progress.failed(),
+        String.format("%.1f", progress.jobsPerMinute()), progress.eta());
+    }
+  }
+
+  private List<Job> readJobs(Path jobFile) throws IOException {
+    List<Job> jobs = new ArrayList<>();
+    for (String line : Files.readAllLines(jobFile, StandardCharsets.UTF_8)) {
+      if (!line.isBlank()) jobs.add(objectMapper.readValue(line, Job.class));
+    }
+    return jobs;
+  }
+
+  // Reads the ids of completed jobs, truncating a trailing partial line
+  private Set<String> recoverCompletedIds(Path outputFile) throws IOException {
+    Set<String> ids = new HashSet<>();
+    if (!Files.exists(outputFile)) return ids;
+
+    byte[] content = Files.readAllBytes(outputFile);
+    int endOfLastLine = 0;
+    for (int i = 0; i < content.length; i++) {
+      if (content[i] != '\n') continue;
+      String line = new String(content, endOfLastLine, i - endOfLastLine, StandardCharsets.UTF_8);
+      if (!line.isBlank()) ids.add(parseResult(outputFile, line).id());
+      endOfLastLine = i + 1;
+    }
+    if (endOfLastLine < content.length) {
+      LOGGER.warn("Discarding partial last line of {}", outputFile);
+      try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.WRITE)) {
+        channel.truncate(endOfLastLine);
+      }
+    }
+    return ids;
+  }
+
+  private Result parseResult(Path outputFile, String line) {
+    try {
+      return objectMapper.readValue(line, Result.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Corrupt line in " + outputFile + ": " + line, e);
+    }
+  }
+
+  public record Job(String id, String prompt) {
+  }
+
+  public record Result(String id, String prompt, String answer) {
+  }
+
+  public record Progress(int completed, int failed, int total, double jobsPerMinute, Duration eta) {
+  }
+
+  public record Summary(int alreadyDone, int completed, int failed, Duration elapsed) {
+  }
+
+  private static class RunState {
+    private final int total;
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private long lastLogNanos = startNanos;
+
+    RunState(int total) {
+      this.total = total;
+    }
+
+    Duration elapsed() {
+      return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    Progress progress() {
+      int completed = this.completed.get();
+      int failed = this.failed.get();
+      double elapsedMinutes = elapsed().toNanos() / 60e9;
+      double jobsPerMinute = elapsedMinutes == 0 ? 0 : (completed + failed) / elapsedMinutes;
+      int remaining = total - completed - failed;
+      Duration eta = remaining == 0 || jobsPerMinute == 0
+        ? Duration.ZERO
+        : Duration.ofSeconds((long) (remaining / jobsPerMinute * 60));
+      return new Progress(completed, failed, total, jobsPerMinute, eta);
+    }
+
+    synchronized boolean shouldLog() {
+      long now = System.nanoTime();
+      boolean finished = completed.get() + failed.get() == total;
+      if (!finished && now - lastLogNanos < LOG_INTERVAL.toNanos()) return false;
+      lastLogNanos = now;
+      return true;
+    }
+  }
+
+  // Spaces requests evenly, so bursts never exceed the provider's rate limit.
+  // Only the submitting thread uses it.
+  private static class RateLimiter {
+    private final long intervalNanos;
+    private long nextSlotNanos = System.nanoTime();
+
+    RateLimiter(double permitsPerSecond) {
+      this.intervalNanos = (long) (1e9 / permitsPerSecond);
+    }
+
+    void acquire() throws InterruptedException {
+      long now = System.nanoTime();
+      long wait = nextSlotNanos - now;
+      nextSlotNanos = Math.max(now, nextSlotNanos) + intervalNanos;
+      if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
+}
@@ -0,0 +1,4 @@
+package dev.ted.stream.ai_chronicles.domain;
+
+public record Exchange(String prompt, String answer) {
+}
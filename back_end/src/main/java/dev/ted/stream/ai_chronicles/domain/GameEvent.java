@@ -0,0 +1,18 @@
+package dev.ted.stream.ai_chronicles.domain;
+
+// Game state the model reports alongside its narrative, one change at a time.
+public sealed interface GameEvent {
+
+  record Narrative(String text) implements GameEvent {
+  }
+
+  // quantity is how many were gained, or lost if negative
+  record InventoryChange(String item, int quantity) implements GameEvent {
+  }
+
+  record Hazard(String name, String severity) implements GameEvent {
+  }
+
+  record RobotAttitude(String robot, String attitude) implements GameEvent {
+  }
+}
@@ -0,0 +1,115 @@
+package dev.ted.stream.ai_chronicles.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Finds the past exchanges of a session most relevant to a prompt, ranked by
+// BM25 over their words. Exchanges are identified by their position in the
+// transcript; the index keeps only word statistics, not the text, so the
+// transcript stays the one copy of it. Adding and searching may happen on
+// different threads.
+public class MemoryIndex {
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  private static final Set<String> STOP_WORDS = Set.of(
+    "a", "an", "and", "are", "as", "at", "be", "but", "by", "do", "for", "from", "has", "have", "he", "her",
+    "his", "i", "if", "in", "is", "it", "its", "me", "my", "no", "not", "of", "on", "or", "our", "she", "so",
+    "that", "the", "their", "them", "then", "there", "they", "this", "to", "was", "we", "what", "when",
+    "which", "who", "will", "with", "you", "your");
+
+  private final Map<String, Postings> postings = new HashMap<>();
+  private int[] lengths = new int[16];
+  private int size;
+  private long totalLength;
+
+  public synchronized int size() {
+    return size;
+  }
+
+  // Indexes the exchanges that aren't indexed yet, one at a time, so a
+  // search never waits for a whole rebuild
+  public void addFrom(List<Exchange> transcript) {
+    while (true) {
+      synchronized (this) {
+        if (size >= transcript.size()) return;
+        add(transcript.get(size));
+      }
+    }
+  }
+
+  // Positions (in transcript order) of up to k exchanges before the given
+  // position that share the most telling words with the query
+  public synchronized List<Integer> search(String query, int k, int before) {
+    int candidates = Math.min(before, size);
+    if (candidates == 0 || k == 0) return List.of();
+
+    double averageLength = (double) totalLength / size;
+    double[] scores = new double[candidates];
+    for (String term : new LinkedHashSet<>(tokenize(query))) {
+      Postings termPostings = postings.get(term);
+      if (termPostings == null) continue;
+      double idf = Math.log(1 + (size - termPostings.count + 0.5) / (termPostings.count + 0.5));
+      for (int i = 0; i < termPostings.count && termPostings.positions[i] < candidates; i++) {
+        int position = termPostings.positions[i];
+        int frequency = termPostings.frequencies[i];
+        double norm = K1 * (1 - B + B * lengths[position] / averageLength);
+        scores[position] += idf * frequency * (K1 + 1) / (frequency + norm);
+      }
+    }
+
+    PriorityQueue<Integer> best = new PriorityQueue<>(k + 1,
+      (left, right) -> scores[left] != scores[right] ? Double.compare(scores[left], scores[right]) : Integer.compare(left, right));
+    for (int position = 0; position < candidates; position++) {
+      if (scores[position] == 0) continue;
+      best.add(position);
+      if (best.size() > k) best.poll();
+    }
+    List<Integer> positions = new ArrayList<>(best);
+    positions.sort(null);
+    return positions;
+  }
+
+  private void add(Exchange exchange) {
+    List<String> terms = tokenize(exchange.prompt() + " " + exchange.answer());
+    Map<String, Integer> frequencies = new HashMap<>();
+    terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+    frequencies.forEach((term, frequency) ->
+      postings.computeIfAbsent(term, key -> new Postings()).add(size, frequency));
+
+    if (size == lengths.length) lengths = Arrays.copyOf(lengths, size * 2);
+    lengths[size++] = terms.size();
+    totalLength += terms.size();
+  }
+
+  static List<String> tokenize(String text) {
+    List<String> terms = new ArrayList<>();
+    for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (word.length() > 1 && !STOP_WORDS.contains(word)) terms.add(word);
+    }
+    return terms;
+  }
+
+  // Positions are added in increasing order, so they stay sorted
+  private static class Postings {
+    private int[] positions = new int[4];
+    private int[] frequencies = new int[4];
+    private int count;
+
+    void add(int position, int frequency) {
+      if (count == positions.length) {
+        positions = Arrays.copyOf(positions, count * 2);
+        frequencies = Arrays.copyOf(frequencies, count * 2);
+      }
+      positions[count] = position;
+      frequencies[count] = frequency;
+      count++;
+    }
+  }
+}
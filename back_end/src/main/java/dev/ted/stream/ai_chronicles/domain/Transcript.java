@@ -0,0 +1,25 @@
+package dev.ted.stream.ai_chronicles.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record Transcript(List<Exchange> exchanges) {
+
+  public static Transcript empty() {
+    return new Transcript(List.of());
+  }
+
+  public Transcript {
+    exchanges = List.copyOf(exchanges);
+  }
+
+  public Transcript add(Exchange exchange) {
+    List<Exchange> added = new ArrayList<>(exchanges);
+    added.add(exchange);
+    return new Transcript(added);
+  }
+
+  public int size() {
+    return exchanges.size();
+  }
+}
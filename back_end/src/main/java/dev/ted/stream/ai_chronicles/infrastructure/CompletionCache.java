@@ -0,0 +1,29 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import java.util.Optional;
+
+public interface CompletionCache {
+
+  static CompletionCache disabled() {
+    return new CompletionCache() {
+      @Override
+      public Optional<String> get(String key) {
+        return Optional.empty();
+      }
+
+      @Override
+      public void put(String key, String completion) {
+      }
+    };
+  }
+
+  Optional<String> get(String key);
+
+  // A cache that asks another node for the key gives up, as a miss, once the
+  // deadline has passed
+  default Optional<String> get(String key, Deadline deadline) {
+    return get(key);
+  }
+
+  void put(String key, String completion);
+}
@@ -0,0 +1,50 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Maps keys to nodes so that adding or removing a node only moves the keys
+// owned by that node. Each node is placed on the ring many times ("virtual
+// nodes") to even out the share of keys each node receives.
+public class ConsistentHashRing {
+  static final int DEFAULT_VIRTUAL_NODES = 128;
+
+  private final SortedMap<Long, String> ring = new TreeMap<>();
+
+  public ConsistentHashRing(List<String> nodes) {
+    this(nodes, DEFAULT_VIRTUAL_NODES);
+  }
+
+  public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("Consistent hash ring needs at least one node");
+    }
+    for (String node : nodes) {
+      for (int i = 0; i < virtualNodes; i++) {
+        ring.put(hash(node + "#" + i), node);
+      }
+    }
+  }
+
+  public String nodeFor(String key) {
+    SortedMap<Long, String> tail = ring.tailMap(hash(key));
+    return tail.isEmpty()
+      ? ring.get(ring.firstKey())
+      : tail.get(tail.firstKey());
+  }
+
+  private static long hash(String value) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5")
+        .digest(value.getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(digest).getLong();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
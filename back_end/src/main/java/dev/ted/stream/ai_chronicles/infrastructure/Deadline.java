@@ -0,0 +1,102 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// The time by which a request must be finished, measured with System.nanoTime()
+// so that it's unaffected by wall-clock adjustments. A cancellable deadline
+// can also be ended early: once cancelled it counts as expired, and requests
+// in flight under it are cut off just as when it passes.
+public final class Deadline {
+  private static final Deadline NONE = new Deadline(0, false, null);
+  private static final Runnable NOTHING_TO_STOP = () -> {
+  };
+
+  private final long expiresAtNanos;
+  private final boolean bounded;
+  private final Cancellation cancellation;
+
+  private Deadline(long expiresAtNanos, boolean bounded, Cancellation cancellation) {
+    this.expiresAtNanos = expiresAtNanos;
+    this.bounded = bounded;
+    this.cancellation = cancellation;
+  }
+
+  public static Deadline after(Duration timeout) {
+    return new Deadline(System.nanoTime() + timeout.toNanos(), true, null);
+  }
+
+  public static Deadline none() {
+    return NONE;
+  }
+
+  // The same deadline, plus cancel()
+  public Deadline cancellable() {
+    return new Deadline(expiresAtNanos, bounded, new Cancellation());
+  }
+
+  public void cancel() {
+    if (cancellation == null) throw new IllegalStateException("Deadline isn't cancellable");
+    cancellation.cancel();
+  }
+
+  public boolean isCancelled() {
+    return cancellation != null && cancellation.cancelled.get();
+  }
+
+  // Runs action once this deadline is cancelled, straight away if it already
+  // has been; running the returned Runnable stops that.
+  public Runnable onCancel(Runnable action) {
+    return cancellation == null ? NOTHING_TO_STOP : cancellation.add(action);
+  }
+
+  public boolean isBounded() {
+    return bounded;
+  }
+
+  public boolean isExpired() {
+    return isCancelled() || bounded && System.nanoTime() - expiresAtNanos >= 0;
+  }
+
+  // Unbounded deadlines have effectively forever remaining
+  public Duration remaining() {
+    if (isCancelled()) return Duration.ZERO;
+    if (!bounded) return Duration.ofMillis(Long.MAX_VALUE);
+    return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+  }
+
+  public void requireNotExpired(String action) {
+    if (isCancelled()) {
+      throw new DeadlineExceededException("Deadline cancelled before " + action);
+    }
+    if (isExpired()) {
+      throw new DeadlineExceededException("Deadline expired before " + action);
+    }
+  }
+
+  // An action runs only if removing it succeeds, so it runs at most once
+  // whether it was added before or after cancel()
+  private static class Cancellation {
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final Set<Runnable> actions = ConcurrentHashMap.newKeySet();
+
+    void cancel() {
+      if (!cancelled.compareAndSet(false, true)) return;
+      actions.forEach(this::runOnce);
+    }
+
+    Runnable add(Runnable action) {
+      // wrapped, so the same action added twice is two entries
+      Runnable entry = action::run;
+      actions.add(entry);
+      if (cancelled.get()) runOnce(entry);
+      return () -> actions.remove(entry);
+    }
+
+    private void runOnce(Runnable entry) {
+      if (actions.remove(entry)) entry.run();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.AbstractList;
+import java.util.List;
+
+// A request's messages (prefix, history, prompt) along with their JSON, most
+// of it encoded on earlier turns by MessageEncoder. It serializes by writing
+// that JSON straight to the output stream. As a List, it's equal to any list
+// of the same messages; history messages are only created if asked for.
+@JsonSerialize(using = EncodedMessages.Serializer.class)
+final class EncodedMessages extends AbstractList<OpenAiRequestBody.Message> {
+  private final List<OpenAiRequestBody.Message> prefix;
+  private final byte[] prefixJson;
+  private final List<Exchange> history;
+  private final History historyJson;
+  private final OpenAiRequestBody.Message last;
+  private final byte[] lastJson;
+
+  EncodedMessages(List<OpenAiRequestBody.Message> prefix, byte[] prefixJson,
+                  List<Exchange> history, History historyJson,
+                  OpenAiRequestBody.Message last, byte[] lastJson) {
+    this.prefix = prefix;
+    this.prefixJson = prefixJson;
+    this.history = history;
+    this.historyJson = historyJson;
+    this.last = last;
+    this.lastJson = lastJson;
+  }
+
+  @Override
+  public OpenAiRequestBody.Message get(int index) {
+    if (index < prefix.size()) return prefix.get(index);
+    int historyIndex = index - prefix.size();
+    if (historyIndex == history.size() * 2) return last;
+    Exchange exchange = history.get(historyIndex / 2);
+    return historyIndex % 2 == 0
+      ? new OpenAiRequestBody.Message("user", exchange.prompt())
+      : new OpenAiRequestBody.Message("assistant", exchange.answer());
+  }
+
+  @Override
+  public int size() {
+    return prefix.size() + history.size() * 2 + 1;
+  }
+
+  // Digest of the messages' JSON, carried on from the history's digest
+  MessageDigest digest() {
+    MessageDigest digest = MessageEncoder.copy(historyJson.digest());
+    digest.update(lastJson);
+    return digest;
+  }
+
+  private void writeTo(OutputStream out) throws IOException {
+    out.write('[');
+    out.write(prefixJson);
+    if (prefixJson.length > 0 && historyJson.length() > 0) out.write(',');
+    out.write(historyJson.json(), 0, historyJson.length());
+    if (prefixJson.length > 0 || historyJson.length() > 0) out.write(',');
+    out.write(lastJson);
+    out.write(']');
+  }
+
+  record History(byte[] json, int length, MessageDigest digest) {
+  }
+
+  static class Serializer extends StdSerializer<EncodedMessages> {
+    Serializer() {
+      super(EncodedMessages.class);
+    }
+
+    @Override
+    public void serialize(EncodedMessages messages, JsonGenerator generator, SerializerProvider provider) throws IOException {
+      if (generator.getOutputTarget() instanceof OutputStream out) {
+        // an empty raw value writes the field's separator; then the array goes past the generator's buffer
+        generator.writeRawValue("");
+        generator.flush();
+        messages.writeTo(out);
+      } else {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        messages.writeTo(json);
+        generator.writeRawValue(json.toString(StandardCharsets.UTF_8));
+      }
+    }
+  }
+}
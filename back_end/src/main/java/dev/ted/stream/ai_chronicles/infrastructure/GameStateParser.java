@@ -0,0 +1,139 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import dev.ted.stream.ai_chronicles.domain.GameEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Parses the structured turn as its JSON arrives in fragments, emitting each
+// game event as soon as its value is complete rather than when the whole
+// document is. Expects
+//   {"narrative": "...",
+//    "inventory": [{"item": "...", "quantity": 1}],
+//    "hazards": [{"name": "...", "severity": "..."}],
+//    "attitudes": [{"robot": "...", "attitude": "..."}]}
+// in any field order. Unknown fields, and anything nested deeper, are skipped.
+public class GameStateParser {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final int TOP_LEVEL = 1;
+  private static final int ELEMENT = 3;
+
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  private final Consumer<GameEvent> listener;
+  private int depth;
+  private String topLevelField;
+  private Map<String, Object> element;
+  private String elementField;
+  private String narrative;
+
+  public GameStateParser(Consumer<GameEvent> listener) {
+    try {
+      this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    this.listener = listener;
+  }
+
+  public void accept(String fragment) {
+    byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+    try {
+      feeder.feedInput(bytes, 0, bytes.length);
+      JsonToken token;
+      while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+        handle(token);
+      }
+    } catch (IOException e) {
+      throw new MalformedGameStateException("Malformed structured output", e);
+    }
+  }
+
+  // Call once the stream has ended; fails if the document was cut off
+  public void finish() {
+    feeder.endOfInput();
+    if (depth != 0) {
+      throw new MalformedGameStateException("Structured output ended mid-document", null);
+    }
+  }
+
+  // null until the narrative field has been parsed
+  public String narrative() {
+    return narrative;
+  }
+
+  private void handle(JsonToken token) throws IOException {
+    switch (token) {
+      case START_OBJECT -> {
+        depth++;
+        if (depth == ELEMENT && isEventArray(topLevelField)) element = new HashMap<>();
+      }
+      case END_OBJECT -> {
+        if (depth == ELEMENT && element != null) {
+          emitElement();
+          element = null;
+        }
+        depth--;
+      }
+      case START_ARRAY -> depth++;
+      case END_ARRAY -> depth--;
+      case FIELD_NAME -> {
+        if (depth == TOP_LEVEL) topLevelField = parser.currentName();
+        if (depth == ELEMENT) elementField = parser.currentName();
+      }
+      case VALUE_STRING, VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT, VALUE_TRUE, VALUE_FALSE, VALUE_NULL -> {
+        if (depth == TOP_LEVEL && "narrative".equals(topLevelField) && token == JsonToken.VALUE_STRING) {
+          narrative = parser.getText();
+          listener.accept(new GameEvent.Narrative(narrative));
+        } else if (depth == ELEMENT && element != null) {
+          element.put(elementField, switch (token) {
+            case VALUE_NUMBER_INT -> parser.getIntValue();
+            case VALUE_NULL -> null;
+            default -> parser.getText();
+          });
+        }
+      }
+      default -> {
+      }
+    }
+  }
+
+  private void emitElement() {
+    GameEvent event = switch (topLevelField) {
+      case "inventory" -> element.get("item") instanceof String item
+        ? new GameEvent.InventoryChange(item, element.get("quantity") instanceof Integer quantity ? quantity : 1)
+        : null;
+      case "hazards" -> element.get("name") instanceof String name
+        ? new GameEvent.Hazard(name, text(element.get("severity")))
+        : null;
+      case "attitudes" -> element.get("robot") instanceof String robot
+        ? new GameEvent.RobotAttitude(robot, text(element.get("attitude")))
+        : null;
+      default -> null;
+    };
+    if (event != null) listener.accept(event);
+  }
+
+  private static String text(Object value) {
+    return value == null ? null : value.toString();
+  }
+
+  private static boolean isEventArray(String field) {
+    return "inventory".equals(field) || "hazards".equals(field) || "attitudes".equals(field);
+  }
+
+  public static class MalformedGameStateException extends RuntimeException {
+    MalformedGameStateException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
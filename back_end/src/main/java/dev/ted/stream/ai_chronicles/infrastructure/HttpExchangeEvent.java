@@ -0,0 +1,39 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// One JsonHttpClient request, from sending it until its response is read.
+// Byte sizes are only known for real requests, not nulled ones.
+@Name("dev.ted.stream.ai_chronicles.HttpExchange")
+@Label("HTTP Exchange")
+@Category({"AI Chronicles", "HTTP"})
+@StackTrace(false)
+class HttpExchangeEvent extends jdk.jfr.Event {
+  @Label("Method")
+  String method;
+
+  @Label("URL")
+  String url;
+
+  @Label("Request Size")
+  @DataAmount
+  long requestBytes;
+
+  @Label("Response Size")
+  @DataAmount
+  long responseBytes;
+
+  @Label("Time to First Byte")
+  @Timespan
+  long timeToFirstByte;
+
+  @Label("Outcome")
+  @Description("OK, or the simple name of the exception the request failed with")
+  String outcome;
+}
@@ -1,24 +1,70 @@
 package dev.ted.stream.ai_chronicles.infrastructure;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.ted.stream.ai_chronicles.OutputListener;
 import dev.ted.stream.ai_chronicles.OutputTracker;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Outcome;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Phase;
+import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class JsonHttpClient {
+  private static final String SSE_DATA = "data:";
+  private static final String SSE_DONE = "[DONE]";
 
   private final RestTemplateWrapper restTemplateWrapper;
   private final OutputListener<JsonHttpRequest> listener = new OutputListener<>();
+  private final OutputListener<RequestPhases> phaseListener = new OutputListener<>();
+  private final PhaseHistograms phaseHistograms = new PhaseHistograms();
 
   public static JsonHttpClient create() {
-    return new JsonHttpClient(new RealRestTemplate());
+    return new JsonHttpClient(new RealRestTemplate(new TimedRequestFactory()));
+  }
+
+  public static JsonHttpClient create(Duration timeout) {
+    TimedRequestFactory requestFactory = new TimedRequestFactory();
+    requestFactory.setConnectTimeout((int) timeout.toMillis());
+    requestFactory.setReadTimeout((int) timeout.toMillis());
+    return new JsonHttpClient(new RealRestTemplate(requestFactory));
   }
 
   public static JsonHttpClient createNull() {
@@ -36,33 +82,144 @@ public class JsonHttpClient {
   public <R> R get(String urlTemplate,
                    Class<R> convertedResponseType,
                    String... urlVariables) {
-    listener.emit(JsonHttpRequest.createGet(
-      interpolateUrl(urlTemplate, urlVariables)));
-    return restTemplateWrapper.getForEntity(urlTemplate,
+    JsonHttpRequest request = JsonHttpRequest.createGet(
+      interpolateUrl(urlTemplate, urlVariables));
+    listener.emit(request);
+    return timed(request, Deadline.none(), () -> restTemplateWrapper.getForEntity(urlTemplate,
         convertedResponseType,
         (Object[]) urlVariables)
-      .getBody();
+      .getBody());
+  }
+
+  public <R> R get(String url,
+                   Class<R> convertedResponseType,
+                   Map<String, String> headers,
+                   Deadline deadline) {
+    deadline.requireNotExpired("sending GET to " + url);
+    JsonHttpRequest request = JsonHttpRequest.createGet(url, headers);
+    listener.emit(request);
+    HttpHeaders httpHeaders = new HttpHeaders();
+    headers.forEach(httpHeaders::add);
+    return timed(request, deadline, () -> restTemplateWrapper.exchange(
+      url,
+      HttpMethod.GET,
+      new HttpEntity<>(httpHeaders),
+      convertedResponseType
+    ).getBody());
   }
 
   public <R> R post(String url,
                     Class<R> convertedResponseType,
                     Map<String, String> headers,
                     Object body) {
-    listener.emit(JsonHttpRequest.createPost(url, headers, body));
+    return post(url, convertedResponseType, headers, body, Deadline.none());
+  }
+
+  // The deadline bounds connecting and reading, and the connection is closed
+  // if it's still in use when the deadline passes. Expired requests aren't sent.
+  public <R> R post(String url,
+                    Class<R> convertedResponseType,
+                    Map<String, String> headers,
+                    Object body,
+                    Deadline deadline) {
+    deadline.requireNotExpired("sending POST to " + url);
+    JsonHttpRequest request = JsonHttpRequest.createPost(url, headers, body);
+    listener.emit(request);
     HttpHeaders httpHeaders = new HttpHeaders();
     headers.forEach(httpHeaders::add);
-    return restTemplateWrapper.exchange(
+    return timed(request, deadline, () -> restTemplateWrapper.exchange(
       url,
       HttpMethod.POST,
       new HttpEntity<>(body, httpHeaders),
       convertedResponseType
-    ).getBody();
+    ).getBody());
+  }
+
+  // Sends a POST whose response is a stream of server-sent events, handing
+  // each event's data to onData as soon as it arrives. The stream ends at
+  // OpenAI's "[DONE]" marker or when the server closes it.
+  public void postStreaming(String url,
+                            Map<String, String> headers,
+                            Object body,
+                            Deadline deadline,
+                            Consumer<String> onData) {
+    deadline.requireNotExpired("sending POST to " + url);
+    JsonHttpRequest request = JsonHttpRequest.createPost(url, headers, body);
+    listener.emit(request);
+    HttpHeaders httpHeaders = new HttpHeaders();
+    headers.forEach(httpHeaders::add);
+    timed(request, deadline, () -> {
+      restTemplateWrapper.stream(url, new HttpEntity<>(body, httpHeaders), onData);
+      return null;
+    });
+  }
+
+  // Round-trips bodies through the Jackson mapper that real requests use,
+  // without sending anything: the mapper caches its serializers, and the JIT
+  // gets to see the code before the first real request does.
+  public void exerciseJson(Object requestBody, Object sampleResponse) {
+    ObjectMapper objectMapper = restTemplateWrapper.objectMapper();
+    try {
+      objectMapper.writeValueAsBytes(requestBody);
+      objectMapper.readValue(objectMapper.writeValueAsBytes(sampleResponse), sampleResponse.getClass());
+    } catch (IOException e) {
+      throw new IllegalStateException("Can't round-trip " + sampleResponse.getClass().getSimpleName() + " as JSON", e);
+    }
   }
 
   public OutputTracker<JsonHttpRequest> trackRequests() {
     return listener.createTracker();
   }
 
+  public OutputTracker<RequestPhases> trackPhases() {
+    return phaseListener.createTracker();
+  }
+
+  public PhaseHistograms phaseHistograms() {
+    return phaseHistograms;
+  }
+
+  private <R> R timed(JsonHttpRequest request, Deadline deadline, Supplier<R> send) {
+    HttpExchangeEvent event = new HttpExchangeEvent();
+    event.begin();
+    InFlightRequest inFlight = InFlightRequest.start(deadline);
+    Outcome outcome = Outcome.FAILED;
+    try {
+      R response = send.get();
+      outcome = Outcome.OK;
+      event.outcome = "OK";
+      return response;
+    } catch (ResourceAccessException e) {
+      event.outcome = e.getClass().getSimpleName();
+      if (deadline.isCancelled()) {
+        outcome = Outcome.DEADLINE_EXCEEDED;
+        throw new DeadlineExceededException("Deadline cancelled waiting for response from " + request.url(), e);
+      }
+      if (deadline.isExpired()) {
+        outcome = Outcome.DEADLINE_EXCEEDED;
+        throw new DeadlineExceededException("Deadline expired waiting for response from " + request.url(), e);
+      }
+      throw e;
+    } catch (RuntimeException e) {
+      event.outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      long finished = System.nanoTime();
+      inFlight.finish();
+      RequestPhases phases = new RequestPhases(request, outcome, inFlight.durations(finished));
+      phaseHistograms.record(phases);
+      phaseListener.emit(phases);
+      if (event.shouldCommit()) {
+        event.method = request.httpMethod().name();
+        event.url = request.url();
+        event.requestBytes = inFlight.requestBytes;
+        event.responseBytes = inFlight.responseBytes;
+        event.timeToFirstByte = inFlight.timeToFirstByteNanos();
+        event.commit();
+      }
+    }
+  }
+
   private static String interpolateUrl(String urlTemplate, Object[] uriVariables) {
     return new DefaultUriBuilderFactory()
       .expand(urlTemplate, uriVariables)
@@ -74,6 +231,10 @@ public class JsonHttpClient {
     <T> ResponseEntityWrapper<T> getForEntity(String url, Class<T> responseType, Object... uriVariables);
 
     <T> ResponseEntityWrapper<T> exchange(String url, HttpMethod method, HttpEntity<Object> request, Class<T> responseType);
+
+    void stream(String url, HttpEntity<Object> request, Consumer<String> onData);
+
+    ObjectMapper objectMapper();
   }
 
   interface ResponseEntityWrapper<T> {
@@ -81,7 +242,14 @@ public class JsonHttpClient {
   }
 
   private static class RealRestTemplate implements RestTemplateWrapper {
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+
+    RealRestTemplate(TimedRequestFactory requestFactory) {
+      this.restTemplate = new RestTemplate(requestFactory);
+      restTemplate.getMessageConverters().replaceAll(converter ->
+        converter instanceof MappingJackson2HttpMessageConverter ? new TimedJacksonConverter() : converter);
+      restTemplate.getInterceptors().add(new TimingInterceptor());
+    }
 
     @Override
     public <T> ResponseEntityWrapper<T> getForEntity(String url, Class<T> responseType, Object... uriVariables) {
@@ -98,6 +266,34 @@ public class JsonHttpClient {
         method, request, responseType);
       return new RealResponseEntity<>(responseEntity);
     }
+
+    @Override
+    public void stream(String url, HttpEntity<Object> request, Consumer<String> onData) {
+      restTemplate.execute(url, HttpMethod.POST, restTemplate.httpEntityCallback(request), response -> {
+        try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            // close enough: event data is almost all ASCII
+            InFlightRequest.countResponseBytes(line.length() + 1);
+            if (!line.startsWith(SSE_DATA)) continue;
+            String data = line.substring(SSE_DATA.length()).strip();
+            if (data.equals(SSE_DONE)) break;
+            onData.accept(data);
+          }
+        }
+        return null;
+      });
+    }
+
+    @Override
+    public ObjectMapper objectMapper() {
+      return restTemplate.getMessageConverters().stream()
+        .filter(TimedJacksonConverter.class::isInstance)
+        .map(converter -> ((TimedJacksonConverter) converter).getObjectMapper())
+        .findFirst()
+        .orElseThrow();
+    }
   }
 
   private static class RealResponseEntity<T> implements ResponseEntityWrapper<T> {
@@ -112,27 +308,620 @@ public class JsonHttpClient {
     }
   }
 
+  //    PHASE TIMING AND DEADLINES
+
+  // The request in progress on the current thread: its deadline, the watchdog
+  // that enforces it, and the phase timings collected so far.
+  private static class InFlightRequest {
+    private static final ThreadLocal<InFlightRequest> CURRENT = new ThreadLocal<>();
+
+    private final Deadline deadline;
+    private final Map<Phase, Duration> measured = new EnumMap<>(Phase.class);
+    private long exchangeStarted;
+    private long tcpConnected;
+    private long handshakeCompleted;
+    private long firstByteReceived;
+    private long requestBytes;
+    private long responseBytes;
+    private ScheduledFuture<?> watchdog;
+    private Runnable stopDisconnectOnCancel;
+
+    private InFlightRequest(Deadline deadline) {
+      this.deadline = deadline;
+    }
+
+    static InFlightRequest start(Deadline deadline) {
+      InFlightRequest inFlight = new InFlightRequest(deadline);
+      CURRENT.set(inFlight);
+      return inFlight;
+    }
+
+    static InFlightRequest current() {
+      return CURRENT.get();
+    }
+
+    static void measure(Phase phase, long startNanos) {
+      InFlightRequest inFlight = CURRENT.get();
+      if (inFlight != null) inFlight.measured.merge(phase, Duration.ofNanos(System.nanoTime() - startNanos), Duration::plus);
+    }
+
+    static void countResponseBytes(long bytes) {
+      InFlightRequest inFlight = CURRENT.get();
+      if (inFlight != null) inFlight.responseBytes += bytes;
+    }
+
+    void finish() {
+      if (watchdog != null) watchdog.cancel(false);
+      if (stopDisconnectOnCancel != null) stopDisconnectOnCancel.run();
+      CURRENT.remove();
+    }
+
+    long timeToFirstByteNanos() {
+      return firstByteReceived == 0 ? 0 : firstByteReceived - exchangeStarted;
+    }
+
+    // A request that failed or timed out part-way spent the rest of its time
+    // in the phase it never got past, which then lasts until it finished;
+    // the phases after that one are left out.
+    Map<Phase, Duration> durations(long finished) {
+      Map<Phase, Duration> durations = new EnumMap<>(measured);
+      if (exchangeStarted == 0) return durations;
+
+      long connected = tcpConnected == 0 ? exchangeStarted : tcpConnected;
+      durations.put(Phase.CONNECT, between(exchangeStarted, connected));
+      if (tcpConnected != 0 && handshakeCompleted == 0 && firstByteReceived == 0) {
+        durations.put(Phase.TLS, between(connected, finished));
+        return durations;
+      }
+      long secured = handshakeCompleted == 0 ? connected : handshakeCompleted;
+      durations.put(Phase.TLS, between(connected, secured));
+      durations.put(Phase.TIME_TO_FIRST_BYTE, between(secured, firstByteReceived == 0 ? finished : firstByteReceived));
+      return durations;
+    }
+
+    private static Duration between(long startNanos, long endNanos) {
+      return Duration.ofNanos(Math.max(0, endNanos - startNanos));
+    }
+  }
+
+  private static class TimingInterceptor implements ClientHttpRequestInterceptor {
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+      InFlightRequest inFlight = InFlightRequest.current();
+      if (inFlight == null) return execution.execute(request, body);
+
+      inFlight.exchangeStarted = System.nanoTime();
+      inFlight.requestBytes = body.length;
+      ClientHttpResponse response = execution.execute(request, body);
+      response.getStatusCode();
+      inFlight.firstByteReceived = System.nanoTime();
+      return response;
+    }
+  }
+
+  private static class TimedJacksonConverter extends MappingJackson2HttpMessageConverter {
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+      long start = System.nanoTime();
+      super.writeInternal(object, type, outputMessage);
+      InFlightRequest.measure(Phase.SERIALIZE, start);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+      long transferStart = System.nanoTime();
+      byte[] body = inputMessage.getBody().readAllBytes();
+      InFlightRequest.measure(Phase.TRANSFER, transferStart);
+      InFlightRequest.countResponseBytes(body.length);
+
+      long deserializeStart = System.nanoTime();
+      Object result = super.read(type, contextClass, new BufferedInputMessage(inputMessage.getHeaders(), body));
+      InFlightRequest.measure(Phase.DESERIALIZE, deserializeStart);
+      return result;
+    }
+  }
+
+  private record BufferedInputMessage(HttpHeaders headers, byte[] body) implements HttpInputMessage {
+    @Override
+    public InputStream getBody() {
+      return new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+  }
+
+  private static class TimedRequestFactory extends SimpleClientHttpRequestFactory {
+    private static final TimedSslSocketFactory SSL_SOCKET_FACTORY =
+      new TimedSslSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+    private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+      super.prepareConnection(connection, httpMethod);
+      // Must be the same factory instance every time, or kept-alive connections won't be reused
+      if (connection instanceof HttpsURLConnection https) https.setSSLSocketFactory(SSL_SOCKET_FACTORY);
+
+      InFlightRequest inFlight = InFlightRequest.current();
+      if (inFlight == null) return;
+      // Blocking socket I/O ignores interrupts; closing the connection is what cuts it off
+      inFlight.stopDisconnectOnCancel = inFlight.deadline.onCancel(connection::disconnect);
+      if (!inFlight.deadline.isBounded()) return;
+
+      // Timeouts only bound each connect or read; the watchdog bounds the whole exchange
+      int remainingMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, inFlight.deadline.remaining().toMillis()));
+      connection.setConnectTimeout(shorterTimeout(connection.getConnectTimeout(), remainingMillis));
+      connection.setReadTimeout(shorterTimeout(connection.getReadTimeout(), remainingMillis));
+      inFlight.watchdog = WATCHDOG.schedule(connection::disconnect, remainingMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // A timeout of zero means no timeout
+    private static int shorterTimeout(int configuredMillis, int remainingMillis) {
+      return configuredMillis == 0 ? remainingMillis : Math.min(configuredMillis, remainingMillis);
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+      ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "json-http-deadline-watchdog");
+        thread.setDaemon(true);
+        return thread;
+      });
+      watchdog.setRemoveOnCancelPolicy(true);
+      return watchdog;
+    }
+  }
+
+  // Leaves unconnected sockets unimplemented, so the JDK's HTTPS client opens a
+  // plain socket and then asks us to layer TLS over it. That tells us when the
+  // TCP connection was made; the JDK's own startHandshake() call, which blocks
+  // until TLS is done, tells us when the handshake finished.
+  private static class TimedSslSocketFactory extends SSLSocketFactory {
+    private final SSLSocketFactory delegate;
+
+    TimedSslSocketFactory(SSLSocketFactory delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+      InFlightRequest inFlight = InFlightRequest.current();
+      SSLSocket sslSocket = (SSLSocket) delegate.createSocket(socket, host, port, autoClose);
+      if (inFlight == null) return sslSocket;
+
+      inFlight.tcpConnected = System.nanoTime();
+      return new TimedSslSocket(sslSocket, inFlight);
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+      return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+      return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+      return delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+      return delegate.createSocket(host, port, localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+      return delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+      return delegate.createSocket(address, port, localAddress, localPort);
+    }
+  }
+
+  // Delegates everything to the JDK's TLS socket, timing the handshake. The
+  // JDK's HTTPS client calls startHandshake() itself, right after layering TLS;
+  // calling it from here as well would start a second handshake.
+  private static class TimedSslSocket extends SSLSocket {
+    private final SSLSocket delegate;
+    private final InFlightRequest inFlight;
+
+    TimedSslSocket(SSLSocket delegate, InFlightRequest inFlight) {
+      this.delegate = delegate;
+      this.inFlight = inFlight;
+    }
+
+    @Override
+    public void startHandshake() throws IOException {
+      delegate.startHandshake();
+      if (inFlight.handshakeCompleted == 0) inFlight.handshakeCompleted = System.nanoTime();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+      return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+      return delegate.getEnabledCipherSuites();
+    }
+
+    @Override
+    public void setEnabledCipherSuites(String[] suites) {
+      delegate.setEnabledCipherSuites(suites);
+    }
+
+    @Override
+    public String[] getSupportedProtocols() {
+      return delegate.getSupportedProtocols();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+      return delegate.getEnabledProtocols();
+    }
+
+    @Override
+    public void setEnabledProtocols(String[] protocols) {
+      delegate.setEnabledProtocols(protocols);
+    }
+
+    @Override
+    public SSLSession getSession() {
+      return delegate.getSession();
+    }
+
+    @Override
+    public SSLSession getHandshakeSession() {
+      return delegate.getHandshakeSession();
+    }
+
+    @Override
+    public void addHandshakeCompletedListener(HandshakeCompletedListener listener) {
+      delegate.addHandshakeCompletedListener(listener);
+    }
+
+    @Override
+    public void removeHandshakeCompletedListener(HandshakeCompletedListener listener) {
+      delegate.removeHandshakeCompletedListener(listener);
+    }
+
+    @Override
+    public void setUseClientMode(boolean mode) {
+      delegate.setUseClientMode(mode);
+    }
+
+    @Override
+    public boolean getUseClientMode() {
+      return delegate.getUseClientMode();
+    }
+
+    @Override
+    public void setNeedClientAuth(boolean need) {
+      delegate.setNeedClientAuth(need);
+    }
+
+    @Override
+    public boolean getNeedClientAuth() {
+      return delegate.getNeedClientAuth();
+    }
+
+    @Override
+    public void setWantClientAuth(boolean want) {
+      delegate.setWantClientAuth(want);
+    }
+
+    @Override
+    public boolean getWantClientAuth() {
+      return delegate.getWantClientAuth();
+    }
+
+    @Override
+    public void setEnableSessionCreation(boolean flag) {
+      delegate.setEnableSessionCreation(flag);
+    }
+
+    @Override
+    public boolean getEnableSessionCreation() {
+      return delegate.getEnableSessionCreation();
+    }
+
+    @Override
+    public SSLParameters getSSLParameters() {
+      return delegate.getSSLParameters();
+    }
+
+    @Override
+    public void setSSLParameters(SSLParameters params) {
+      delegate.setSSLParameters(params);
+    }
+
+    @Override
+    public String getApplicationProtocol() {
+      return delegate.getApplicationProtocol();
+    }
+
+    @Override
+    public String getHandshakeApplicationProtocol() {
+      return delegate.getHandshakeApplicationProtocol();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return delegate.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      return delegate.getOutputStream();
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+      delegate.connect(endpoint, timeout);
+    }
+
+    @Override
+    public void bind(SocketAddress bindpoint) throws IOException {
+      delegate.bind(bindpoint);
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+      delegate.shutdownInput();
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+      delegate.shutdownOutput();
+    }
+
+    @Override
+    public boolean isConnected() {
+      return delegate.isConnected();
+    }
+
+    @Override
+    public boolean isBound() {
+      return delegate.isBound();
+    }
+
+    @Override
+    public boolean isClosed() {
+      return delegate.isClosed();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+      return delegate.isInputShutdown();
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+      return delegate.isOutputShutdown();
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+      return delegate.getInetAddress();
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+      return delegate.getLocalAddress();
+    }
+
+    @Override
+    public int getPort() {
+      return delegate.getPort();
+    }
+
+    @Override
+    public int getLocalPort() {
+      return delegate.getLocalPort();
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+      return delegate.getRemoteSocketAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+      return delegate.getLocalSocketAddress();
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) throws SocketException {
+      delegate.setSoTimeout(timeout);
+    }
+
+    @Override
+    public int getSoTimeout() throws SocketException {
+      return delegate.getSoTimeout();
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) throws SocketException {
+      delegate.setTcpNoDelay(on);
+    }
+
+    @Override
+    public boolean getTcpNoDelay() throws SocketException {
+      return delegate.getTcpNoDelay();
+    }
+
+    @Override
+    public void setKeepAlive(boolean on) throws SocketException {
+      delegate.setKeepAlive(on);
+    }
+
+    @Override
+    public boolean getKeepAlive() throws SocketException {
+      return delegate.getKeepAlive();
+    }
+
+    @Override
+    public void setSoLinger(boolean on, int linger) throws SocketException {
+      delegate.setSoLinger(on, linger);
+    }
+
+    @Override
+    public int getSoLinger() throws SocketException {
+      return delegate.getSoLinger();
+    }
+
+    @Override
+    public void setSendBufferSize(int size) throws SocketException {
+      delegate.setSendBufferSize(size);
+    }
+
+    @Override
+    public int getSendBufferSize() throws SocketException {
+      return delegate.getSendBufferSize();
+    }
+
+    @Override
+    public void setReceiveBufferSize(int size) throws SocketException {
+      delegate.setReceiveBufferSize(size);
+    }
+
+    @Override
+    public int getReceiveBufferSize() throws SocketException {
+      return delegate.getReceiveBufferSize();
+    }
+
+    @Override
+    public void setTrafficClass(int tc) throws SocketException {
+      delegate.setTrafficClass(tc);
+    }
+
+    @Override
+    public int getTrafficClass() throws SocketException {
+      return delegate.getTrafficClass();
+    }
+
+    @Override
+    public void setReuseAddress(boolean on) throws SocketException {
+      delegate.setReuseAddress(on);
+    }
+
+    @Override
+    public boolean getReuseAddress() throws SocketException {
+      return delegate.getReuseAddress();
+    }
+
+    @Override
+    public void setOOBInline(boolean on) throws SocketException {
+      delegate.setOOBInline(on);
+    }
+
+    @Override
+    public boolean getOOBInline() throws SocketException {
+      return delegate.getOOBInline();
+    }
+
+    @Override
+    public void sendUrgentData(int data) throws IOException {
+      delegate.sendUrgentData(data);
+    }
+
+    @Override
+    public <T> Socket setOption(SocketOption<T> name, T value) throws IOException {
+      delegate.setOption(name, value);
+      return this;
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+      return delegate.getOption(name);
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+      return delegate.supportedOptions();
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
+    }
+  }
+
   //    EMBEDDED STUB
 
+  // Configures a nulled endpoint beyond its responses: how long each response
+  // takes, and how often requests fail or time out instead. Plain responses
+  // in createNull()'s map are equivalent to NulledEndpoint.responding(response).
+  // An endpoint that also answers streaming requests gives its stream with
+  // alsoStreaming(); postStreaming() gets that instead of the responses.
+  public record NulledEndpoint(Object responses,
+                               Latency latency,
+                               double failureRate,
+                               Supplier<? extends RuntimeException> failure,
+                               double timeoutRate,
+                               StreamedResponse streamed) {
+
+    public static NulledEndpoint responding(Object responses) {
+      return new NulledEndpoint(responses, Latency.none(), 0, null, 0, null);
+    }
+
+    public NulledEndpoint withLatency(Latency latency) {
+      return new NulledEndpoint(responses, latency, failureRate, failure, timeoutRate, streamed);
+    }
+
+    public NulledEndpoint failingAtRate(double failureRate, Supplier<? extends RuntimeException> failure) {
+      return new NulledEndpoint(responses, latency, failureRate, failure, timeoutRate, streamed);
+    }
+
+    // A timed-out request waits until its deadline, or fails immediately if it has none
+    public NulledEndpoint timingOutAtRate(double timeoutRate) {
+      return new NulledEndpoint(responses, latency, failureRate, failure, timeoutRate, streamed);
+    }
+
+    public NulledEndpoint alsoStreaming(StreamedResponse streamed) {
+      return new NulledEndpoint(responses, latency, failureRate, failure, timeoutRate, streamed);
+    }
+  }
+
+  // The configured response for a streaming endpoint: the data of each event,
+  // delivered one every interval (after the endpoint's latency).
+  public record StreamedResponse(List<String> events, Duration interval) {
+    public static StreamedResponse of(List<String> events) {
+      return new StreamedResponse(events, Duration.ZERO);
+    }
+
+    public StreamedResponse withInterval(Duration interval) {
+      return new StreamedResponse(events, interval);
+    }
+  }
+
   private static class StubbedRestTemplate implements RestTemplateWrapper {
-    private final Map<String, Iterator<Object>> endpointsResponses;
+    private final Map<String, StubbedEndpoint> endpoints;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     public StubbedRestTemplate(Map<String, Object> endpointsResponses) {
-      this.endpointsResponses = new HashMap<>();
+      Map<String, StubbedEndpoint> endpoints = new HashMap<>();
       for (Map.Entry<String, Object> entry : endpointsResponses.entrySet()) {
-        this.endpointsResponses.put(entry.getKey(), normalizeResponses(entry));
-      }
-    }
-
-    @SuppressWarnings("unchecked")
-    private static Iterator<Object> normalizeResponses(Map.Entry<String, Object> entry) {
-      if (entry.getValue() instanceof List) {
-        // finite list of different responses
-        return ((List<Object>) entry.getValue()).iterator();
-      } else {
-        // generate infinite list of the one response
-        return Stream.generate(entry::getValue).iterator();
+        NulledEndpoint configuration = entry.getValue() instanceof NulledEndpoint nulledEndpoint
+          ? nulledEndpoint
+          : NulledEndpoint.responding(entry.getValue());
+        endpoints.put(entry.getKey(), new StubbedEndpoint(entry.getKey(), configuration));
       }
+      // never modified after this, so it can be shared between request threads
+      this.endpoints = Map.copyOf(endpoints);
     }
 
     @Override
@@ -140,29 +929,40 @@ public class JsonHttpClient {
                                                      Class<T> responseType,
                                                      Object... uriVariables) {
       String interpolatedUrl = interpolateUrl(url, uriVariables);
-      T response = nextResponse(interpolatedUrl, responseType);
+      T response = nextResponse(interpolatedUrl, responseType, false);
       return new StubbedResponseEntity<>(response);
     }
 
     @Override
     public <T> ResponseEntityWrapper<T> exchange(String url, HttpMethod method, HttpEntity<Object> request, Class<T> responseType) {
-      T response = nextResponse(url, responseType);
+      T response = nextResponse(url, responseType, false);
       return new StubbedResponseEntity<>(response);
     }
 
-    private <T> T nextResponse(String interpolatedUrl, Class<T> responseType) {
-      requireConfiguredResponseFor(interpolatedUrl);
+    @Override
+    public void stream(String url, HttpEntity<Object> request, Consumer<String> onData) {
+      StreamedResponse response = nextResponse(url, StreamedResponse.class, true);
+      endpoints.get(url).replay(response, onData);
+    }
 
-      @SuppressWarnings("unchecked")
-      Iterator<T> responses = (Iterator<T>) endpointsResponses.get(interpolatedUrl);
-      requireConfiguredResponsesAvailable(interpolatedUrl, responses);
+    @Override
+    public ObjectMapper objectMapper() {
+      return objectMapper;
+    }
 
-      T response = responses.next();
+    private <T> T nextResponse(String interpolatedUrl, Class<T> responseType, boolean streaming) {
+      requireConfiguredResponseFor(interpolatedUrl);
+
+      Object response = endpoints.get(interpolatedUrl).respond(streaming);
+      if (response instanceof RuntimeException failure) {
+        // configured exceptions simulate failed requests
+        throw failure;
+      }
       requireCorrectResponseType(interpolatedUrl, responseType, response);
-      return response;
+      return responseType.cast(response);
     }
 
-    private static <T> void requireCorrectResponseType(String interpolatedUrl, Class<T> responseType, T response) {
+    private static <T> void requireCorrectResponseType(String interpolatedUrl, Class<T> responseType, Object response) {
       if (!response.getClass().equals(responseType)) {
         throw new ClassCastException("URL " + interpolatedUrl
           + " was configured to return an instance of\n  " + response.getClass() + "\n"
@@ -170,19 +970,99 @@ public class JsonHttpClient {
       }
     }
 
-    private static <T> void requireConfiguredResponsesAvailable(String interpolatedUrl, Iterator<T> responses) {
-      if (!responses.hasNext()) {
-        throw new NoSuchElementException("No more responses configured for URL: "
-          + interpolatedUrl);
+    private void requireConfiguredResponseFor(String interpolatedUrl) {
+      if (!endpoints.containsKey(interpolatedUrl)) {
+        throw new NoSuchElementException("URL not configured: " + interpolatedUrl);
+      }
+    }
+
+  }
+
+  private static class StubbedEndpoint {
+    private final String url;
+    private final NulledEndpoint configuration;
+    private final List<?> sequence;
+    private final AtomicInteger nextInSequence = new AtomicInteger();
+
+    StubbedEndpoint(String url, NulledEndpoint configuration) {
+      this.url = url;
+      this.configuration = configuration;
+      // a list is a finite sequence of different responses; anything else is
+      // one response repeated forever
+      this.sequence = configuration.responses() instanceof List<?> list ? List.copyOf(list) : null;
+    }
+
+    Object respond(boolean streaming) {
+      long start = System.nanoTime();
+      Deadline deadline = InFlightRequest.current() == null
+        ? Deadline.none()
+        : InFlightRequest.current().deadline;
+
+      double roll = ThreadLocalRandom.current().nextDouble();
+      if (roll < configuration.timeoutRate()) {
+        waitFor(deadline.isBounded() ? deadline.remaining() : Duration.ZERO, deadline);
+        throw timedOut();
+      }
+      Duration latency = configuration.latency().sample();
+      if (latency.compareTo(deadline.remaining()) >= 0) {
+        waitFor(deadline.remaining(), deadline);
+        throw timedOut();
       }
+      waitFor(latency, deadline);
+      InFlightRequest.measure(Phase.TIME_TO_FIRST_BYTE, start);
+
+      if (roll < configuration.timeoutRate() + configuration.failureRate()) {
+        throw configuration.failure().get();
+      }
+      if (streaming && configuration.streamed() != null) return configuration.streamed();
+      return nextConfiguredResponse();
     }
 
-    private void requireConfiguredResponseFor(String interpolatedUrl) {
-      if (!endpointsResponses.containsKey(interpolatedUrl)) {
-        throw new NoSuchElementException("URL not configured: " + interpolatedUrl);
+    void replay(StreamedResponse response, Consumer<String> onData) {
+      Deadline deadline = InFlightRequest.current() == null
+        ? Deadline.none()
+        : InFlightRequest.current().deadline;
+      for (String event : response.events()) {
+        if (response.interval().compareTo(deadline.remaining()) >= 0) {
+          waitFor(deadline.remaining(), deadline);
+          throw timedOut();
+        }
+        waitFor(response.interval(), deadline);
+        onData.accept(event);
       }
     }
 
+    private Object nextConfiguredResponse() {
+      if (sequence == null) return configuration.responses();
+
+      int index = nextInSequence.getAndIncrement();
+      if (index >= sequence.size()) {
+        throw new NoSuchElementException("No more responses configured for URL: " + url);
+      }
+      return sequence.get(index);
+    }
+
+    // Cut short, like a real connection, if the deadline is cancelled
+    private void waitFor(Duration duration, Deadline deadline) {
+      if (duration.isZero()) return;
+      CountDownLatch cancelled = new CountDownLatch(1);
+      Runnable stopWaiting = deadline.onCancel(cancelled::countDown);
+      try {
+        if (cancelled.await(duration.toNanos(), TimeUnit.NANOSECONDS)) {
+          throw new ResourceAccessException("I/O error on request to \"" + url + "\": Socket closed");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ResourceAccessException("I/O error on request to \"" + url + "\": interrupted");
+      } finally {
+        stopWaiting.run();
+      }
+    }
+
+    private ResourceAccessException timedOut() {
+      return new ResourceAccessException("I/O error on request to \"" + url + "\": Read timed out",
+        new SocketTimeoutException("Read timed out"));
+    }
   }
 
 
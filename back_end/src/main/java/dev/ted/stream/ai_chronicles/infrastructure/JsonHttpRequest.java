@@ -13,7 +13,11 @@ public class JsonHttpRequest {
   private final Object body;
 
   public static JsonHttpRequest createGet(String url) {
-    return new JsonHttpRequest(HttpMethod.GET, url, Collections.emptyMap(), null);
+    return createGet(url, Collections.emptyMap());
+  }
+
+  public static JsonHttpRequest createGet(String url, Map<String, String> headers) {
+    return new JsonHttpRequest(HttpMethod.GET, url, headers, null);
   }
 
   public static JsonHttpRequest createPost(String url, Map<String, String> headers, Object body) {
@@ -0,0 +1,36 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// A distribution of response times, for simulating slow endpoints in nulled
+// infrastructure.
+@FunctionalInterface
+public interface Latency {
+  // 2.326 standard deviations above the mean of a standard normal is its 99th percentile
+  double Z_99 = 2.326;
+
+  Duration sample();
+
+  static Latency none() {
+    return () -> Duration.ZERO;
+  }
+
+  static Latency fixed(Duration latency) {
+    return () -> latency;
+  }
+
+  static Latency uniform(Duration min, Duration max) {
+    long minNanos = min.toNanos();
+    long maxNanos = max.toNanos();
+    return () -> Duration.ofNanos(ThreadLocalRandom.current().nextLong(minNanos, maxNanos + 1));
+  }
+
+  // Long-tailed, like real API latency: most responses near the median, a few
+  // much slower. Parameterized by the median and 99th percentile.
+  static Latency logNormal(Duration median, Duration p99) {
+    double mu = Math.log(median.toNanos());
+    double sigma = (Math.log(p99.toNanos()) - mu) / Z_99;
+    return () -> Duration.ofNanos((long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+  }
+}
@@ -0,0 +1,28 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public class LocalCompletionCache implements CompletionCache {
+  private final Map<String, String> completions;
+
+  public LocalCompletionCache(int maxEntries) {
+    this.completions = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  @Override
+  public synchronized Optional<String> get(String key) {
+    return Optional.ofNullable(completions.get(key));
+  }
+
+  @Override
+  public synchronized void put(String key, String completion) {
+    completions.put(key, completion);
+  }
+}
@@ -0,0 +1,203 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Encodes request messages incrementally. A conversation sends the same
+// history turn after turn, with one more exchange each time, so the JSON of
+// its history (and a running digest of it, for cache keys) is kept, and each
+// turn only encodes what's new. Conversations are named by the caller (the
+// session), and kept until the caller forgets them; messages without a
+// conversation are encoded from scratch and nothing is kept.
+class MessageEncoder {
+  private static final byte COMMA = ',';
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<OpenAiRequestBody.Message> prefix;
+  private final byte[] prefixJson;
+  private final MessageDigest prefixDigest;
+  private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+  MessageEncoder(List<OpenAiRequestBody.Message> prefix) {
+    this.prefix = prefix;
+    this.prefixJson = join(prefix.stream().map(this::encode).toList());
+    this.prefixDigest = newDigest();
+    prefixDigest.update(prefixJson);
+  }
+
+  EncodedMessages messages(List<Exchange> history, String prompt) {
+    return messages(null, history, prompt);
+  }
+
+  EncodedMessages messages(String conversationId, List<Exchange> history, String prompt) {
+    EncodedMessages.History encodedHistory;
+    if (history.isEmpty()) {
+      encodedHistory = new EncodedMessages.History(new byte[0], 0, copy(prefixDigest));
+    } else if (conversationId == null) {
+      encodedHistory = new Conversation().encodeUpTo(history);
+    } else {
+      encodedHistory = conversations.computeIfAbsent(conversationId, id -> new Conversation()).encodeUpTo(history);
+    }
+    OpenAiRequestBody.Message last = new OpenAiRequestBody.Message("user", prompt);
+    return new EncodedMessages(prefix, prefixJson, history, encodedHistory, last, encode(last));
+  }
+
+  // A History already handed out stays valid; it just isn't continued
+  void forget(String conversationId) {
+    conversations.remove(conversationId);
+  }
+
+  int conversations() {
+    return conversations.size();
+  }
+
+  // Bytes held for encoded histories, counting buffers' spare capacity
+  long retainedBytes() {
+    return conversations.values().stream().mapToLong(Conversation::retainedBytes).sum();
+  }
+
+  private byte[] encode(OpenAiRequestBody.Message message) {
+    try {
+      return objectMapper.writeValueAsBytes(message);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Can't encode message as JSON", e);
+    }
+  }
+
+  private static byte[] join(List<byte[]> encoded) {
+    byte[] joined = new byte[0];
+    for (byte[] json : encoded) {
+      int start = joined.length == 0 ? 0 : joined.length + 1;
+      joined = Arrays.copyOf(joined, start + json.length);
+      if (start > 0) joined[start - 1] = COMMA;
+      System.arraycopy(json, 0, joined, start, json.length);
+    }
+    return joined;
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static MessageDigest copy(MessageDigest digest) {
+    try {
+      return (MessageDigest) digest.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // The JSON of the history messages so far, comma-separated, and the digest
+  // of the prefix followed by it. Bytes are only ever appended past length,
+  // and the buffer is replaced rather than overwritten, so the History handed
+  // to an earlier request never changes under it.
+  //
+  // A history that continues the last one (the whole transcript, turn after
+  // turn) only has its new exchanges appended. One that doesn't (with
+  // long-term memory, a few recalled exchanges and a recent window that moves
+  // on every turn) is put together again, copying the JSON of the exchanges
+  // it shares with the last one and encoding only the others. The digest is
+  // then taken over the whole history again; it's short, as recall keeps it so.
+  private class Conversation {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private List<Exchange> exchanges = new ArrayList<>();
+    private int[] ends = new int[16];
+    private byte[] json = new byte[INITIAL_CAPACITY];
+    private int length;
+    private MessageDigest digest = copy(prefixDigest);
+
+    synchronized EncodedMessages.History encodeUpTo(List<Exchange> history) {
+      if (isContinuedBy(history)) {
+        for (int i = exchanges.size(); i < history.size(); i++) {
+          appendEncoded(history.get(i));
+        }
+      } else {
+        reassemble(history);
+      }
+      return new EncodedMessages.History(json, length, copy(digest));
+    }
+
+    synchronized long retainedBytes() {
+      return json.length + ends.length * (long) Integer.BYTES;
+    }
+
+    // Comparing references is cheap next to encoding, even for long histories
+    private boolean isContinuedBy(List<Exchange> history) {
+      if (exchanges.size() > history.size()) return false;
+      for (int i = 0; i < exchanges.size(); i++) {
+        if (exchanges.get(i) != history.get(i)) return false;
+      }
+      return true;
+    }
+
+    // Both histories are in transcript order, so one pass over the last one finds what they share
+    private void reassemble(List<Exchange> history) {
+      List<Exchange> previous = exchanges;
+      int[] previousEnds = ends;
+      byte[] previousJson = json;
+      exchanges = new ArrayList<>(history.size());
+      ends = new int[Math.max(16, history.size())];
+      json = new byte[Math.max(INITIAL_CAPACITY, length)];
+      length = 0;
+      digest = copy(prefixDigest);
+
+      int searchFrom = 0;
+      for (Exchange exchange : history) {
+        int found = indexOf(previous, exchange, searchFrom);
+        if (found < 0) {
+          appendEncoded(exchange);
+        } else {
+          int start = found == 0 ? 0 : previousEnds[found - 1] + 1;
+          append(exchange, previousJson, start, previousEnds[found]);
+          searchFrom = found + 1;
+        }
+      }
+    }
+
+    private static int indexOf(List<Exchange> exchanges, Exchange exchange, int from) {
+      for (int i = from; i < exchanges.size(); i++) {
+        if (exchanges.get(i) == exchange) return i;
+      }
+      return -1;
+    }
+
+    private void appendEncoded(Exchange exchange) {
+      byte[] messages = join(List.of(
+        encode(new OpenAiRequestBody.Message("user", exchange.prompt())),
+        encode(new OpenAiRequestBody.Message("assistant", exchange.answer()))));
+      append(exchange, messages, 0, messages.length);
+    }
+
+    // Appends an exchange's two messages, source[from, to)
+    private void append(Exchange exchange, byte[] source, int from, int to) {
+      int size = to - from;
+      int needed = length + 1 + size;
+      if (needed > json.length) json = Arrays.copyOf(json, Math.max(needed, json.length * 2));
+      if (length > 0) {
+        json[length++] = COMMA;
+        digest.update(COMMA);
+      }
+      System.arraycopy(source, from, json, length, size);
+      digest.update(source, from, size);
+      length += size;
+
+      if (exchanges.size() == ends.length) ends = Arrays.copyOf(ends, ends.length * 2);
+      ends[exchanges.size()] = length;
+      exchanges.add(exchange);
+    }
+  }
+}
@@ -1,20 +1,72 @@
 package dev.ted.stream.ai_chronicles.infrastructure;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.ted.stream.ai_chronicles.OutputListener;
 import dev.ted.stream.ai_chronicles.OutputTracker;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.GameEvent;
 
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class OpenAiClient {
   static final String OPEN_AI_ENDPOINT = "https://api.openai.com/v1/chat/completions";
+  static final String MODELS_ENDPOINT = "https://api.openai.com/v1/models";
+  private static final int NULLED_FRAGMENT_LENGTH = 8;
+  static final int MAX_ATTEMPTS = 3;
+  static final Duration RETRY_BACKOFF = Duration.ofMillis(100);
+  static final OpenAiRequestBody.Tool NARRATE_TURN_TOOL = OpenAiRequestBody.Tool.function(
+    "narrate_turn",
+    "Narrate what happens this turn and report how the game state changes.",
+    Map.of(
+      "type", "object",
+      "properties", Map.of(
+        "narrative", Map.of("type", "string"),
+        "inventory", arrayOf(Map.of(
+          "item", Map.of("type", "string"),
+          "quantity", Map.of("type", "integer", "description", "gained, or negative if lost"))),
+        "hazards", arrayOf(Map.of(
+          "name", Map.of("type", "string"),
+          "severity", Map.of("type", "string", "enum", List.of("low", "medium", "high")))),
+        "attitudes", arrayOf(Map.of(
+          "robot", Map.of("type", "string"),
+          "attitude", Map.of("type", "string")))),
+      "required", List.of("narrative")));
+  private static final ObjectMapper CHUNK_MAPPER = new ObjectMapper()
+    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
   private final JsonHttpClient httpClient;
   private final String apiKey;
+  private final CompletionCache cache;
+  private final PromptPrefix prefix;
+  private final MessageEncoder encoder;
   private final OutputListener<Prompt> listener = new OutputListener<>();
 
   public static OpenAiClient create(String apiKey) {
-    return new OpenAiClient(JsonHttpClient.create(), apiKey);
+    return create(apiKey, CompletionCache.disabled());
+  }
+
+  public static OpenAiClient create(String apiKey, CompletionCache cache) {
+    return create(apiKey, cache, PromptPrefix.none());
+  }
+
+  public static OpenAiClient create(String apiKey, CompletionCache cache, PromptPrefix prefix) {
+    return new OpenAiClient(JsonHttpClient.create(), apiKey, cache, prefix);
   }
 
   public static OpenAiClient createNull() {
@@ -22,42 +74,309 @@ public class OpenAiClient {
   }
 
   public static OpenAiClient createNull(String configuredAnswer) {
+    return createNull(configuredAnswer, Latency.none());
+  }
+
+  // streamTurn() on this client streams a turn whose narrative is configuredAnswer
+  public static OpenAiClient createNull(String configuredAnswer, Latency latency) {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT,
+      JsonHttpClient.NulledEndpoint.responding(createNulledHttpResponse(configuredAnswer))
+        .withLatency(latency)
+        .alsoStreaming(nulledStream(toJson(Map.of("narrative", configuredAnswer)), Duration.ZERO)),
+      OpenAiClient.MODELS_ENDPOINT,
+      "{\"object\":\"list\",\"data\":[]}"
+    ));
+    return new OpenAiClient(httpClient, "nulled_api_key");
+  }
+
+  // Streams the given structured turn (JSON in the narrate_turn tool's shape)
+  // as tool-call fragments of a few characters each, one every chunkInterval.
+  // Only streamTurn() works on this client.
+  public static OpenAiClient createNullStreaming(String structuredTurn, Duration chunkInterval) {
     JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
-      OpenAiClient.OPEN_AI_ENDPOINT, createNulledHttpResponse(configuredAnswer)
+      OpenAiClient.OPEN_AI_ENDPOINT,
+      nulledStream(structuredTurn, chunkInterval)
     ));
     return new OpenAiClient(httpClient, "nulled_api_key");
   }
 
+  private static JsonHttpClient.StreamedResponse nulledStream(String structuredTurn, Duration chunkInterval) {
+    List<String> events = new ArrayList<>();
+    for (int start = 0; start < structuredTurn.length(); start += NULLED_FRAGMENT_LENGTH) {
+      String fragment = structuredTurn.substring(start, Math.min(start + NULLED_FRAGMENT_LENGTH, structuredTurn.length()));
+      events.add(toJson(OpenAiStreamChunk.toolCallFragment(fragment)));
+    }
+    events.add(toJson(new OpenAiStreamChunk(List.of(), new Usage(42, 42, 84))));
+    return JsonHttpClient.StreamedResponse.of(events).withInterval(chunkInterval);
+  }
+
   public OpenAiClient(JsonHttpClient httpClient, String apiKey) {
+    this(httpClient, apiKey, CompletionCache.disabled());
+  }
+
+  public OpenAiClient(JsonHttpClient httpClient, String apiKey, CompletionCache cache) {
+    this(httpClient, apiKey, cache, PromptPrefix.none());
+  }
+
+  public OpenAiClient(JsonHttpClient httpClient, String apiKey, CompletionCache cache, PromptPrefix prefix) {
     this.httpClient = httpClient;
     this.apiKey = apiKey;
+    this.cache = cache;
+    this.prefix = prefix;
+    this.encoder = new MessageEncoder(prefix.messages());
   }
 
   public String prompt(String prompt) {
+    return prompt(prompt, Deadline.none());
+  }
+
+  public String prompt(String prompt, Deadline deadline) {
+    return complete(prompt, Options.DEFAULT, deadline).answer();
+  }
+
+  public Completion complete(String prompt, Options options) {
+    return complete(prompt, options, Deadline.none());
+  }
+
+  public Completion complete(String prompt, Options options, Deadline deadline) {
+    return complete(List.of(), prompt, options, deadline);
+  }
+
+  public Completion complete(List<Exchange> history, String prompt, Options options, Deadline deadline) {
+    return complete(null, history, prompt, options, deadline);
+  }
+
+  // Turns of the same conversation (a session) reuse the JSON of the history
+  // sent last time; see forgetConversation()
+  public Completion complete(String conversationId, List<Exchange> history, String prompt, Options options,
+                             Deadline deadline) {
     listener.emit(new Prompt(prompt));
+    PromptEvent event = begin(history, options, false);
 
-    Map<String, String> headers = Map.of(
-      "Authorization", "Bearer " + apiKey,
-      "Content-Type", "application/json"
+    OpenAiRequestBody requestBody = new OpenAiRequestBody(
+      options.model(),
+      messages(conversationId, history, prompt),
+      0.7,
+      options.maxTokens()
     );
+    String cacheKey = cacheKey(requestBody);
+    return recorded(event, () -> cache.get(cacheKey, deadline)
+      .map(answer -> {
+        event.cacheHit = true;
+        return Completion.cached(answer);
+      })
+      .orElseGet(() -> {
+        Completion completion = sendWithRetries(requestBody, deadline);
+        cache.put(cacheKey, completion.answer());
+        return completion;
+      }));
+  }
+
+  // Asks for the turn as a call to the narrate_turn tool and streams it,
+  // handing each game event to onEvent as soon as its part of the arguments
+  // has arrived, well before the whole completion has. The answer is the
+  // narrative. Streamed turns aren't cached or retried: by the time one
+  // fails, the game may already have acted on some of its events.
+  public Completion streamTurn(List<Exchange> history, String prompt, Options options, Deadline deadline,
+                               Consumer<GameEvent> onEvent) {
+    return streamTurn(null, history, prompt, options, deadline, onEvent);
+  }
+
+  public Completion streamTurn(String conversationId, List<Exchange> history, String prompt, Options options,
+                               Deadline deadline, Consumer<GameEvent> onEvent) {
+    listener.emit(new Prompt(prompt));
+    PromptEvent event = begin(history, options, true);
+
+    OpenAiRequestBody requestBody = OpenAiRequestBody.streamingToolCall(
+      options.model(), messages(conversationId, history, prompt), 0.7, options.maxTokens(), NARRATE_TURN_TOOL);
+    return recorded(event, () -> {
+      GameStateParser parser = new GameStateParser(onEvent);
+      Usage[] usage = new Usage[1];
+      httpClient.postStreaming(OPEN_AI_ENDPOINT, headers(), requestBody, deadline, data -> {
+        OpenAiStreamChunk chunk = parseChunk(data);
+        chunk.fragments().forEach(parser::accept);
+        if (chunk.usage() != null) usage[0] = chunk.usage();
+      });
+      parser.finish();
+
+      String narrative = parser.narrative() == null ? "" : parser.narrative();
+      return usage[0] == null
+        ? new Completion(narrative, 0, 0)
+        : new Completion(narrative, usage[0].prompt_tokens(), usage[0].completion_tokens(), usage[0].cachedTokens());
+    });
+  }
+
+  // Opens a kept-alive connection to OpenAI, paying for DNS, TCP and TLS up
+  // front, with a request that costs no tokens.
+  public void warmUpConnection(Deadline deadline) {
+    httpClient.get(MODELS_ENDPOINT, String.class, Map.of("Authorization", "Bearer " + apiKey), deadline);
+  }
+
+  // Builds, hashes and round-trips requests and responses as a real call
+  // would, so they're JIT-compiled before the first player is waiting on them.
+  public void warmUpCodec(int iterations) {
+    List<Exchange> history = List.of(new Exchange("warm-up prompt", "warm-up answer"));
+    for (int i = 0; i < iterations; i++) {
+      OpenAiRequestBody requestBody = new OpenAiRequestBody(
+        Options.DEFAULT.model(), messages(null, history, "warm-up " + i), 0.7, Options.DEFAULT.maxTokens());
+      cacheKey(requestBody);
+      httpClient.exerciseJson(requestBody, createNulledHttpResponse("warm-up answer " + i));
+    }
+  }
+
+  private static PromptEvent begin(List<Exchange> history, Options options, boolean streamed) {
+    PromptEvent event = new PromptEvent();
+    event.begin();
+    event.model = options.model();
+    event.historyExchanges = history.size();
+    event.streamed = streamed;
+    return event;
+  }
+
+  private static Completion recorded(PromptEvent event, Supplier<Completion> completing) {
+    try {
+      Completion completion = completing.get();
+      event.outcome = "OK";
+      event.promptTokens = completion.promptTokens();
+      event.completionTokens = completion.completionTokens();
+      event.cachedPromptTokens = completion.cachedPromptTokens();
+      return completion;
+    } catch (RuntimeException e) {
+      event.outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      event.commit();
+    }
+  }
+
+  // The frozen prefix always comes first, so every request in every session
+  // starts with the same tokens; only what follows it varies.
+  private List<OpenAiRequestBody.Message> messages(String conversationId, List<Exchange> history, String prompt) {
+    return encoder.messages(conversationId, history, prompt);
+  }
+
+  // Transient failures are retried with exponential backoff, but only while
+  // there's enough time left before the deadline to wait out the backoff.
+  private Completion sendWithRetries(OpenAiRequestBody requestBody, Deadline deadline) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return send(requestBody, deadline);
+      } catch (RestClientException e) {
+        Duration backoff = RETRY_BACKOFF.multipliedBy(1L << (attempt - 1));
+        if (attempt == MAX_ATTEMPTS
+          || !isTransient(e)
+          || deadline.remaining().compareTo(backoff) <= 0) {
+          throw e;
+        }
+        sleep(backoff, e);
+      }
+    }
+  }
+
+  private static boolean isTransient(RestClientException e) {
+    return e instanceof ResourceAccessException
+      || e instanceof HttpServerErrorException
+      || e instanceof HttpClientErrorException.TooManyRequests;
+  }
+
+  private static void sleep(Duration backoff, RestClientException failure) {
+    try {
+      Thread.sleep(backoff.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw failure;
+    }
+  }
+
+  private Completion send(OpenAiRequestBody requestBody, Deadline deadline) {
     var response = httpClient.post(
       OPEN_AI_ENDPOINT,
       OpenAiResponseBody.class,
-      headers,
-      new OpenAiRequestBody(
-        "gpt-3.5-turbo",
-        List.of(new OpenAiRequestBody.Message("user", prompt)),
-        0.7
-      )
+      headers(),
+      requestBody,
+      deadline
     );
 
-    return response.choices()[0].message().content();
+    String answer = response.choices()[0].message().content();
+    Usage usage = response.usage();
+    return usage == null
+      ? new Completion(answer, 0, 0)
+      : new Completion(answer, usage.prompt_tokens(), usage.completion_tokens(), usage.cachedTokens());
+  }
+
+  private Map<String, String> headers() {
+    return Map.of(
+      "Authorization", "Bearer " + apiKey,
+      "Content-Type", "application/json"
+    );
+  }
+
+  private static OpenAiStreamChunk parseChunk(String data) {
+    try {
+      return CHUNK_MAPPER.readValue(data, OpenAiStreamChunk.class);
+    } catch (JsonProcessingException e) {
+      throw new GameStateParser.MalformedGameStateException("Malformed stream event: " + data, e);
+    }
+  }
+
+  private static String toJson(Object value) {
+    try {
+      return CHUNK_MAPPER.writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Map<String, Object> arrayOf(Map<String, Object> itemProperties) {
+    return Map.of("type", "array", "items", Map.of("type", "object", "properties", itemProperties));
+  }
+
+  // Encoded messages carry the digest of their history, so only the new
+  // prompt and the rest of the body are hashed on each turn
+  static String cacheKey(OpenAiRequestBody requestBody) {
+    try {
+      MessageDigest digest;
+      if (requestBody.messages() instanceof EncodedMessages encoded) {
+        digest = encoded.digest();
+        digest.update(withoutMessages(requestBody).toString().getBytes(StandardCharsets.UTF_8));
+      } else {
+        digest = MessageDigest.getInstance("SHA-256");
+        digest.update(requestBody.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static OpenAiRequestBody withoutMessages(OpenAiRequestBody requestBody) {
+    return new OpenAiRequestBody(requestBody.model(), List.of(), requestBody.temperature(), requestBody.max_tokens(),
+      requestBody.stream(), requestBody.stream_options(), requestBody.tools(), requestBody.tool_choice());
+  }
+
+  // Call once a conversation is idle (its session's transcript has been
+  // compressed or spilled): its next turn encodes the history from scratch
+  public void forgetConversation(String conversationId) {
+    encoder.forget(conversationId);
+  }
+
+  public EncodedHistories encodedHistories() {
+    return new EncodedHistories(encoder.conversations(), encoder.retainedBytes());
   }
 
   public OutputTracker<Prompt> trackPrompts() {
     return listener.createTracker();
   }
 
+  public PromptPrefix promptPrefix() {
+    return prefix;
+  }
+
+  public PhaseHistograms httpPhaseHistograms() {
+    return httpClient.phaseHistograms();
+  }
+
   private static OpenAiResponseBody createNulledHttpResponse(String response) {
     return new OpenAiResponseBody(
       "irrelevant_id",
@@ -80,7 +399,34 @@ public class OpenAiClient {
     );
   }
 
-  record Prompt(String prompt) {
+  public record EncodedHistories(int conversations, long retainedBytes) {
+  }
+
+  public record Prompt(String prompt) {
+  }
+
+  public record Options(String model, Integer maxTokens) {
+    public static final Options DEFAULT = new Options("gpt-3.5-turbo", null);
+
+    public Options withMaxTokens(Integer maxTokens) {
+      return new Options(model, maxTokens);
+    }
+
+    public Options withModel(String model) {
+      return new Options(model, maxTokens);
+    }
+  }
+
+  // cachedPromptTokens is how many of the prompt tokens the provider served
+  // from its prompt cache
+  public record Completion(String answer, int promptTokens, int completionTokens, int cachedPromptTokens) {
+    public Completion(String answer, int promptTokens, int completionTokens) {
+      this(answer, promptTokens, completionTokens, 0);
+    }
+
+    static Completion cached(String answer) {
+      return new Completion(answer, 0, 0);
+    }
   }
 
 }
@@ -1,10 +1,52 @@
 package dev.ted.stream.ai_chronicles.infrastructure;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
+import java.util.Map;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record OpenAiRequestBody(String model,
                                 List<Message> messages,
-                                double temperature) {
+                                double temperature,
+                                Integer max_tokens,
+                                Boolean stream,
+                                StreamOptions stream_options,
+                                List<Tool> tools,
+                                ToolChoice tool_choice) {
+  public OpenAiRequestBody(String model, List<Message> messages, double temperature) {
+    this(model, messages, temperature, null);
+  }
+
+  public OpenAiRequestBody(String model, List<Message> messages, double temperature, Integer max_tokens) {
+    this(model, messages, temperature, max_tokens, null, null, null, null);
+  }
+
+  // Streams the answer as arguments to the given tool, which the model must call
+  static OpenAiRequestBody streamingToolCall(String model, List<Message> messages, double temperature,
+                                             Integer max_tokens, Tool tool) {
+    return new OpenAiRequestBody(model, messages, temperature, max_tokens,
+      true, new StreamOptions(true), List.of(tool), new ToolChoice("function", new ToolName(tool.function().name())));
+  }
+
   record Message(String role, String content) {
   }
+
+  record StreamOptions(boolean include_usage) {
+  }
+
+  record Tool(String type, ToolFunction function) {
+    static Tool function(String name, String description, Map<String, Object> parameters) {
+      return new Tool("function", new ToolFunction(name, description, parameters));
+    }
+  }
+
+  record ToolFunction(String name, String description, Map<String, Object> parameters) {
+  }
+
+  record ToolChoice(String type, ToolName function) {
+  }
+
+  record ToolName(String name) {
+  }
 }
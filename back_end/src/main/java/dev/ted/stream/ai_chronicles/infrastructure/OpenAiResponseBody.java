@@ -1,5 +1,7 @@
 package dev.ted.stream.ai_chronicles.infrastructure;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -29,9 +31,21 @@ public record OpenAiResponseBody(String id,
     }
 }
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 record Usage(int prompt_tokens,
              int completion_tokens,
-             int total_tokens) {
+             int total_tokens,
+             PromptTokensDetails prompt_tokens_details) {
+  Usage(int prompt_tokens, int completion_tokens, int total_tokens) {
+    this(prompt_tokens, completion_tokens, total_tokens, null);
+  }
+
+  int cachedTokens() {
+    return prompt_tokens_details == null ? 0 : prompt_tokens_details.cached_tokens();
+  }
+}
+
+record PromptTokensDetails(int cached_tokens) {
 }
 
 record Choice(Message message,
@@ -0,0 +1,57 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One server-sent event of a streamed chat completion. Structured output
+// arrives as fragments of message content or of tool-call arguments; the
+// last chunk carries usage (and no choices) when it's requested.
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record OpenAiStreamChunk(List<ChunkChoice> choices, Usage usage) {
+
+  List<String> fragments() {
+    List<String> fragments = new ArrayList<>();
+    if (choices == null) return fragments;
+    for (ChunkChoice choice : choices) {
+      Delta delta = choice.delta();
+      if (delta == null) continue;
+      if (delta.content() != null) fragments.add(delta.content());
+      if (delta.tool_calls() == null) continue;
+      for (ToolCallDelta toolCall : delta.tool_calls()) {
+        if (toolCall.function() != null && toolCall.function().arguments() != null) {
+          fragments.add(toolCall.function().arguments());
+        }
+      }
+    }
+    return fragments;
+  }
+
+  static OpenAiStreamChunk toolCallFragment(String arguments) {
+    return new OpenAiStreamChunk(List.of(new ChunkChoice(
+      new Delta(null, List.of(new ToolCallDelta(0, new FunctionDelta(null, arguments)))), null)), null);
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  record ChunkChoice(Delta delta, String finish_reason) {
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  record Delta(String content, List<ToolCallDelta> tool_calls) {
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  record ToolCallDelta(Integer index, FunctionDelta function) {
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  record FunctionDelta(String name, String arguments) {
+  }
+}
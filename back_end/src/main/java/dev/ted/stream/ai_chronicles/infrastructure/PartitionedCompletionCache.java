@@ -0,0 +1,156 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.OutputListener;
+import dev.ted.stream.ai_chronicles.OutputTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Each node owns the keys the hash ring assigns to it and serves them to its
+// peers over HTTP. A peer that is slow or unreachable is treated as a miss,
+// and so is a peer's 404, which is how it reports an ordinary miss. Other
+// failures, such as a dead peer or a 403 for a wrong secret, are logged at
+// WARN, at most once per WARNING_INTERVAL. Every peer request carries the
+// shared secret, which peers check before answering.
+//
+// Stores go to a peer in the background, so a say never waits on them; when
+// more than MAX_PENDING_STORES are waiting, new ones are dropped.
+public class PartitionedCompletionCache implements CompletionCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedCompletionCache.class);
+  static final String CACHE_PATH = "/cache/";
+  public static final String SECRET_HEADER = "X-Cache-Secret";
+  static final Duration WARNING_INTERVAL = Duration.ofMinutes(1);
+  private static final int MAX_PENDING_STORES = 1000;
+
+  private final String selfUrl;
+  private final ConsistentHashRing ring;
+  private final LocalCompletionCache localPartition;
+  private final JsonHttpClient peers;
+  private final Map<String, String> secretHeader;
+  private final Executor storer;
+  private final AtomicLong nextWarningAt = new AtomicLong(System.nanoTime());
+  private final AtomicInteger unreportedFailures = new AtomicInteger();
+  private final OutputListener<PeerFailure> failureListener = new OutputListener<>();
+
+  public static PartitionedCompletionCache create(String selfUrl,
+                                                  List<String> nodeUrls,
+                                                  LocalCompletionCache localPartition,
+                                                  Duration peerTimeout,
+                                                  String peerSecret) {
+    ThreadPoolExecutor storer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(MAX_PENDING_STORES), runnable -> {
+        Thread thread = new Thread(runnable, "cache-peer-store");
+        thread.setDaemon(true);
+        return thread;
+      }, new ThreadPoolExecutor.DiscardPolicy());
+    return new PartitionedCompletionCache(selfUrl, nodeUrls, localPartition, JsonHttpClient.create(peerTimeout),
+      peerSecret, storer);
+  }
+
+  // Stores to peers on the calling thread
+  public PartitionedCompletionCache(String selfUrl,
+                                    List<String> nodeUrls,
+                                    LocalCompletionCache localPartition,
+                                    JsonHttpClient peers,
+                                    String peerSecret) {
+    this(selfUrl, nodeUrls, localPartition, peers, peerSecret, Runnable::run);
+  }
+
+  public PartitionedCompletionCache(String selfUrl,
+                                    List<String> nodeUrls,
+                                    LocalCompletionCache localPartition,
+                                    JsonHttpClient peers,
+                                    String peerSecret,
+                                    Executor storer) {
+    if (peerSecret == null || peerSecret.isBlank()) {
+      throw new IllegalArgumentException("Partitioned cache needs a cache.peer-secret shared by all nodes");
+    }
+    this.selfUrl = selfUrl;
+    this.ring = new ConsistentHashRing(nodeUrls);
+    this.localPartition = localPartition;
+    this.peers = peers;
+    this.secretHeader = Map.of(SECRET_HEADER, peerSecret);
+    this.storer = storer;
+  }
+
+  @Override
+  public Optional<String> get(String key) {
+    return get(key, Deadline.none());
+  }
+
+  @Override
+  public Optional<String> get(String key, Deadline deadline) {
+    String owner = ring.nodeFor(key);
+    if (owner.equals(selfUrl)) return localPartition.get(key);
+
+    try {
+      CacheEntry entry = peers.get(owner + CACHE_PATH + key, CacheEntry.class, secretHeader, deadline);
+      return Optional.ofNullable(entry).map(CacheEntry::completion);
+    } catch (HttpClientErrorException.NotFound e) {
+      return Optional.empty();
+    } catch (DeadlineExceededException e) {
+      // the say ran out of time, which isn't the peer's fault
+      LOGGER.debug("Cache lookup on {} cut off by the say's deadline; treating as miss", owner, e);
+      return Optional.empty();
+    } catch (RuntimeException e) {
+      warnOfPeerFailure("lookup", owner, "treating as a miss", e);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void put(String key, String completion) {
+    String owner = ring.nodeFor(key);
+    if (owner.equals(selfUrl)) {
+      localPartition.put(key, completion);
+      return;
+    }
+
+    storer.execute(() -> {
+      try {
+        peers.post(owner + CACHE_PATH + key, CacheEntry.class, secretHeader, new CacheEntry(completion));
+      } catch (RuntimeException e) {
+        warnOfPeerFailure("store", owner, "dropping the entry", e);
+      }
+    });
+  }
+
+  private void warnOfPeerFailure(String operation, String owner, String consequence, RuntimeException e) {
+    long now = System.nanoTime();
+    long warnAt = nextWarningAt.get();
+    if (now - warnAt < 0 || !nextWarningAt.compareAndSet(warnAt, now + WARNING_INTERVAL.toNanos())) {
+      unreportedFailures.incrementAndGet();
+      failureListener.emit(new PeerFailure(operation, owner, false));
+      LOGGER.debug("Cache {} on {} failed", operation, owner, e);
+      return;
+    }
+    failureListener.emit(new PeerFailure(operation, owner, true));
+    String hint = e instanceof HttpClientErrorException.Forbidden
+      ? " (peer rejected our secret: check that cache.peer-secret matches on every node)"
+      : "";
+    LOGGER.warn("Cache {} on {} failed{}; {} ({} more peer failures since the last warning)",
+      operation, owner, hint, consequence, unreportedFailures.getAndSet(0), e);
+  }
+
+  public OutputTracker<PeerFailure> trackPeerFailures() {
+    return failureListener.createTracker();
+  }
+
+  public record CacheEntry(String completion) {
+  }
+
+  // warned is false for failures only counted towards the next warning
+  public record PeerFailure(String operation, String owner, boolean warned) {
+  }
+}
@@ -0,0 +1,95 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Outcome;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Phase;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-scale latency histogram per request outcome and phase. Bucket i counts
+// durations of less than 2^i microseconds, so percentiles are accurate to
+// within 2x.
+public class PhaseHistograms {
+  private static final int BUCKETS = 40;
+
+  private final Map<Outcome, Map<Phase, Histogram>> histograms = new EnumMap<>(Outcome.class);
+
+  public PhaseHistograms() {
+    for (Outcome outcome : Outcome.values()) {
+      Map<Phase, Histogram> byPhase = new EnumMap<>(Phase.class);
+      for (Phase phase : Phase.values()) {
+        byPhase.put(phase, new Histogram());
+      }
+      histograms.put(outcome, byPhase);
+    }
+  }
+
+  public void record(RequestPhases phases) {
+    Map<Phase, Histogram> byPhase = histograms.get(phases.outcome());
+    phases.durations().forEach((phase, duration) ->
+      byPhase.get(phase).record(duration.toNanos() / 1_000));
+  }
+
+  public Map<Outcome, Map<Phase, Summary>> summarize() {
+    Map<Outcome, Map<Phase, Summary>> summaries = new EnumMap<>(Outcome.class);
+    for (Outcome outcome : Outcome.values()) {
+      summaries.put(outcome, summarize(outcome));
+    }
+    return summaries;
+  }
+
+  public Map<Phase, Summary> summarize(Outcome outcome) {
+    Map<Phase, Summary> summaries = new EnumMap<>(Phase.class);
+    histograms.get(outcome).forEach((phase, histogram) -> summaries.put(phase, histogram.summarize()));
+    return summaries;
+  }
+
+  public record Summary(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis) {
+  }
+
+  private static class Histogram {
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+
+    Histogram() {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    void record(long micros) {
+      long recorded = Math.max(0, micros);
+      int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(recorded));
+      buckets[bucket].increment();
+      count.increment();
+      totalMicros.add(recorded);
+    }
+
+    Summary summarize() {
+      long[] counts = new long[BUCKETS];
+      long total = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] = buckets[i].sum();
+        total += counts[i];
+      }
+      double mean = total == 0 ? 0 : totalMicros.sum() / 1000.0 / total;
+      return new Summary(total, mean,
+        percentile(counts, total, 0.50),
+        percentile(counts, total, 0.90),
+        percentile(counts, total, 0.99));
+    }
+
+    private static double percentile(long[] counts, long total, double percentile) {
+      if (total == 0) return 0;
+      long target = (long) Math.ceil(total * percentile);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= target) return (1L << i) / 1000.0;
+      }
+      return (1L << (counts.length - 1)) / 1000.0;
+    }
+  }
+}
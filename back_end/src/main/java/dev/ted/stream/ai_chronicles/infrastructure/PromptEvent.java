@@ -0,0 +1,41 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One OpenAiClient completion, including cache lookup and retries. Its HTTP
+// exchanges are recorded on the same thread, within its duration.
+@Name("dev.ted.stream.ai_chronicles.Prompt")
+@Label("OpenAI Prompt")
+@Category({"AI Chronicles", "OpenAI"})
+@StackTrace(false)
+class PromptEvent extends jdk.jfr.Event {
+  @Label("Model")
+  String model;
+
+  @Label("Streamed")
+  boolean streamed;
+
+  @Label("History Exchanges")
+  int historyExchanges;
+
+  @Label("Cache Hit")
+  boolean cacheHit;
+
+  @Label("Prompt Tokens")
+  int promptTokens;
+
+  @Label("Completion Tokens")
+  int completionTokens;
+
+  @Label("Cached Prompt Tokens")
+  @Description("Prompt tokens served from the provider's prompt cache")
+  int cachedPromptTokens;
+
+  @Label("Outcome")
+  @Description("OK, or the simple name of the exception the prompt failed with")
+  String outcome;
+}
@@ -0,0 +1,71 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+// The static start of every prompt: system instructions and the world
+// description. Providers cache prompt prefixes they've seen recently, so this
+// must come first and be byte-identical on every request. It's frozen when
+// created; changing the text means shipping a new version.
+public final class PromptPrefix {
+  private static final PromptPrefix NONE = new PromptPrefix("none", List.of());
+
+  private final String version;
+  private final List<OpenAiRequestBody.Message> messages;
+
+  private PromptPrefix(String version, List<OpenAiRequestBody.Message> messages) {
+    this.version = version;
+    this.messages = List.copyOf(messages);
+  }
+
+  public static PromptPrefix none() {
+    return NONE;
+  }
+
+  public static PromptPrefix of(String version, String systemPrompt) {
+    return new PromptPrefix(version, List.of(new OpenAiRequestBody.Message("system", systemPrompt)));
+  }
+
+  // Loads prompts/<version>.txt from the classpath
+  public static PromptPrefix fromResource(String version) {
+    String resource = "/prompts/" + version + ".txt";
+    try (InputStream stream = PromptPrefix.class.getResourceAsStream(resource)) {
+      if (stream == null) {
+        throw new IllegalArgumentException("No prompt prefix resource for version " + version + ": " + resource);
+      }
+      return of(version, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public String version() {
+    return version;
+  }
+
+  // Identifies the exact prefix text, so logs show when it changed without a new version
+  public String fingerprint() {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (OpenAiRequestBody.Message message : messages) {
+        digest.update(message.role().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(message.content().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+      }
+      return HexFormat.of().formatHex(digest.digest(), 0, 6);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  List<OpenAiRequestBody.Message> messages() {
+    return messages;
+  }
+}
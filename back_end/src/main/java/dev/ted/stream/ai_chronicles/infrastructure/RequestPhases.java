@@ -0,0 +1,47 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Where the time went for one JsonHttpClient request. CONNECT and TLS are only
+// measured for new HTTPS connections; for plain HTTP, connecting is included
+// in TIME_TO_FIRST_BYTE. Failed requests have the phases they got through.
+public record RequestPhases(JsonHttpRequest request, Outcome outcome, Map<Phase, Duration> durations) {
+
+  public enum Phase {
+    SERIALIZE,
+    CONNECT,
+    TLS,
+    TIME_TO_FIRST_BYTE,
+    TRANSFER,
+    DESERIALIZE
+  }
+
+  public enum Outcome {
+    OK,
+    FAILED,
+    DEADLINE_EXCEEDED
+  }
+
+  public RequestPhases(JsonHttpRequest request, Map<Phase, Duration> durations) {
+    this(request, Outcome.OK, durations);
+  }
+
+  public RequestPhases {
+    EnumMap<Phase, Duration> all = new EnumMap<>(Phase.class);
+    for (Phase phase : Phase.values()) {
+      all.put(phase, durations.getOrDefault(phase, Duration.ZERO));
+    }
+    durations = Collections.unmodifiableMap(all);
+  }
+
+  public Duration duration(Phase phase) {
+    return durations.get(phase);
+  }
+
+  public Duration total() {
+    return durations.values().stream().reduce(Duration.ZERO, Duration::plus);
+  }
+}
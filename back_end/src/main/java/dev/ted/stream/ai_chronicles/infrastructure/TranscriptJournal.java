@@ -0,0 +1,410 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.OutputListener;
+import dev.ted.stream.ai_chronicles.OutputTracker;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.Transcript;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only journal of exchanges. Records are copied into memory-mapped
+// segments on the request path; forcing them to disk happens in batches
+// ("group commit") on a background thread.
+//
+// Record layout: [int payloadLength][int crc32][payload]. The length is written
+// last, so a zero length marks the end of a segment and a torn write is ignored.
+public class TranscriptJournal implements Closeable {
+  static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+  static final Duration DEFAULT_COMMIT_INTERVAL = Duration.ofMillis(10);
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int SNAPSHOT_VERSION = 1;
+
+  private final JournalFiles files;
+  private final int segmentSize;
+  private final ScheduledExecutorService committer;
+  private final OutputListener<JournalEntry> listener = new OutputListener<>();
+
+  private long segmentIndex;
+  private ByteBuffer segment;
+  private List<CompletableFuture<Void>> pendingCommits = new ArrayList<>();
+
+  public static TranscriptJournal create(Path directory) {
+    return create(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL);
+  }
+
+  public static TranscriptJournal create(Path directory, int segmentSize, Duration commitInterval) {
+    return new TranscriptJournal(new MappedJournalFiles(directory), segmentSize, commitInterval);
+  }
+
+  public static TranscriptJournal createNull() {
+    return createNull(DEFAULT_SEGMENT_SIZE);
+  }
+
+  public static TranscriptJournal createNull(int segmentSize) {
+    return new TranscriptJournal(new StubbedJournalFiles(), segmentSize, null);
+  }
+
+  private TranscriptJournal(JournalFiles files, int segmentSize, Duration commitInterval) {
+    this.files = files;
+    this.segmentSize = segmentSize;
+    this.segmentIndex = files.segmentIndexes().stream()
+      .max(Long::compare)
+      .orElse(0L);
+    openNextSegment();
+
+    if (commitInterval == null) {
+      this.committer = null;
+    } else {
+      this.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transcript-journal-commit");
+        thread.setDaemon(true);
+        return thread;
+      });
+      long intervalNanos = commitInterval.toNanos();
+      committer.scheduleWithFixedDelay(this::commit, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public synchronized CompletableFuture<Void> append(String sessionId, Exchange exchange) {
+    JournalEntry entry = new JournalEntry(sessionId, exchange);
+    byte[] payload = encode(entry);
+    int recordSize = RECORD_HEADER_SIZE + payload.length;
+    if (recordSize > segmentSize) {
+      throw new IllegalArgumentException("Journal entry of " + recordSize
+        + " bytes is larger than segment size of " + segmentSize + " bytes");
+    }
+    if (segment.remaining() < recordSize) {
+      files.force(segment);
+      openNextSegment();
+    }
+
+    int position = segment.position();
+    segment.putInt(position + 4, crc(payload));
+    segment.put(position + RECORD_HEADER_SIZE, payload);
+    segment.putInt(position, payload.length);
+    segment.position(position + recordSize);
+
+    listener.emit(entry);
+    CompletableFuture<Void> committed = new CompletableFuture<>();
+    pendingCommits.add(committed);
+    return committed;
+  }
+
+  public void commit() {
+    List<CompletableFuture<Void>> committed;
+    synchronized (this) {
+      if (pendingCommits.isEmpty()) return;
+      files.force(segment);
+      committed = pendingCommits;
+      pendingCommits = new ArrayList<>();
+    }
+    committed.forEach(future -> future.complete(null));
+  }
+
+  // Rolls to a fresh segment, records the sessions as of that point, then
+  // compacts the journal by deleting every segment the snapshot covers.
+  public synchronized void snapshot(Map<String, Transcript> sessions) {
+    files.force(segment);
+    openNextSegment();
+    files.writeSnapshot(encodeSnapshot(segmentIndex, sessions));
+    pendingCommits.forEach(future -> future.complete(null));
+    pendingCommits = new ArrayList<>();
+
+    files.segmentIndexes().stream()
+      .filter(index -> index < segmentIndex)
+      .forEach(files::deleteSegment);
+  }
+
+  public synchronized Map<String, Transcript> recover() {
+    Map<String, List<Exchange>> sessions = new HashMap<>();
+    long firstSegmentToReplay = files.readSnapshot()
+      .map(snapshot -> decodeSnapshot(snapshot, sessions))
+      .orElse(0L);
+
+    files.segmentIndexes().stream()
+      .filter(index -> index >= firstSegmentToReplay)
+      .sorted()
+      .forEach(index -> replaySegment(index == segmentIndex ? segment.duplicate() : files.openSegment(index, segmentSize), sessions));
+
+    Map<String, Transcript> transcripts = new HashMap<>();
+    sessions.forEach((sessionId, exchanges) -> transcripts.put(sessionId, new Transcript(exchanges)));
+    return transcripts;
+  }
+
+  public OutputTracker<JournalEntry> trackEntries() {
+    return listener.createTracker();
+  }
+
+  @Override
+  public void close() {
+    if (committer != null) committer.shutdown();
+    commit();
+  }
+
+  private void openNextSegment() {
+    segmentIndex++;
+    segment = files.openSegment(segmentIndex, segmentSize);
+  }
+
+  private static void replaySegment(ByteBuffer buffer, Map<String, List<Exchange>> sessions) {
+    int position = 0;
+    while (position + RECORD_HEADER_SIZE <= buffer.limit()) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.limit()) return;
+
+      byte[] payload = new byte[length];
+      buffer.get(position + RECORD_HEADER_SIZE, payload);
+      if (crc(payload) != buffer.getInt(position + 4)) return;
+
+      JournalEntry entry = decode(payload);
+      sessions.computeIfAbsent(entry.sessionId(), ignored -> new ArrayList<>()).add(entry.exchange());
+      position += RECORD_HEADER_SIZE + length;
+    }
+  }
+
+  private static byte[] encode(JournalEntry entry) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      writeString(out, entry.sessionId());
+      writeExchange(out, entry.exchange());
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static JournalEntry decode(byte[] payload) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+      return new JournalEntry(readString(in), readExchange(in));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] encodeSnapshot(long firstSegmentToReplay, Map<String, Transcript> sessions) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeLong(firstSegmentToReplay);
+      out.writeInt(sessions.size());
+      for (Map.Entry<String, Transcript> session : sessions.entrySet()) {
+        writeString(out, session.getKey());
+        List<Exchange> exchanges = session.getValue().exchanges();
+        out.writeInt(exchanges.size());
+        for (Exchange exchange : exchanges) {
+          writeExchange(out, exchange);
+        }
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long decodeSnapshot(byte[] snapshot, Map<String, List<Exchange>> sessions) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+      int version = in.readInt();
+      if (version != SNAPSHOT_VERSION) {
+        throw new IllegalStateException("Unsupported journal snapshot version: " + version);
+      }
+      long firstSegmentToReplay = in.readLong();
+      int sessionCount = in.readInt();
+      for (int i = 0; i < sessionCount; i++) {
+        String sessionId = readString(in);
+        int exchangeCount = in.readInt();
+        List<Exchange> exchanges = new ArrayList<>(exchangeCount);
+        for (int j = 0; j < exchangeCount; j++) {
+          exchanges.add(readExchange(in));
+        }
+        sessions.put(sessionId, exchanges);
+      }
+      return firstSegmentToReplay;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static void writeExchange(DataOutputStream out, Exchange exchange) throws IOException {
+    writeString(out, exchange.prompt());
+    writeString(out, exchange.answer());
+  }
+
+  static Exchange readExchange(DataInputStream in) throws IOException {
+    return new Exchange(readString(in), readString(in));
+  }
+
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int crc(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  public record JournalEntry(String sessionId, Exchange exchange) {
+  }
+
+
+  interface JournalFiles {
+    List<Long> segmentIndexes();
+
+    ByteBuffer openSegment(long index, int size);
+
+    void force(ByteBuffer segment);
+
+    void deleteSegment(long index);
+
+    Optional<byte[]> readSnapshot();
+
+    void writeSnapshot(byte[] snapshot);
+  }
+
+  private static class MappedJournalFiles implements JournalFiles {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private final Path directory;
+
+    MappedJournalFiles(Path directory) {
+      try {
+        this.directory = Files.createDirectories(directory);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public List<Long> segmentIndexes() {
+      try (Stream<Path> paths = Files.list(directory)) {
+        return paths
+          .map(path -> path.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+          .toList();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public ByteBuffer openSegment(long index, int size) {
+      try (FileChannel channel = FileChannel.open(segmentPath(index),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        long length = Math.max(channel.size(), size);
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void force(ByteBuffer segment) {
+      ((MappedByteBuffer) segment).force();
+    }
+
+    @Override
+    public void deleteSegment(long index) {
+      try {
+        Files.deleteIfExists(segmentPath(index));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public Optional<byte[]> readSnapshot() {
+      Path snapshot = directory.resolve(SNAPSHOT_FILE);
+      if (!Files.exists(snapshot)) return Optional.empty();
+      try {
+        return Optional.of(Files.readAllBytes(snapshot));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void writeSnapshot(byte[] snapshot) {
+      try {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+          channel.write(ByteBuffer.wrap(snapshot));
+          channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private Path segmentPath(long index) {
+      return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+  }
+
+  //    EMBEDDED STUB
+
+  private static class StubbedJournalFiles implements JournalFiles {
+    private final Map<Long, ByteBuffer> segments = new HashMap<>();
+    private byte[] snapshot;
+
+    @Override
+    public List<Long> segmentIndexes() {
+      return List.copyOf(segments.keySet());
+    }
+
+    @Override
+    public ByteBuffer openSegment(long index, int size) {
+      return segments.computeIfAbsent(index, ignored -> ByteBuffer.allocate(size)).duplicate();
+    }
+
+    @Override
+    public void force(ByteBuffer segment) {
+    }
+
+    @Override
+    public void deleteSegment(long index) {
+      segments.remove(index);
+    }
+
+    @Override
+    public Optional<byte[]> readSnapshot() {
+      return Optional.ofNullable(snapshot);
+    }
+
+    @Override
+    public void writeSnapshot(byte[] snapshot) {
+      this.snapshot = snapshot;
+    }
+  }
+
+}
@@ -0,0 +1,357 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.Transcript;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Keeps recently used transcripts in memory as they are, deflates them into a
+// byte array once they have been idle for compressAfter, and moves them to a
+// spill file once idle for spillAfter. get() transparently brings a transcript
+// back, and it starts its idle time again from there. Spill files are only a
+// cache (the journal is what survives restarts), so they're cleared at startup.
+//
+// Compressing and file I/O happen outside the map's locks: a slot is replaced
+// only if it's still the one that was read, and the loser of a race retries
+// (or deletes the spill file it wrote). Every spill gets a new file, so a file
+// is never rewritten while someone may be reading it.
+public class TranscriptStore {
+  private static final Duration NEVER = Duration.ofDays(365 * 100);
+
+  private final SpillFiles spillFiles;
+  private final long compressAfterNanos;
+  private final long spillAfterNanos;
+  private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+  private final AtomicLong nextSpillId = new AtomicLong(1);
+
+  public static TranscriptStore create(Path spillDirectory, Duration compressAfter, Duration spillAfter) {
+    return new TranscriptStore(new DirectorySpillFiles(spillDirectory), compressAfter, spillAfter);
+  }
+
+  public static TranscriptStore createInMemory() {
+    return createInMemory(NEVER);
+  }
+
+  // Never spills: idle transcripts stay in memory, compressed
+  public static TranscriptStore createInMemory(Duration compressAfter) {
+    return new TranscriptStore(new NoSpillFiles(), compressAfter, NEVER);
+  }
+
+  public static TranscriptStore createNull() {
+    return createNull(NEVER, NEVER);
+  }
+
+  public static TranscriptStore createNull(Duration compressAfter, Duration spillAfter) {
+    return new TranscriptStore(new StubbedSpillFiles(), compressAfter, spillAfter);
+  }
+
+  private TranscriptStore(SpillFiles spillFiles, Duration compressAfter, Duration spillAfter) {
+    this.spillFiles = spillFiles;
+    this.compressAfterNanos = compressAfter.toNanos();
+    this.spillAfterNanos = spillAfter.toNanos();
+    spillFiles.clear();
+  }
+
+  public Transcript get(String sessionId) {
+    while (true) {
+      Slot slot = slots.get(sessionId);
+      if (slot == null) return Transcript.empty();
+
+      Transcript transcript = transcript(sessionId, slot);
+      if (slots.replace(sessionId, slot, Slot.hot(transcript, System.nanoTime()))) {
+        if (slot.tier() == Tier.SPILLED) spillFiles.delete(slot.spillId());
+        return transcript;
+      }
+    }
+  }
+
+  public void put(String sessionId, Transcript transcript) {
+    Slot previous = slots.put(sessionId, Slot.hot(transcript, System.nanoTime()));
+    if (previous != null && previous.tier() == Tier.SPILLED) {
+      spillFiles.delete(previous.spillId());
+    }
+  }
+
+  // Reads the spill files of currently spilled transcripts, so that a caller
+  // can do that before taking a lock around snapshot(prefetched)
+  public Prefetched prefetchSpilled() {
+    Map<Long, Transcript> transcripts = new HashMap<>();
+    slots.forEach((sessionId, slot) -> {
+      if (slot.tier() != Tier.SPILLED) return;
+      try {
+        transcripts.put(slot.spillId(), decompress(spillFiles.read(slot.spillId())));
+      } catch (UncheckedIOException e) {
+        // brought back since; snapshot() will find it in memory
+      }
+    });
+    return new Prefetched(transcripts);
+  }
+
+  // Decodes every transcript without touching its tier or idle time
+  public Map<String, Transcript> snapshot() {
+    return snapshot(new Prefetched(Map.of()));
+  }
+
+  public Map<String, Transcript> snapshot(Prefetched prefetched) {
+    Map<String, Transcript> transcripts = new HashMap<>();
+    slots.forEach((sessionId, slot) -> {
+      Transcript transcript = slot.tier() == Tier.SPILLED ? prefetched.spilled().get(slot.spillId()) : null;
+      transcripts.put(sessionId, transcript != null ? transcript : transcript(sessionId, slot));
+    });
+    return transcripts;
+  }
+
+  // Returns the sessions that went idle in this sweep: they were hot, and
+  // are now compressed or spilled
+  public List<String> sweep() {
+    return sweep(System.nanoTime());
+  }
+
+  List<String> sweep(long nowNanos) {
+    List<String> wentIdle = new ArrayList<>();
+    slots.forEach((sessionId, slot) -> {
+      long idleNanos = nowNanos - slot.lastAccessNanos();
+      boolean moved = false;
+      if (idleNanos >= spillAfterNanos && slot.tier() != Tier.SPILLED) {
+        moved = spill(sessionId, slot);
+      } else if (idleNanos >= compressAfterNanos && slot.tier() == Tier.HOT) {
+        moved = slots.replace(sessionId, slot, Slot.compressed(compress(slot.transcript()), slot.lastAccessNanos()));
+      }
+      if (moved && slot.tier() == Tier.HOT) wentIdle.add(sessionId);
+    });
+    return wentIdle;
+  }
+
+  private boolean spill(String sessionId, Slot slot) {
+    long spillId = nextSpillId.getAndIncrement();
+    spillFiles.write(spillId, slot.tier() == Tier.COMPRESSED ? slot.compressed() : compress(slot.transcript()));
+    if (!slots.replace(sessionId, slot, Slot.spilled(spillId, slot.lastAccessNanos()))) {
+      // used or replaced while we were writing
+      spillFiles.delete(spillId);
+      return false;
+    }
+    return true;
+  }
+
+  public Stats stats() {
+    long hot = 0;
+    long compressed = 0;
+    long spilled = 0;
+    long compressedBytes = 0;
+    for (Slot slot : slots.values()) {
+      switch (slot.tier()) {
+        case HOT -> hot++;
+        case COMPRESSED -> {
+          compressed++;
+          compressedBytes += slot.compressed().length;
+        }
+        case SPILLED -> spilled++;
+      }
+    }
+    return new Stats(hot, compressed, spilled, compressedBytes);
+  }
+
+  // A spill file can be deleted under us by a get() that brought the
+  // transcript back first; the slot it left behind has the transcript then.
+  private Transcript transcript(String sessionId, Slot slot) {
+    return switch (slot.tier()) {
+      case HOT -> slot.transcript();
+      case COMPRESSED -> decompress(slot.compressed());
+      case SPILLED -> {
+        try {
+          yield decompress(spillFiles.read(slot.spillId()));
+        } catch (UncheckedIOException e) {
+          Slot current = slots.get(sessionId);
+          if (current == null || current == slot) throw e;
+          yield transcript(sessionId, current);
+        }
+      }
+    };
+  }
+
+  static byte[] compress(Transcript transcript) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+        out.writeInt(transcript.size());
+        for (Exchange exchange : transcript.exchanges()) {
+          TranscriptJournal.writeExchange(out, exchange);
+        }
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static Transcript decompress(byte[] compressed) {
+    try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+      int count = in.readInt();
+      List<Exchange> exchanges = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        exchanges.add(TranscriptJournal.readExchange(in));
+      }
+      return new Transcript(exchanges);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public record Stats(long hotSessions, long compressedSessions, long spilledSessions, long compressedBytes) {
+  }
+
+  public record Prefetched(Map<Long, Transcript> spilled) {
+  }
+
+  enum Tier {
+    HOT,
+    COMPRESSED,
+    SPILLED
+  }
+
+  // Exactly one of transcript and compressed is set, or neither once spilled
+  private record Slot(Transcript transcript, byte[] compressed, long spillId, long lastAccessNanos) {
+    static Slot hot(Transcript transcript, long lastAccessNanos) {
+      return new Slot(transcript, null, 0, lastAccessNanos);
+    }
+
+    static Slot compressed(byte[] compressed, long lastAccessNanos) {
+      return new Slot(null, compressed, 0, lastAccessNanos);
+    }
+
+    static Slot spilled(long spillId, long lastAccessNanos) {
+      return new Slot(null, null, spillId, lastAccessNanos);
+    }
+
+    Tier tier() {
+      if (transcript != null) return Tier.HOT;
+      return compressed != null ? Tier.COMPRESSED : Tier.SPILLED;
+    }
+  }
+
+
+  interface SpillFiles {
+    void write(long spillId, byte[] compressed);
+
+    byte[] read(long spillId);
+
+    void delete(long spillId);
+
+    void clear();
+  }
+
+  private static class DirectorySpillFiles implements SpillFiles {
+    private static final String SUFFIX = ".transcript";
+
+    private final Path directory;
+
+    DirectorySpillFiles(Path directory) {
+      try {
+        this.directory = Files.createDirectories(directory);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void write(long spillId, byte[] compressed) {
+      try {
+        Files.write(path(spillId), compressed);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public byte[] read(long spillId) {
+      try {
+        return Files.readAllBytes(path(spillId));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void delete(long spillId) {
+      try {
+        Files.deleteIfExists(path(spillId));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void clear() {
+      try (Stream<Path> paths = Files.list(directory)) {
+        for (Path path : paths.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).toList()) {
+          Files.delete(path);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    // Named after the spill, not the session: session ids come from clients
+    private Path path(long spillId) {
+      return directory.resolve(spillId + SUFFIX);
+    }
+  }
+
+  private static class NoSpillFiles implements SpillFiles {
+    @Override
+    public void write(long spillId, byte[] compressed) {
+      throw new IllegalStateException("This TranscriptStore doesn't spill");
+    }
+
+    @Override
+    public byte[] read(long spillId) {
+      throw new IllegalStateException("This TranscriptStore doesn't spill");
+    }
+
+    @Override
+    public void delete(long spillId) {
+    }
+
+    @Override
+    public void clear() {
+    }
+  }
+
+  //    EMBEDDED STUB
+
+  private static class StubbedSpillFiles implements SpillFiles {
+    private final Map<Long, byte[]> files = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(long spillId, byte[] compressed) {
+      files.put(spillId, compressed);
+    }
+
+    @Override
+    public byte[] read(long spillId) {
+      byte[] compressed = files.get(spillId);
+      if (compressed == null) throw new UncheckedIOException(new FileNotFoundException(String.valueOf(spillId)));
+      return compressed;
+    }
+
+    @Override
+    public void delete(long spillId) {
+      files.remove(spillId);
+    }
+
+    @Override
+    public void clear() {
+      files.clear();
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+package dev.ted.stream.ai_chronicles;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Compares time-to-first-successful-/say for a plain start against fast-start
+// mode. Needs the thin jar and dependencies: `mvn -Pfast-start -DskipTests package`
+@Tag("benchmark")
+class StartupBenchmark {
+
+  private static final Path JAR = Path.of("target/back_end-0.0.1-SNAPSHOT.jar");
+  private static final Path LIB = Path.of("target/lib");
+  private static final Path ARCHIVE = Path.of("target/startup-benchmark.jsa");
+  private static final List<String> FAST_START = List.of(
+    "-Dspring.aot.enabled=true",
+    "-Dspring.profiles.active=fast-start");
+  private static final int RUNS = 3;
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+  private int port;
+
+  @Test
+  void timeToFirstSuccessfulSay() throws Exception {
+    assumeTrue(Files.exists(JAR) && Files.isDirectory(LIB),
+      "Run `mvn -Pfast-start -DskipTests package` before this benchmark");
+
+    report("plain start", List.of());
+
+    Files.deleteIfExists(ARCHIVE);
+    Process training = start(concat(FAST_START, List.of("-XX:ArchiveClassesAtExit=" + ARCHIVE)));
+    awaitFirstSay(training);
+    training.destroy();
+    training.waitFor();
+
+    report("AOT + lazy initialization", FAST_START);
+    report("AOT + lazy initialization + AppCDS", concat(FAST_START, List.of("-XX:SharedArchiveFile=" + ARCHIVE)));
+  }
+
+  private void report(String mode, List<String> jvmOptions) throws Exception {
+    List<Long> millis = new ArrayList<>();
+    for (int i = 0; i < RUNS; i++) {
+      long start = System.nanoTime();
+      Process process = start(jvmOptions);
+      try {
+        awaitFirstSay(process);
+        millis.add((System.nanoTime() - start) / 1_000_000);
+      } finally {
+        process.destroy();
+        process.waitFor();
+      }
+    }
+    System.out.printf("%-40s time to first /say: %s ms%n", mode,
+      millis.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+  }
+
+  private Process start(List<String> jvmOptions) throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    String classpath = JAR + ":" + classpathOf(LIB);
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvmOptions);
+    command.addAll(List.of(
+      "-cp", classpath,
+      AiChroniclesApplication.class.getName(),
+      "--server.port=" + port,
+      "--openai.stubbed=true",
+      "--journal.directory="));
+    return new ProcessBuilder(command)
+      .redirectErrorStream(true)
+      .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+      .start();
+  }
+
+  private void awaitFirstSay(Process process) throws InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/say"))
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString("""
+        {"message": "startup benchmark"}"""))
+      .timeout(Duration.ofSeconds(5))
+      .build();
+    while (process.isAlive()) {
+      try {
+        if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(5);
+    }
+    throw new IllegalStateException("Back-end exited with status " + process.exitValue() + " before answering /say");
+  }
+
+  private static String classpathOf(Path directory) throws IOException {
+    try (Stream<Path> jars = Files.list(directory)) {
+      return jars.map(Path::toString).sorted().collect(Collectors.joining(":"));
+    }
+  }
+
+  private static List<String> concat(List<String> first, List<String> second) {
+    return Stream.concat(first.stream(), second.stream()).toList();
+  }
+}
@@ -0,0 +1,182 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.application.BrownoutController.Degradation;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class BrownoutControllerTest {
+
+  private static final Duration TARGET = Duration.ofMillis(100);
+  private static final Duration SLOW = Duration.ofMillis(500);
+  private static final Duration FAST = Duration.ofMillis(10);
+  private static final Degradation SHORTER = new Degradation(64, null, null);
+  private static final Degradation SHORTER_AND_FORGETFUL = new Degradation(64, 2, "fast-model");
+
+  @Test
+  void startsAtFullQuality() {
+    BrownoutController controller = createController(4);
+
+    assertThat(controller.current())
+      .isEqualTo(Degradation.FULL_QUALITY);
+  }
+
+  @Test
+  void degradesOneLevelWhenP90ExceedsTarget() {
+    BrownoutController controller = createController(4);
+
+    recordTimes(controller, 4, SLOW);
+
+    assertThat(controller.current())
+      .isEqualTo(SHORTER);
+  }
+
+  @Test
+  void waitsForFullWindowBeforeJudging() {
+    BrownoutController controller = createController(4);
+
+    recordTimes(controller, 3, SLOW);
+
+    assertThat(controller.current())
+      .isEqualTo(Degradation.FULL_QUALITY);
+  }
+
+  @Test
+  void judgesEachLevelOnFreshSamples() {
+    BrownoutController controller = createController(4);
+    recordTimes(controller, 4, SLOW);
+
+    recordTimes(controller, 3, SLOW);
+    assertThat(controller.current())
+      .isEqualTo(SHORTER);
+
+    recordTimes(controller, 1, SLOW);
+    assertThat(controller.current())
+      .isEqualTo(SHORTER_AND_FORGETFUL);
+  }
+
+  @Test
+  void staysAtCheapestLevelWhileLatencyStaysHigh() {
+    BrownoutController controller = createController(4);
+
+    recordTimes(controller, 20, SLOW);
+
+    assertThat(controller.current())
+      .isEqualTo(SHORTER_AND_FORGETFUL);
+  }
+
+  @Test
+  void ignoresOccasionalSlowCall() {
+    BrownoutController controller = createController(10);
+
+    recordTimes(controller, 9, FAST);
+    recordTimes(controller, 1, SLOW);
+
+    assertThat(controller.current())
+      .isEqualTo(Degradation.FULL_QUALITY);
+  }
+
+  @Test
+  void restoresQualityAsLatencyRecovers() {
+    BrownoutController controller = createController(4);
+    recordTimes(controller, 8, SLOW);
+
+    recordTimes(controller, 4, FAST);
+    assertThat(controller.current())
+      .isEqualTo(SHORTER);
+
+    recordTimes(controller, 4, FAST);
+    assertThat(controller.current())
+      .isEqualTo(Degradation.FULL_QUALITY);
+  }
+
+  @Test
+  void holdsLevelWhileLatencyIsJustUnderTarget() {
+    BrownoutController controller = createController(4);
+    recordTimes(controller, 4, SLOW);
+
+    recordTimes(controller, 8, Duration.ofMillis(80));
+
+    assertThat(controller.current())
+      .isEqualTo(SHORTER);
+  }
+
+  @Test
+  void tracksEveryTransition() {
+    BrownoutController controller = createController(4);
+    var transitions = controller.trackTransitions();
+
+    recordTimes(controller, 4, SLOW);
+    recordTimes(controller, 4, FAST);
+
+    assertThat(transitions.output())
+      .extracting(BrownoutController.Transition::fromLevel, BrownoutController.Transition::toLevel)
+      .containsExactly(
+        tuple(0, 1),
+        tuple(1, 0));
+  }
+
+  @Test
+  void reportsStatusForMetrics() {
+    BrownoutController controller = createController(4);
+    recordTimes(controller, 4, SLOW);
+    recordTimes(controller, 4, SLOW);
+    recordTimes(controller, 4, FAST);
+
+    BrownoutController.Status status = controller.status();
+
+    assertThat(status.level()).isEqualTo(1);
+    assertThat(status.degradation()).isEqualTo(SHORTER);
+    assertThat(status.degradations()).isEqualTo(2);
+    assertThat(status.recoveries()).isEqualTo(1);
+    assertThat(status.lastTransition().toLevel()).isEqualTo(1);
+  }
+
+  @Test
+  void disabledControllerNeverDegrades() {
+    BrownoutController controller = BrownoutController.disabled();
+
+    recordTimes(controller, 100, Duration.ofHours(1));
+
+    assertThat(controller.current())
+      .isEqualTo(Degradation.FULL_QUALITY);
+  }
+
+  @Test
+  void degradationCapsMaxTokensAndSwitchesModel() {
+    Degradation degradation = new Degradation(64, null, "fast-model");
+
+    assertThat(degradation.apply(OpenAiClient.Options.DEFAULT))
+      .isEqualTo(new OpenAiClient.Options("fast-model", 64));
+    assertThat(degradation.apply(new OpenAiClient.Options("my-model", 32)))
+      .isEqualTo(new OpenAiClient.Options("fast-model", 32));
+  }
+
+  @Test
+  void degradationKeepsOnlyMostRecentHistory() {
+    List<Exchange> history = List.of(
+      new Exchange("1", "a"), new Exchange("2", "b"), new Exchange("3", "c"));
+
+    assertThat(new Degradation(null, 2, null).trim(history))
+      .containsExactly(new Exchange("2", "b"), new Exchange("3", "c"));
+    assertThat(Degradation.FULL_QUALITY.trim(history))
+      .isEqualTo(history);
+  }
+
+  private BrownoutController createController(int window) {
+    return new BrownoutController(TARGET, 0.5, window,
+      List.of(Degradation.FULL_QUALITY, SHORTER, SHORTER_AND_FORGETFUL));
+  }
+
+  private void recordTimes(BrownoutController controller, int times, Duration latency) {
+    for (int i = 0; i < times; i++) {
+      controller.record(latency);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.infrastructure.LocalCompletionCache;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@WebMvcTest(value = CacheController.class, properties = "cache.peer-secret=" + CacheControllerWebTest.SECRET)
+class CacheControllerWebTest {
+  static final String SECRET = "peer_secret";
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  LocalCompletionCache localPartition;
+
+  @Test
+  void returnsCachedCompletion() throws Exception {
+    localPartition.put("cached_key", "cached_completion");
+
+    MockHttpServletResponse response = mockMvc.perform(get("/cache/cached_key").header("X-Cache-Secret", SECRET))
+      .andReturn().getResponse();
+
+    assertThat(response.getStatus())
+      .isEqualTo(200);
+    JSONAssert.assertEquals("""
+        { "completion": "cached_completion" }
+        """,
+      response.getContentAsString(), false);
+  }
+
+  @Test
+  void returnsNotFoundForMissingKey() throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(get("/cache/missing_key").header("X-Cache-Secret", SECRET))
+      .andReturn().getResponse();
+
+    assertThat(response.getStatus())
+      .isEqualTo(404);
+  }
+
+  @Test
+  void storesPostedCompletion() throws Exception {
+    mockMvc.perform(post("/cache/posted_key")
+      .header("X-Cache-Secret", SECRET)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("""
+          {"completion": "posted_completion"}"""))
+      .andReturn();
+
+    assertThat(localPartition.get("posted_key"))
+      .contains("posted_completion");
+  }
+
+  @Test
+  void refusesRequestsWithoutSecret() throws Exception {
+    localPartition.put("cached_key", "cached_completion");
+
+    MockHttpServletResponse response = mockMvc.perform(get("/cache/cached_key"))
+      .andReturn().getResponse();
+
+    assertThat(response.getStatus())
+      .isEqualTo(403);
+  }
+
+  @Test
+  void refusesStoresWithWrongSecret() throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(post("/cache/refused_key")
+        .header("X-Cache-Secret", "guessed")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("""
+            {"completion": "posted_completion"}"""))
+      .andReturn().getResponse();
+
+    assertThat(response.getStatus())
+      .isEqualTo(403);
+    assertThat(localPartition.get("refused_key"))
+      .isEmpty();
+  }
+
+  @TestConfiguration
+  static class LocalPartition {
+    @Bean
+    LocalCompletionCache localCompletionCache() {
+      return new LocalCompletionCache(10);
+    }
+  }
+}
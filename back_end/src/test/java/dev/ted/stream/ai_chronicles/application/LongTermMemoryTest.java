@@ -0,0 +1,89 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongTermMemoryTest {
+
+  private static final Executor INLINE = Runnable::run;
+
+  private static final List<Exchange> TRANSCRIPT = List.of(
+    new Exchange("I pick up the rusty wrench", "Gizmo eyes the wrench nervously."),
+    new Exchange("Where is the coolant leak?", "Behind the reactor, hissing."),
+    new Exchange("Ask Bolt about the fuel cells", "Bolt says the fuel cells are in the hangar."),
+    new Exchange("Go to the hangar", "The hangar doors are jammed."),
+    new Exchange("Force the doors", "They creak open."));
+
+  @Test
+  void sendsWholeTranscriptWhileItIsShort() {
+    LongTermMemory memory = new LongTermMemory(10, 2, 10, INLINE);
+
+    assertThat(memory.recall("my_session", TRANSCRIPT, "Use the wrench"))
+      .isEqualTo(TRANSCRIPT);
+  }
+
+  @Test
+  void sendsRelevantEarlierExchangesThenRecentOnes() {
+    LongTermMemory memory = new LongTermMemory(2, 1, 10, INLINE);
+    memory.remember("my_session", TRANSCRIPT);
+
+    assertThat(memory.recall("my_session", TRANSCRIPT, "Use the wrench"))
+      .containsExactly(TRANSCRIPT.get(0), TRANSCRIPT.get(3), TRANSCRIPT.get(4));
+  }
+
+  @Test
+  void historyStaysSameSizeAsTranscriptGrows() {
+    LongTermMemory memory = new LongTermMemory(2, 1, 10, INLINE);
+    List<Exchange> transcript = new ArrayList<>(TRANSCRIPT);
+    for (int i = 0; i < 100; i++) {
+      transcript.add(new Exchange("Look around " + i, "Nothing but the wrench " + i));
+    }
+    memory.remember("my_session", transcript);
+
+    assertThat(memory.recall("my_session", transcript, "Use the wrench"))
+      .hasSize(3);
+  }
+
+  @Test
+  void indexesOnIndexerRatherThanCaller() {
+    List<Runnable> queued = new ArrayList<>();
+    LongTermMemory memory = new LongTermMemory(2, 1, 10, queued::add);
+
+    memory.remember("my_session", TRANSCRIPT);
+
+    assertThat(memory.recall("my_session", TRANSCRIPT, "Use the wrench"))
+      .containsExactly(TRANSCRIPT.get(3), TRANSCRIPT.get(4));
+    queued.forEach(Runnable::run);
+    assertThat(memory.recall("my_session", TRANSCRIPT, "Use the wrench"))
+      .containsExactly(TRANSCRIPT.get(0), TRANSCRIPT.get(3), TRANSCRIPT.get(4));
+  }
+
+  @Test
+  void rebuildsMissingIndexFromTranscript() {
+    LongTermMemory memory = new LongTermMemory(2, 1, 10, INLINE);
+
+    // nothing was remembered, as after a restart: the first recall starts a rebuild
+    memory.recall("my_session", TRANSCRIPT, "Use the wrench");
+
+    assertThat(memory.recall("my_session", TRANSCRIPT, "Use the wrench"))
+      .containsExactly(TRANSCRIPT.get(0), TRANSCRIPT.get(3), TRANSCRIPT.get(4));
+  }
+
+  @Test
+  void dropsLeastRecentlyUsedIndexes() {
+    LongTermMemory memory = new LongTermMemory(2, 1, 2, INLINE);
+
+    memory.remember("session_1", TRANSCRIPT);
+    memory.remember("session_2", TRANSCRIPT);
+    memory.remember("session_3", TRANSCRIPT);
+
+    assertThat(memory.indexedSessions())
+      .isEqualTo(2);
+  }
+}
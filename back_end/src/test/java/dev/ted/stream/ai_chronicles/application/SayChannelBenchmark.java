@@ -0,0 +1,84 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Opens many concurrent channel connections, then sends one say on each.
+// Client and server share a JVM, so heap figures cover both ends.
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SayChannelBenchmark {
+
+  @LocalServerPort
+  int port;
+
+  @Autowired
+  SayChannelHandler handler;
+
+  @Test
+  void connectionCount() throws Exception {
+    for (int connections : new int[]{100, 1_000, 5_000}) {
+      measure(connections);
+    }
+  }
+
+  private void measure(int connections) throws Exception {
+    StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+    CountDownLatch answers = new CountDownLatch(connections);
+    TextWebSocketHandler client = new TextWebSocketHandler() {
+      @Override
+      protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        answers.countDown();
+      }
+    };
+
+    long heapBefore = usedHeap();
+    long connectStart = System.nanoTime();
+    List<CompletableFuture<WebSocketSession>> pending = new ArrayList<>();
+    for (int i = 0; i < connections; i++) {
+      pending.add(webSocketClient.execute(client,
+        "ws://localhost:" + port + ChannelConfiguration.CHANNEL_PATH + "?session=benchmark-" + i));
+    }
+    List<WebSocketSession> sessions = new ArrayList<>();
+    for (CompletableFuture<WebSocketSession> future : pending) {
+      sessions.add(future.get(30, TimeUnit.SECONDS));
+    }
+    long connectNanos = System.nanoTime() - connectStart;
+    long heapPerConnection = (usedHeap() - heapBefore) / connections;
+
+    long sayStart = System.nanoTime();
+    for (WebSocketSession session : sessions) {
+      session.sendMessage(new TextMessage("""
+        {"type": "say", "id": "1", "text": "benchmark"}"""));
+    }
+    answers.await(60, TimeUnit.SECONDS);
+    long sayNanos = System.nanoTime() - sayStart;
+
+    System.out.printf("%,6d connections: connected in %,d ms, ~%,d heap bytes per connection, one say each answered in %,d ms (server sees %,d)%n",
+      connections, connectNanos / 1_000_000, heapPerConnection, sayNanos / 1_000_000, handler.connectionCount());
+
+    for (WebSocketSession session : sessions) {
+      session.close();
+    }
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    System.gc();
+    Thread.sleep(100);
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,204 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.application.SayChannelHandler.ChannelMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SayChannelHandlerTest {
+
+  @LocalServerPort
+  int port;
+
+  @Autowired
+  SayChannelHandler handler;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  private ChannelClient client;
+
+  @AfterEach
+  void closeClient() throws Exception {
+    if (client != null) client.close();
+  }
+
+  @Test
+  void answersSayFrameWithSameId() throws Exception {
+    client = connect("my_session");
+
+    client.send(say("1", "my_message"));
+
+    assertThat(client.receive())
+      .isEqualTo(ChannelMessage.answer("1", "nulled_OpenAiClient_response"));
+  }
+
+  @Test
+  void rejectsBlankMessage() throws Exception {
+    client = connect("my_session");
+
+    client.send(say("1", " "));
+
+    assertThat(client.receive())
+      .isEqualTo(ChannelMessage.error("1", "message must not be blank"));
+  }
+
+  @Test
+  void rejectsUnsupportedFrameType() throws Exception {
+    client = connect("my_session");
+
+    client.send(new ChannelMessage("unknown", "1", "text", null));
+
+    assertThat(client.receive())
+      .isEqualTo(ChannelMessage.error("1", "unsupported frame type: unknown"));
+  }
+
+  @Test
+  void rejectsNullFrameAsMalformed() throws Exception {
+    client = connect("my_session");
+
+    client.sendRaw("null");
+
+    assertThat(client.receive())
+      .isEqualTo(ChannelMessage.error(null, "malformed frame"));
+  }
+
+  @Test
+  void rejectsUnparseableFrameAsMalformed() throws Exception {
+    client = connect("my_session");
+
+    client.sendRaw("{not json");
+
+    assertThat(client.receive())
+      .isEqualTo(ChannelMessage.error(null, "malformed frame"));
+  }
+
+  @Test
+  void pushesToConnectionsForSession() throws Exception {
+    client = connect("push_session");
+    try (ChannelClient otherSession = connect("other_session")) {
+      awaitConnections(2);
+
+      handler.push("push_session", "pushed_text");
+
+      assertThat(client.receive())
+        .isEqualTo(ChannelMessage.push("pushed_text"));
+      assertThat(otherSession.poll())
+        .isNull();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "channel.max-pending-says=0")
+  class WhenConnectionHasTooManyPendingSays {
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void rejectsSay() throws Exception {
+      client = connect(port, "my_session");
+
+      client.send(say("1", "my_message"));
+
+      assertThat(client.receive())
+        .isEqualTo(ChannelMessage.error("1", "too many pending messages"));
+    }
+  }
+
+  @Nested
+  @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "channel.stream-events=true")
+  class WhenStreamingEvents {
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void sendsGameEventsBeforeAnswer() throws Exception {
+      client = connect(port, "my_session");
+
+      client.send(say("1", "my_message"));
+
+      assertThat(client.receive())
+        .isEqualTo(ChannelMessage.event("1", Map.of("kind", "Narrative", "text", "nulled_OpenAiClient_response")));
+      assertThat(client.receive())
+        .isEqualTo(ChannelMessage.answer("1", "nulled_OpenAiClient_response"));
+    }
+  }
+
+  private ChannelClient connect(String sessionId) throws Exception {
+    return connect(port, sessionId);
+  }
+
+  private ChannelClient connect(int port, String sessionId) throws Exception {
+    ChannelClient client = new ChannelClient(objectMapper);
+    client.session = new StandardWebSocketClient()
+      .execute(client, "ws://localhost:" + port + ChannelConfiguration.CHANNEL_PATH + "?session=" + sessionId)
+      .get(5, TimeUnit.SECONDS);
+    return client;
+  }
+
+  private static ChannelMessage say(String id, String text) {
+    return new ChannelMessage(ChannelMessage.SAY, id, text, null);
+  }
+
+  private void awaitConnections(int count) throws InterruptedException {
+    for (int i = 0; i < 100 && handler.connectionCount() < count; i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  static class ChannelClient extends TextWebSocketHandler implements AutoCloseable {
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<ChannelMessage> received = new LinkedBlockingQueue<>();
+    private WebSocketSession session;
+
+    ChannelClient(ObjectMapper objectMapper) {
+      this.objectMapper = objectMapper;
+    }
+
+    void send(ChannelMessage frame) throws Exception {
+      sendRaw(objectMapper.writeValueAsString(frame));
+    }
+
+    void sendRaw(String payload) throws Exception {
+      session.sendMessage(new TextMessage(payload));
+    }
+
+    ChannelMessage receive() throws InterruptedException {
+      return received.poll(5, TimeUnit.SECONDS);
+    }
+
+    ChannelMessage poll() throws InterruptedException {
+      return received.poll(100, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+      received.add(objectMapper.readValue(message.getPayload(), ChannelMessage.class));
+    }
+
+    @Override
+    public void close() throws Exception {
+      session.close();
+    }
+  }
+}
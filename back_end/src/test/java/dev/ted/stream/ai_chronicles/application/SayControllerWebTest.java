@@ -1,10 +1,17 @@
 package dev.ted.stream.ai_chronicles.application;
 
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
 import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
@@ -14,12 +21,15 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
-@WebMvcTest
+@WebMvcTest(SayController.class)
 public class SayControllerWebTest {
 
   @Autowired
   MockMvc mockMvc;
 
+  @Autowired
+  Sessions sessions;
+
   @Test
   void acceptsPostAndReturnsResponse() throws Exception {
     MvcResult result = mockMvc.perform(post("/say")
@@ -41,4 +51,46 @@ public class SayControllerWebTest {
       response.getContentAsString(), false);
   }
 
+  @Test
+  void recordsExchangeInSessionNamedByHeader() throws Exception {
+    mockMvc.perform(post("/say")
+      .header(SayController.SESSION_HEADER, "my_session")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("""
+          {"message": "my_message"}"""))
+      .andReturn();
+
+    assertThat(sessions.transcript("my_session").exchanges())
+      .containsExactly(new Exchange("my_message", "hardcoded_answer"));
+  }
+
+  @Nested
+  @WebMvcTest(value = SayController.class, properties = "say.timeout=PT0S")
+  @Import(NulledInfrastructure.class)
+  class WhenDeadlineExpiresBeforeSending {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void respondsWithGatewayTimeout() throws Exception {
+      MvcResult result = mockMvc.perform(post("/say")
+          .contentType(MediaType.APPLICATION_JSON)
+          .content("""
+              {"message": "irrelevant_message"}"""))
+        .andReturn();
+
+      assertThat(result.getResponse().getStatus())
+        .isEqualTo(504);
+    }
+  }
+
+  @TestConfiguration
+  static class NulledInfrastructure {
+    @Bean
+    Sessions sessions() {
+      return new Sessions(OpenAiClient.createNull("hardcoded_answer"), TranscriptJournal.createNull());
+    }
+  }
+
 }
@@ -0,0 +1,64 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.infrastructure.Latency;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.PhaseHistograms;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Outcome;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Phase;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Drives SayController from many threads against a nulled OpenAI with
+// realistic, long-tailed latency, entirely offline.
+@Tag("benchmark")
+class SayLoadBenchmark {
+
+  private static final Latency OPEN_AI_LATENCY = Latency.logNormal(Duration.ofMillis(50), Duration.ofMillis(400));
+  private static final int SAYS_PER_THREAD = 50;
+
+  @Test
+  void throughputByThreadCount() throws Exception {
+    for (int threads : new int[]{1, 16, 64, 256}) {
+      measure(threads);
+    }
+  }
+
+  private void measure(int threads) throws Exception {
+    OpenAiClient openAiClient = OpenAiClient.createNull("benchmark answer", OPEN_AI_LATENCY);
+    SayController controller = new SayController(
+      new Sessions(openAiClient, TranscriptJournal.createNull()), Duration.ofSeconds(30));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    long start = System.nanoTime();
+    List<Future<?>> players = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      String sessionId = "benchmark-" + i;
+      players.add(executor.submit(() -> {
+        for (int say = 0; say < SAYS_PER_THREAD; say++) {
+          controller.post(new SayRequest("benchmark message"), sessionId);
+        }
+      }));
+    }
+    for (Future<?> player : players) {
+      player.get();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+
+    int says = threads * SAYS_PER_THREAD;
+    PhaseHistograms.Summary upstream = openAiClient.httpPhaseHistograms().summarize(Outcome.OK).get(Phase.TIME_TO_FIRST_BYTE);
+    System.out.printf("%,4d threads: %,6d says in %,6d ms = %,8.1f says/s; upstream p50 %.1f ms, p99 %.1f ms%n",
+      threads, says, elapsedNanos / 1_000_000, says * 1e9 / elapsedNanos,
+      upstream.p50Millis(), upstream.p99Millis());
+  }
+}
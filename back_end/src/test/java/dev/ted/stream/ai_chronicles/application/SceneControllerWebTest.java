@@ -0,0 +1,63 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@WebMvcTest(value = SceneController.class, properties = "scene.enabled=true")
+class SceneControllerWebTest {
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  Sessions sessions;
+
+  @Test
+  void repliesForEveryRobotAndRecordsSceneInSession() throws Exception {
+    MvcResult result = mockMvc.perform(post("/scene")
+        .header(SayController.SESSION_HEADER, "my_scene_session")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("""
+            {"robots": [{"robot": "robot_a", "prompt": "prompt a"}, {"robot": "robot_b", "prompt": "prompt b"}]}"""))
+      .andReturn();
+
+    assertThat(result.getResponse().getStatus())
+      .isEqualTo(200);
+    JSONAssert.assertEquals("""
+          { "replies": [{"robot": "robot_a", "reply": "hardcoded_answer"},
+                        {"robot": "robot_b", "reply": "hardcoded_answer"}] }
+        """,
+      result.getResponse().getContentAsString(), true);
+    assertThat(sessions.transcript("my_scene_session").exchanges())
+      .containsExactly(
+        new Exchange("robot_a: prompt a", "hardcoded_answer"),
+        new Exchange("robot_b: prompt b", "hardcoded_answer"));
+  }
+
+  @TestConfiguration
+  static class NulledInfrastructure {
+    @Bean
+    Sessions sessions() {
+      return new Sessions(OpenAiClient.createNull("hardcoded_answer"), TranscriptJournal.createNull());
+    }
+
+    // runs each robot's prompt on the submitting thread
+    @Bean
+    TurnEngine turnEngine(Sessions sessions) {
+      return new TurnEngine(sessions, Runnable::run);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+// Heap held per session while it has a say queued, and after its queue drains.
+@Tag("benchmark")
+class SessionExecutorBenchmark {
+
+  private static final int SESSIONS = 200_000;
+
+  @Test
+  void memoryPerSession() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    SessionExecutor executor = new SessionExecutor(Executors.newFixedThreadPool(8));
+    // keep the pool busy so every session's task stays queued in its mailbox
+    for (int i = 0; i < 8; i++) {
+      executor.submit("blocker-" + i, "block", () -> awaitQuietly(release));
+    }
+
+    long baseline = usedHeapAfterGc();
+    List<CompletableFuture<Boolean>> results = new ArrayList<>(SESSIONS);
+    long start = System.nanoTime();
+    for (int i = 0; i < SESSIONS; i++) {
+      results.add(executor.submit("session-" + i, "message", () -> true));
+    }
+    long submitNanos = System.nanoTime() - start;
+    long queued = usedHeapAfterGc() - baseline;
+    System.out.printf("Submitted to %,d sessions in %,d ms; %,d bytes per session with a queued task%n",
+      SESSIONS, submitNanos / 1_000_000, queued / SESSIONS);
+
+    release.countDown();
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+    results.clear();
+    while (executor.activeSessions() > 0) {
+      Thread.sleep(10);
+    }
+    System.out.printf("After draining: %d active mailboxes, %,d bytes per idle session%n",
+      executor.activeSessions(), Math.max(0, usedHeapAfterGc() - baseline) / SESSIONS);
+  }
+
+  private static boolean awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static long usedHeapAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,177 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionExecutorTest {
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(4);
+  private final SessionExecutor executor = new SessionExecutor(pool);
+
+  @AfterEach
+  void shutDownPool() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void runsTasksForSameSessionOneAtATimeInOrder() {
+    List<String> events = new CopyOnWriteArrayList<>();
+    List<CompletableFuture<String>> results = new ArrayList<>();
+
+    for (int i = 0; i < 5; i++) {
+      String name = "task-" + i;
+      results.add(executor.submit("my_session", name, recording(events, name)));
+    }
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+
+    assertThat(events)
+      .containsExactly(
+        "start task-0", "end task-0",
+        "start task-1", "end task-1",
+        "start task-2", "end task-2",
+        "start task-3", "end task-3",
+        "start task-4", "end task-4");
+  }
+
+  @Test
+  void runsDifferentSessionsInParallel() throws Exception {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    Supplier<Boolean> waitForOther = () -> {
+      bothStarted.countDown();
+      try {
+        return bothStarted.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    };
+
+    CompletableFuture<Boolean> a = executor.submit("session_a", "message", waitForOther);
+    CompletableFuture<Boolean> b = executor.submit("session_b", "message", waitForOther);
+
+    assertThat(a.get()).isTrue();
+    assertThat(b.get()).isTrue();
+  }
+
+  @Test
+  void mergesDuplicateOfPendingTask() {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    executor.submit("my_session", "go north", () -> {
+      await(release);
+      return calls.incrementAndGet();
+    });
+    CompletableFuture<Integer> pending = executor.submit("my_session", "look around", calls::incrementAndGet);
+
+    CompletableFuture<Integer> duplicate = executor.submit("my_session", "look around", calls::incrementAndGet);
+    release.countDown();
+
+    assertThat(duplicate).isSameAs(pending);
+    assertThat(pending.join()).isEqualTo(2);
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void doesNotMergeIntoRunningTask() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Integer> running = executor.submit("my_session", "attack", () -> {
+      started.countDown();
+      await(release);
+      return calls.incrementAndGet();
+    });
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<Integer> again = executor.submit("my_session", "attack", calls::incrementAndGet);
+    release.countDown();
+
+    assertThat(again).isNotSameAs(running);
+    assertThat(again.join()).isEqualTo(2);
+  }
+
+  @Test
+  void nullExecutorRunsTaskBeforeSubmitReturns() {
+    CompletableFuture<String> result = SessionExecutor.createNull().submit("my_session", "message", () -> "answer");
+
+    assertThat(result).isCompletedWithValue("answer");
+  }
+
+  @Test
+  void doesNotMergeRepeatSeparatedByOtherMessage() {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    executor.submit("my_session", "look around", () -> {
+      await(release);
+      return calls.incrementAndGet();
+    });
+    executor.submit("my_session", "go north", calls::incrementAndGet);
+
+    CompletableFuture<Integer> repeat = executor.submit("my_session", "look around", calls::incrementAndGet);
+    release.countDown();
+
+    assertThat(repeat.join()).isEqualTo(3);
+  }
+
+  @Test
+  void failedTaskFailsItsFutureAndLaterTasksStillRun() {
+    CompletableFuture<String> failing = executor.submit("my_session", "first", () -> {
+      throw new IllegalStateException("boom");
+    });
+    CompletableFuture<String> next = executor.submit("my_session", "second", () -> "ok");
+
+    assertThatThrownBy(failing::join)
+      .hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(next.join()).isEqualTo("ok");
+  }
+
+  @Test
+  void forgetsSessionOnceItsMailboxIsEmpty() throws Exception {
+    executor.submit("my_session", "message", () -> "answer").join();
+
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (executor.activeSessions() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(executor.activeSessions()).isZero();
+  }
+
+  private static Supplier<String> recording(List<String> events, String name) {
+    return () -> {
+      events.add("start " + name);
+      sleep(5);
+      events.add("end " + name);
+      return name;
+    };
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
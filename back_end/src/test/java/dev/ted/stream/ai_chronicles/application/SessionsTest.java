@@ -0,0 +1,299 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.GameEvent;
+import dev.ted.stream.ai_chronicles.domain.Transcript;
+import dev.ted.stream.ai_chronicles.infrastructure.Deadline;
+import dev.ted.stream.ai_chronicles.infrastructure.DeadlineExceededException;
+import dev.ted.stream.ai_chronicles.infrastructure.Latency;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptStore;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SessionsTest {
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+  @AfterEach
+  void shutDownPool() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void answersWithOpenAiResponse() {
+    Sessions sessions = new Sessions(OpenAiClient.createNull("my_answer"), TranscriptJournal.createNull());
+
+    String answer = sessions.say("my_session", "my_message");
+
+    assertThat(answer)
+      .isEqualTo("my_answer");
+  }
+
+  @Test
+  void journalsEveryExchange() {
+    TranscriptJournal journal = TranscriptJournal.createNull();
+    var entries = journal.trackEntries();
+    Sessions sessions = new Sessions(OpenAiClient.createNull("my_answer"), journal);
+
+    sessions.say("my_session", "my_message");
+
+    assertThat(entries.output())
+      .containsExactly(new TranscriptJournal.JournalEntry("my_session", new Exchange("my_message", "my_answer")));
+  }
+
+  @Test
+  void keepsSeparateTranscriptPerSession() {
+    Sessions sessions = new Sessions(OpenAiClient.createNull("my_answer"), TranscriptJournal.createNull());
+
+    sessions.say("session_a", "message 1");
+    sessions.say("session_b", "message 2");
+    sessions.say("session_a", "message 3");
+
+    assertThat(sessions.transcript("session_a").exchanges())
+      .containsExactly(
+        new Exchange("message 1", "my_answer"),
+        new Exchange("message 3", "my_answer"));
+    assertThat(sessions.transcript("session_b").exchanges())
+      .containsExactly(new Exchange("message 2", "my_answer"));
+  }
+
+  @Test
+  void abandonsSayWhoseDeadlineHasExpired() {
+    TranscriptJournal journal = TranscriptJournal.createNull();
+    var entries = journal.trackEntries();
+    OpenAiClient openAiClient = OpenAiClient.createNull();
+    var prompts = openAiClient.trackPrompts();
+    Sessions sessions = new Sessions(openAiClient, journal);
+
+    assertThatThrownBy(() -> sessions.say("my_session", "my_message", Deadline.after(Duration.ZERO)))
+      .isInstanceOf(DeadlineExceededException.class);
+
+    assertThat(prompts.output())
+      .isEmpty();
+    assertThat(entries.output())
+      .isEmpty();
+  }
+
+  @Test
+  void unknownSessionHasEmptyTranscript() {
+    Sessions sessions = new Sessions(OpenAiClient.createNull(), TranscriptJournal.createNull());
+
+    assertThat(sessions.transcript("unknown"))
+      .isEqualTo(Transcript.empty());
+  }
+
+  @Test
+  void rebuildsSessionsFromJournalAtStartup() {
+    TranscriptJournal journal = TranscriptJournal.createNull();
+    Sessions before = new Sessions(OpenAiClient.createNull("my_answer"), journal);
+    before.say("my_session", "message 1");
+    before.snapshot();
+    before.say("my_session", "message 2");
+
+    Sessions after = new Sessions(OpenAiClient.createNull(), journal);
+
+    assertThat(after.transcript("my_session").exchanges())
+      .containsExactly(
+        new Exchange("message 1", "my_answer"),
+        new Exchange("message 2", "my_answer"));
+  }
+
+  @Test
+  void recordsTokenUsageForSession() {
+    UsageLedger ledger = UsageLedger.unlimited();
+    Sessions sessions = new Sessions(OpenAiClient.createNull(), TranscriptJournal.createNull(), ledger);
+
+    sessions.say("my_session", "my_message");
+
+    assertThat(ledger.usage("my_session"))
+      .isEqualTo(new UsageLedger.TokenUsage(1, 42, 42));
+  }
+
+  @Test
+  void throttledSessionDoesNotCallOpenAi() {
+    UsageLedger ledger = new UsageLedger(new UsageBudget(10, UsageBudget.OverBudget.THROTTLE, null));
+    OpenAiClient openAi = OpenAiClient.createNull();
+    var prompts = openAi.trackPrompts();
+    Sessions sessions = new Sessions(openAi, TranscriptJournal.createNull(), ledger);
+    sessions.say("my_session", "first message");
+    prompts.clear();
+
+    assertThatThrownBy(() -> sessions.say("my_session", "second message"))
+      .isInstanceOf(BudgetExceededException.class);
+    assertThat(prompts.output())
+      .isEmpty();
+  }
+
+  @Test
+  void feedsOpenAiLatencyToBrownout() {
+    BrownoutController.Degradation shorter = new BrownoutController.Degradation(64, null, null);
+    BrownoutController brownout = new BrownoutController(Duration.ofMillis(1), 0.5, 1,
+      List.of(BrownoutController.Degradation.FULL_QUALITY, shorter));
+    OpenAiClient slowOpenAi = OpenAiClient.createNull("my_answer", Latency.fixed(Duration.ofMillis(20)));
+    Sessions sessions = new Sessions(slowOpenAi, TranscriptJournal.createNull(), UsageLedger.unlimited(), brownout,
+      TranscriptStore.createNull(), SessionExecutor.createNull(), LongTermMemory.disabled());
+
+    sessions.say("my_session", "my_message");
+
+    assertThat(brownout.current())
+      .isEqualTo(shorter);
+  }
+
+  @Test
+  void bringsBackSpilledTranscriptOnNextSay() {
+    TranscriptStore spillImmediately = TranscriptStore.createNull(Duration.ZERO, Duration.ZERO);
+    Sessions sessions = new Sessions(OpenAiClient.createNull("my_answer"), TranscriptJournal.createNull(),
+      UsageLedger.unlimited(), BrownoutController.disabled(), spillImmediately, SessionExecutor.createNull(),
+      LongTermMemory.disabled());
+    sessions.say("my_session", "message 1");
+    sessions.sweepIdle();
+
+    sessions.say("my_session", "message 2");
+
+    assertThat(sessions.transcript("my_session").exchanges())
+      .containsExactly(
+        new Exchange("message 1", "my_answer"),
+        new Exchange("message 2", "my_answer"));
+  }
+
+  @Test
+  void forgetsEncodedHistoryOnceSessionGoesIdle() {
+    OpenAiClient openAi = OpenAiClient.createNull("my_answer");
+    TranscriptStore compressImmediately = TranscriptStore.createNull(Duration.ZERO, Duration.ofDays(1));
+    Sessions sessions = new Sessions(openAi, TranscriptJournal.createNull(), UsageLedger.unlimited(),
+      BrownoutController.disabled(), compressImmediately, SessionExecutor.createNull(), LongTermMemory.disabled());
+    sessions.say("my_session", "message 1");
+    sessions.say("my_session", "message 2");
+    assertThat(openAi.encodedHistories().conversations()).isEqualTo(1);
+
+    sessions.sweepIdle();
+
+    assertThat(openAi.encodedHistories())
+      .isEqualTo(new OpenAiClient.EncodedHistories(0, 0));
+  }
+
+  @Test
+  void answersConcurrentSaysForSessionInOrder() {
+    Sessions sessions = asyncSessions(OpenAiClient.createNull("my_answer", Latency.fixed(Duration.ofMillis(20))));
+
+    CompletableFuture<String> first = sessions.sayAsync("my_session", "message 1", Deadline.none());
+    CompletableFuture<String> second = sessions.sayAsync("my_session", "message 2", Deadline.none());
+    CompletableFuture.allOf(first, second).join();
+
+    assertThat(sessions.transcript("my_session").exchanges())
+      .containsExactly(
+        new Exchange("message 1", "my_answer"),
+        new Exchange("message 2", "my_answer"));
+  }
+
+  @Test
+  void doubleSubmittedMessageCallsOpenAiOnce() {
+    OpenAiClient openAi = OpenAiClient.createNull("my_answer", Latency.fixed(Duration.ofMillis(20)));
+    var prompts = openAi.trackPrompts();
+    Sessions sessions = asyncSessions(openAi);
+    CompletableFuture<String> running = sessions.sayAsync("my_session", "message 1", Deadline.none());
+
+    CompletableFuture<String> first = sessions.sayAsync("my_session", "my_message", Deadline.none());
+    CompletableFuture<String> duplicate = sessions.sayAsync("my_session", "my_message", Deadline.none());
+
+    assertThat(duplicate.join()).isEqualTo(first.join());
+    running.join();
+    assertThat(prompts.output())
+      .containsExactly(new OpenAiClient.Prompt("message 1"), new OpenAiClient.Prompt("my_message"));
+    assertThat(sessions.transcript("my_session").size())
+      .isEqualTo(2);
+  }
+
+  @Test
+  void sayAndItsPromptAreRecordedAsFlightRecorderEvents(@TempDir Path directory) throws Exception {
+    Sessions sessions = new Sessions(OpenAiClient.createNull("my_answer"), TranscriptJournal.createNull());
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("dev.ted.stream.ai_chronicles.Say");
+      recording.enable("dev.ted.stream.ai_chronicles.Prompt");
+      recording.start();
+
+      sessions.say("my_session", "my_message");
+
+      recording.stop();
+      Path file = directory.resolve("say.jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    }
+
+    RecordedEvent say = events.stream()
+      .filter(event -> event.getEventType().getName().endsWith(".Say"))
+      .findFirst().orElseThrow();
+    assertThat(say.getString("sessionId"))
+      .isEqualTo("my_session");
+    assertThat(say.getString("model"))
+      .isEqualTo(OpenAiClient.Options.DEFAULT.model());
+    assertThat(say.getString("outcome"))
+      .isEqualTo("OK");
+    assertThat(say.getInt("promptTokens"))
+      .isEqualTo(42);
+    assertThat(events)
+      .extracting(event -> event.getEventType().getName())
+      .contains("dev.ted.stream.ai_chronicles.Prompt");
+  }
+
+  @Test
+  void sendsRecalledAndRecentExchangesOnceTranscriptIsLong() {
+    LongTermMemory memory = new LongTermMemory(2, 1, 10, Runnable::run);
+    var recalls = memory.trackRecalls();
+    Sessions sessions = new Sessions(OpenAiClient.createNull("my_answer"), TranscriptJournal.createNull(),
+      UsageLedger.unlimited(), BrownoutController.disabled(), TranscriptStore.createNull(), SessionExecutor.createNull(),
+      memory);
+    sessions.say("my_session", "I pick up the rusty wrench");
+    sessions.say("my_session", "Where is the coolant leak?");
+    sessions.say("my_session", "Go to the hangar");
+
+    sessions.say("my_session", "Use the wrench");
+
+    assertThat(recalls.output())
+      .last()
+      .isEqualTo(new LongTermMemory.Recall("my_session", List.of(0)));
+  }
+
+  @Test
+  void streamedSayHandsOverGameEventsAndRecordsNarrative() {
+    OpenAiClient openAi = OpenAiClient.createNullStreaming(
+      "{\"narrative\": \"Sparks fly.\", \"hazards\": [{\"name\": \"fire\", \"severity\": \"high\"}]}",
+      Duration.ZERO);
+    UsageLedger usage = UsageLedger.unlimited();
+    Sessions sessions = new Sessions(openAi, TranscriptJournal.createNull(), usage);
+    List<GameEvent> events = new CopyOnWriteArrayList<>();
+
+    String answer = sessions.sayStreamingAsync("my_session", "Light the torch", Deadline.none(), events::add).join();
+
+    assertThat(answer)
+      .isEqualTo("Sparks fly.");
+    assertThat(events)
+      .containsExactly(new GameEvent.Narrative("Sparks fly."), new GameEvent.Hazard("fire", "high"));
+    assertThat(sessions.transcript("my_session").exchanges())
+      .containsExactly(new Exchange("Light the torch", "Sparks fly."));
+    assertThat(usage.totalUsage().promptTokens())
+      .isEqualTo(42);
+  }
+
+  private Sessions asyncSessions(OpenAiClient openAi) {
+    return new Sessions(openAi, TranscriptJournal.createNull(), UsageLedger.unlimited(), BrownoutController.disabled(),
+      TranscriptStore.createInMemory(), new SessionExecutor(pool), LongTermMemory.disabled());
+  }
+}
@@ -0,0 +1,80 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Uses the bundle in src/test/resources/static
+@SpringBootTest
+@AutoConfigureMockMvc
+class StaticAssetsWebTest {
+
+  private static final String HASHED_BUNDLE = "/assets/bundle.0123456789abcdef.js";
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Test
+  void hashedAssetsAreImmutable() throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(get(HASHED_BUNDLE))
+      .andReturn().getResponse();
+
+    assertThat(response.getStatus())
+      .isEqualTo(200);
+    assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL))
+      .isEqualTo("max-age=31536000, public, immutable");
+  }
+
+  @Test
+  void servesBrotliVariantWhenAccepted() throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(get(HASHED_BUNDLE)
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+      .andReturn().getResponse();
+
+    assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING))
+      .isEqualTo("br");
+    assertThat(response.getHeaders(HttpHeaders.VARY))
+      .contains(HttpHeaders.ACCEPT_ENCODING);
+    assertThat(response.getContentAsByteArray())
+      .isEqualTo(new ClassPathResource("static" + HASHED_BUNDLE + ".br").getContentAsByteArray());
+  }
+
+  @Test
+  void servesGzipVariantWhenBrotliIsNotAccepted() throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(get(HASHED_BUNDLE)
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+      .andReturn().getResponse();
+
+    assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING))
+      .isEqualTo("gzip");
+  }
+
+  @Test
+  void pageIsRevalidatedWithEtag() throws Exception {
+    MockHttpServletResponse first = mockMvc.perform(get("/index.html"))
+      .andReturn().getResponse();
+
+    assertThat(first.getHeader(HttpHeaders.CACHE_CONTROL))
+      .isEqualTo("no-cache");
+    String etag = first.getHeader(HttpHeaders.ETAG);
+    assertThat(etag)
+      .isNotBlank();
+
+    MockHttpServletResponse revalidated = mockMvc.perform(get("/index.html")
+        .header(HttpHeaders.IF_NONE_MATCH, etag))
+      .andReturn().getResponse();
+
+    assertThat(revalidated.getStatus())
+      .isEqualTo(304);
+    assertThat(revalidated.getContentAsByteArray())
+      .isEmpty();
+  }
+}
@@ -0,0 +1,157 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.application.TurnEngine.RobotPrompt;
+import dev.ted.stream.ai_chronicles.application.TurnEngine.RobotReply;
+import dev.ted.stream.ai_chronicles.application.TurnEngine.TurnFailedException;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.infrastructure.JsonHttpClient;
+import dev.ted.stream.ai_chronicles.infrastructure.Latency;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.TranscriptJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TurnEngineTest {
+
+  private static final Duration GENEROUS_TIME_LIMIT = Duration.ofSeconds(10);
+  private static final List<RobotPrompt> SCENE = List.of(
+    new RobotPrompt("robot_a", "prompt a"),
+    new RobotPrompt("robot_b", "prompt b"),
+    new RobotPrompt("robot_c", "prompt c"));
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+  @AfterEach
+  void shutDownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void promptsEveryRobotInScene() {
+    OpenAiClient openAi = OpenAiClient.createNull();
+    var prompts = openAi.trackPrompts();
+    TurnEngine turnEngine = new TurnEngine(openAi, executor);
+
+    turnEngine.playTurn(SCENE, GENEROUS_TIME_LIMIT);
+
+    assertThat(prompts.output())
+      .containsExactlyInAnyOrder(
+        new OpenAiClient.Prompt("prompt a"),
+        new OpenAiClient.Prompt("prompt b"),
+        new OpenAiClient.Prompt("prompt c"));
+  }
+
+  @Test
+  void repliesAreInSceneOrder() {
+    TurnEngine turnEngine = new TurnEngine(OpenAiClient.createNull("my_reply"), executor);
+
+    List<RobotReply> replies = turnEngine.playTurn(SCENE, GENEROUS_TIME_LIMIT);
+
+    assertThat(replies)
+      .containsExactly(
+        new RobotReply("robot_a", "my_reply"),
+        new RobotReply("robot_b", "my_reply"),
+        new RobotReply("robot_c", "my_reply"));
+  }
+
+  @Test
+  void emptySceneHasNoReplies() {
+    TurnEngine turnEngine = new TurnEngine(OpenAiClient.createNull(), executor);
+
+    assertThat(turnEngine.playTurn(List.of(), GENEROUS_TIME_LIMIT))
+      .isEmpty();
+  }
+
+  @Test
+  void failsTurnWhenAnyRobotFails() {
+    OpenAiClient unconfiguredOpenAi = new OpenAiClient(JsonHttpClient.createNull(), "irrelevant_api_key");
+    TurnEngine turnEngine = new TurnEngine(unconfiguredOpenAi, executor);
+
+    assertThatThrownBy(() -> turnEngine.playTurn(SCENE, GENEROUS_TIME_LIMIT))
+      .isInstanceOf(TurnFailedException.class)
+      .hasMessage("Robot prompt failed")
+      .hasCauseInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void turnTakesAboutAsLongAsSlowestRobot() {
+    Duration latency = Duration.ofMillis(200);
+    TurnEngine turnEngine = new TurnEngine(OpenAiClient.createNull("my_reply", Latency.fixed(latency)), executor);
+    long start = System.nanoTime();
+
+    turnEngine.playTurn(SCENE, GENEROUS_TIME_LIMIT);
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+      .isGreaterThanOrEqualTo(latency)
+      .isLessThan(latency.multipliedBy(SCENE.size()));
+  }
+
+  @Test
+  void cutsOffSlowRobotsWhenDeadlinePasses() {
+    TurnEngine turnEngine = new TurnEngine(OpenAiClient.createNull("my_reply", Latency.fixed(Duration.ofSeconds(10))), executor);
+    long start = System.nanoTime();
+
+    assertThatThrownBy(() -> turnEngine.playTurn(SCENE, Duration.ofMillis(100)))
+      .isInstanceOf(TurnFailedException.class);
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+      .isLessThan(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void failsTurnWhenDeadlinePasses() {
+    TurnEngine turnEngine = new TurnEngine(OpenAiClient.createNull(), executor);
+
+    assertThatThrownBy(() -> turnEngine.playTurn(SCENE, Duration.ZERO))
+      .isInstanceOf(TurnFailedException.class)
+      .hasMessage("Turn missed its deadline of PT0S");
+  }
+
+  @Test
+  void failingRobotCutsOffTheOthersStillWaiting() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Latency firstFailsFastRestAreSlow = () -> calls.getAndIncrement() == 0 ? Duration.ofMillis(50) : Duration.ofSeconds(10);
+    OpenAiClient openAi = new OpenAiClient(JsonHttpClient.createNull(Map.of(
+      "https://api.openai.com/v1/chat/completions",
+      JsonHttpClient.NulledEndpoint.responding("irrelevant_response")
+        .withLatency(firstFailsFastRestAreSlow)
+        .failingAtRate(1.0, () -> new IllegalStateException("robot_failure")))), "irrelevant_api_key");
+    TurnEngine turnEngine = new TurnEngine(openAi, executor);
+
+    assertThatThrownBy(() -> turnEngine.playTurn(SCENE, GENEROUS_TIME_LIMIT))
+      .isInstanceOf(TurnFailedException.class)
+      .hasMessage("Robot prompt failed");
+
+    executor.shutdown();
+    assertThat(executor.awaitTermination(2, TimeUnit.SECONDS))
+      .as("slow robots were cut off rather than left to finish")
+      .isTrue();
+  }
+
+  @Test
+  void recordsSceneInTranscriptAndUsageOfEveryRobot() {
+    UsageLedger usageLedger = UsageLedger.unlimited();
+    Sessions sessions = new Sessions(OpenAiClient.createNull("my_reply"), TranscriptJournal.createNull(), usageLedger);
+    TurnEngine turnEngine = new TurnEngine(sessions, executor);
+
+    turnEngine.playTurn("my_session", SCENE, GENEROUS_TIME_LIMIT);
+
+    assertThat(sessions.transcript("my_session").exchanges())
+      .containsExactly(
+        new Exchange("robot_a: prompt a", "my_reply"),
+        new Exchange("robot_b: prompt b", "my_reply"),
+        new Exchange("robot_c: prompt c", "my_reply"));
+    assertThat(usageLedger.usage("my_session").calls())
+      .isEqualTo(SCENE.size());
+  }
+}
@@ -0,0 +1,24 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.application.UsageLedger.TokenUsage;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient.Completion;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageEndpointTest {
+
+  @Test
+  void reportsTotalsWithoutSessionIds() {
+    UsageLedger ledger = UsageLedger.unlimited();
+    ledger.record("my_session", new Completion("irrelevant", 10, 20));
+    UsageEndpoint endpoint = new UsageEndpoint(ledger);
+
+    assertThat(endpoint.usage())
+      .isEqualTo(new UsageEndpoint.UsageReport(
+        new TokenUsage(1, 10, 20),
+        1));
+    assertThat(endpoint.sessionUsage("my_session"))
+      .isEqualTo(new TokenUsage(1, 10, 20));
+  }
+}
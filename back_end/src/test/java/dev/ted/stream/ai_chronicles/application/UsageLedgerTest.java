@@ -0,0 +1,132 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.application.UsageLedger.TokenUsage;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient.Completion;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class UsageLedgerTest {
+
+  private static final UsageBudget THROTTLE_AT_100 = new UsageBudget(100, UsageBudget.OverBudget.THROTTLE, null);
+  private static final UsageBudget DOWNGRADE_AT_100 = new UsageBudget(100, UsageBudget.OverBudget.DOWNGRADE, 16);
+
+  @Test
+  void aggregatesUsagePerSessionAndOverall() {
+    UsageLedger ledger = UsageLedger.unlimited();
+
+    ledger.record("session_a", new Completion("irrelevant", 10, 20));
+    ledger.record("session_b", new Completion("irrelevant", 1, 2));
+    ledger.record("session_a", new Completion("irrelevant", 30, 40));
+
+    assertThat(ledger.usage("session_a"))
+      .isEqualTo(new TokenUsage(2, 40, 60));
+    assertThat(ledger.usage("session_b"))
+      .isEqualTo(new TokenUsage(1, 1, 2));
+    assertThat(ledger.totalUsage())
+      .isEqualTo(new TokenUsage(3, 41, 62));
+    assertThat(ledger.sessionCount())
+      .isEqualTo(2);
+  }
+
+  @Test
+  void dropsLeastRecentlyRecordedSessionsPastMaxSessions() {
+    UsageLedger ledger = new UsageLedger(THROTTLE_AT_100, 10);
+    for (int i = 0; i < 10; i++) {
+      ledger.record("session_" + i, new Completion("irrelevant", 1, 1));
+    }
+    ledger.record("session_0", new Completion("irrelevant", 1, 1));
+
+    ledger.record("session_10", new Completion("irrelevant", 1, 1));
+
+    assertThat(ledger.sessionCount())
+      .isEqualTo(9);
+    assertThat(ledger.usage("session_0"))
+      .isEqualTo(new TokenUsage(2, 2, 2));
+    assertThat(ledger.usage("session_10"))
+      .isEqualTo(new TokenUsage(1, 1, 1));
+    assertThat(ledger.usage("session_1"))
+      .isEqualTo(new TokenUsage(0, 0, 0));
+    assertThat(ledger.totalUsage())
+      .isEqualTo(new TokenUsage(12, 12, 12));
+  }
+
+  @Test
+  void countsCachedPromptTokens() {
+    UsageLedger ledger = UsageLedger.unlimited();
+
+    ledger.record("my_session", new Completion("irrelevant", 1000, 20, 768));
+    ledger.record("my_session", new Completion("irrelevant", 1000, 20, 0));
+
+    assertThat(ledger.usage("my_session"))
+      .isEqualTo(new TokenUsage(2, 2000, 40, 768));
+  }
+
+  @Test
+  void unknownSessionHasNoUsage() {
+    UsageLedger ledger = UsageLedger.unlimited();
+
+    assertThat(ledger.usage("unknown"))
+      .isEqualTo(new TokenUsage(0, 0, 0));
+  }
+
+  @Test
+  void admitsSessionUnderBudgetWithRequestedOptions() {
+    UsageLedger ledger = new UsageLedger(THROTTLE_AT_100);
+    ledger.record("session", new Completion("irrelevant", 49, 50));
+
+    assertThat(ledger.admit("session", OpenAiClient.Options.DEFAULT))
+      .isEqualTo(OpenAiClient.Options.DEFAULT);
+  }
+
+  @Test
+  void throttlesSessionOverBudget() {
+    UsageLedger ledger = new UsageLedger(THROTTLE_AT_100);
+    ledger.record("session", new Completion("irrelevant", 50, 50));
+
+    assertThatThrownBy(() -> ledger.admit("session", OpenAiClient.Options.DEFAULT))
+      .isInstanceOf(BudgetExceededException.class)
+      .hasMessage("Session session has used its budget of 100 tokens");
+  }
+
+  @Test
+  void downgradesSessionOverBudget() {
+    UsageLedger ledger = new UsageLedger(DOWNGRADE_AT_100);
+    ledger.record("session", new Completion("irrelevant", 50, 50));
+
+    assertThat(ledger.admit("session", OpenAiClient.Options.DEFAULT))
+      .isEqualTo(OpenAiClient.Options.DEFAULT.withMaxTokens(16));
+  }
+
+  @Test
+  void budgetIsPerSession() {
+    UsageLedger ledger = new UsageLedger(THROTTLE_AT_100);
+    ledger.record("spendthrift", new Completion("irrelevant", 100, 100));
+
+    assertThat(ledger.admit("frugal", OpenAiClient.Options.DEFAULT))
+      .isEqualTo(OpenAiClient.Options.DEFAULT);
+  }
+
+  @Test
+  void countsConcurrentRecordsExactly() throws InterruptedException {
+    UsageLedger ledger = UsageLedger.unlimited();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int i = 0; i < 10_000; i++) {
+      String sessionId = "session-" + (i % 10);
+      executor.execute(() -> ledger.record(sessionId, new Completion("irrelevant", 1, 2)));
+    }
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+
+    assertThat(ledger.totalUsage())
+      .isEqualTo(new TokenUsage(10_000, 10_000, 20_000));
+    assertThat(ledger.usage("session-3"))
+      .isEqualTo(new TokenUsage(1_000, 1_000, 2_000));
+  }
+}
@@ -0,0 +1,183 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import dev.ted.stream.ai_chronicles.AiChroniclesApplication;
+import dev.ted.stream.ai_chronicles.infrastructure.JsonHttpClient;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Outcome;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Phase;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WarmUpRunnerTest {
+  private static final String MODELS_ENDPOINT = "https://api.openai.com/v1/models";
+
+  @Test
+  void reportsNothingUntilWarmedUp() {
+    WarmUpRunner warmUp = new WarmUpRunner(OpenAiClient.createNull(), 10, Duration.ofSeconds(1));
+
+    assertThat(warmUp.report())
+      .isNull();
+  }
+
+  @Test
+  void reportsConnectionCodecAndWarmRequestTimes() {
+    WarmUpRunner warmUp = new WarmUpRunner(OpenAiClient.createNull(), 10, Duration.ofSeconds(1));
+
+    warmUp.run(new DefaultApplicationArguments());
+
+    WarmUpRunner.Report report = warmUp.report();
+    assertThat(report.connected()).isTrue();
+    assertThat(report.connection()).isPositive();
+    assertThat(report.codec()).isPositive();
+    assertThat(report.warmRequest()).isPositive();
+    assertThat(report.total()).isEqualTo(report.connection().plus(report.codec()).plus(report.warmRequest()));
+  }
+
+  @Test
+  void sendsTheWarmRequestThroughTheHttpClient() {
+    OpenAiClient openAi = OpenAiClient.createNull();
+    WarmUpRunner warmUp = new WarmUpRunner(openAi, 10, Duration.ofSeconds(1));
+
+    warmUp.run(new DefaultApplicationArguments());
+
+    assertThat(openAi.httpPhaseHistograms().summarize(Outcome.OK).get(Phase.TIME_TO_FIRST_BYTE).count())
+      .as("the connecting request and the warm one")
+      .isEqualTo(2);
+  }
+
+  @Test
+  void finishesEvenWhenOpenAiIsUnreachable() {
+    OpenAiClient unreachable = new OpenAiClient(JsonHttpClient.createNull(), "irrelevant_api_key");
+    WarmUpRunner warmUp = new WarmUpRunner(unreachable, 10, Duration.ofSeconds(1));
+
+    warmUp.run(new DefaultApplicationArguments());
+
+    assertThat(warmUp.report().connected())
+      .isFalse();
+    assertThat(warmUp.report().warmRequest())
+      .isNull();
+  }
+
+  @Test
+  void readinessIsOutOfServiceWhileWarmingUp() throws Exception {
+    CountDownLatch warmingUp = new CountDownLatch(1);
+    CountDownLatch finishWarmUp = new CountDownLatch(1);
+    OpenAiClient blockingOpenAi = new OpenAiClient(JsonHttpClient.createNull(Map.of(
+      MODELS_ENDPOINT,
+      JsonHttpClient.NulledEndpoint.responding("{\"object\":\"list\",\"data\":[]}")
+        .withLatency(() -> {
+          warmingUp.countDown();
+          awaitUninterruptibly(finishWarmUp);
+          return Duration.ZERO;
+        }))), "irrelevant_api_key");
+    AtomicReference<ConfigurableApplicationContext> context = new AtomicReference<>();
+    SpringApplication application = new SpringApplicationBuilder(AiChroniclesApplication.class)
+      .properties("server.port=0", "warmup.iterations=10")
+      .initializers(started -> {
+        // like @SpringBootTest: other tests' @TestConfiguration classes aren't scanned
+        started.getBeanFactory().registerSingleton("testComponentExcludeFilter", new TypeExcludeFilter() {
+          @Override
+          public boolean match(MetadataReader reader, MetadataReaderFactory readerFactory) {
+            return reader.getAnnotationMetadata().isAnnotated(TestComponent.class.getName());
+          }
+        });
+        ((GenericApplicationContext) started).registerBean("blockingOpenAiClient", OpenAiClient.class,
+          () -> blockingOpenAi, definition -> definition.setPrimary(true));
+        context.set(started);
+      })
+      .build();
+    Thread starting = new Thread(() -> application.run());
+    starting.start();
+    try {
+      assertThat(warmingUp.await(30, TimeUnit.SECONDS)).isTrue();
+      int port = ((WebServerApplicationContext) context.get()).getWebServer().getPort();
+
+      assertThat(readiness(port))
+        .startsWith("503")
+        .contains("OUT_OF_SERVICE");
+
+      finishWarmUp.countDown();
+      starting.join(30_000);
+      assertThat(readiness(port))
+        .startsWith("200")
+        .contains("UP");
+    } finally {
+      finishWarmUp.countDown();
+      starting.join(30_000);
+      if (context.get() != null) context.get().close();
+    }
+  }
+
+  private static String readiness(int port) throws Exception {
+    HttpResponse<String> response = HttpClient.newHttpClient().send(
+      HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health/readiness")).build(),
+      HttpResponse.BodyHandlers.ofString());
+    return response.statusCode() + " " + response.body();
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Nested
+  @SpringBootTest
+  @AutoConfigureMockMvc
+  class AfterStartup {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    WarmUpRunner warmUp;
+
+    @Test
+    void isReadyOnceWarmedUp() throws Exception {
+      mockMvc.perform(get("/actuator/health/readiness"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value("UP"));
+      assertThat(warmUp.report())
+        .isNotNull();
+    }
+
+    @Test
+    void exposesReportThroughActuator() throws Exception {
+      mockMvc.perform(get("/actuator/warmup"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.connected").value(true))
+        .andExpect(jsonPath("$.warmRequest").exists());
+    }
+  }
+}
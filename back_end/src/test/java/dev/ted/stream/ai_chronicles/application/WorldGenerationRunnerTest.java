@@ -0,0 +1,46 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.infrastructure.JsonHttpClient;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorldGenerationRunnerTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void exitCodeIsZeroWhenEveryJobCompletes() throws Exception {
+    WorldGenerationRunner runner = runnerWith(OpenAiClient.createNull("my_lore"));
+
+    runner.run(null);
+
+    assertThat(runner.getExitCode())
+      .isZero();
+  }
+
+  @Test
+  void exitCodeIsOneWhenAnyJobFails() throws Exception {
+    WorldGenerationRunner runner = runnerWith(new OpenAiClient(JsonHttpClient.createNull(), "irrelevant_api_key"));
+
+    runner.run(null);
+
+    assertThat(runner.getExitCode())
+      .isEqualTo(1);
+  }
+
+  private WorldGenerationRunner runnerWith(OpenAiClient openAiClient) throws Exception {
+    Path jobs = Files.writeString(directory.resolve("jobs.jsonl"),
+      new ObjectMapper().writeValueAsString(new WorldGenerator.Job("job-0", "prompt 0")) + "\n");
+    WorldGenerator generator = new WorldGenerator(openAiClient, 1, 1_000_000, Duration.ofSeconds(10));
+    return new WorldGenerationRunner(generator, jobs, directory.resolve("output.jsonl"));
+  }
+}
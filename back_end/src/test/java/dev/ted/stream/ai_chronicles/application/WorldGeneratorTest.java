@@ -0,0 +1,157 @@
+package dev.ted.stream.ai_chronicles.application;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.application.WorldGenerator.Progress;
+import dev.ted.stream.ai_chronicles.application.WorldGenerator.Result;
+import dev.ted.stream.ai_chronicles.application.WorldGenerator.Summary;
+import dev.ted.stream.ai_chronicles.infrastructure.JsonHttpClient;
+import dev.ted.stream.ai_chronicles.infrastructure.Latency;
+import dev.ted.stream.ai_chronicles.infrastructure.OpenAiClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorldGeneratorTest {
+
+  private static final Duration GENEROUS_TIMEOUT = Duration.ofSeconds(10);
+  private static final double UNLIMITED_RATE = 1_000_000;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void writesResultForEveryJob() throws Exception {
+    Path jobs = writeJobs(3);
+    Path output = directory.resolve("output.jsonl");
+    WorldGenerator generator = new WorldGenerator(OpenAiClient.createNull("my_lore"), 2, UNLIMITED_RATE, GENEROUS_TIMEOUT);
+
+    Summary summary = generator.run(jobs, output);
+
+    assertThat(readResults(output))
+      .containsExactlyInAnyOrder(
+        new Result("job-0", "prompt 0", "my_lore"),
+        new Result("job-1", "prompt 1", "my_lore"),
+        new Result("job-2", "prompt 2", "my_lore"));
+    assertThat(summary.completed()).isEqualTo(3);
+    assertThat(summary.failed()).isZero();
+  }
+
+  @Test
+  void resumesWithoutRepeatingCompletedJobs() throws Exception {
+    Path jobs = writeJobs(3);
+    Path output = directory.resolve("output.jsonl");
+    Files.writeString(output, objectMapper.writeValueAsString(new Result("job-1", "prompt 1", "earlier lore")) + "\n");
+    OpenAiClient openAiClient = OpenAiClient.createNull("my_lore");
+    var prompts = openAiClient.trackPrompts();
+    WorldGenerator generator = new WorldGenerator(openAiClient, 2, UNLIMITED_RATE, GENEROUS_TIMEOUT);
+
+    Summary summary = generator.run(jobs, output);
+
+    assertThat(prompts.output())
+      .extracting(OpenAiClient.Prompt::prompt)
+      .containsExactlyInAnyOrder("prompt 0", "prompt 2");
+    assertThat(readResults(output))
+      .hasSize(3)
+      .contains(new Result("job-1", "prompt 1", "earlier lore"));
+    assertThat(summary.alreadyDone()).isEqualTo(1);
+  }
+
+  @Test
+  void discardsPartialLineLeftByCrash() throws Exception {
+    Path jobs = writeJobs(2);
+    Path output = directory.resolve("output.jsonl");
+    String completeLine = objectMapper.writeValueAsString(new Result("job-0", "prompt 0", "earlier lore"));
+    Files.writeString(output, completeLine + "\n{\"id\":\"job-1\",\"prom");
+    WorldGenerator generator = new WorldGenerator(OpenAiClient.createNull("my_lore"), 2, UNLIMITED_RATE, GENEROUS_TIMEOUT);
+
+    generator.run(jobs, output);
+
+    assertThat(readResults(output))
+      .containsExactly(
+        new Result("job-0", "prompt 0", "earlier lore"),
+        new Result("job-1", "prompt 1", "my_lore"));
+  }
+
+  @Test
+  void leavesFailedJobsForNextRun() throws Exception {
+    Path jobs = writeJobs(2);
+    Path output = directory.resolve("output.jsonl");
+    OpenAiClient failingOpenAi = new OpenAiClient(JsonHttpClient.createNull(), "irrelevant_api_key");
+    WorldGenerator generator = new WorldGenerator(failingOpenAi, 2, UNLIMITED_RATE, GENEROUS_TIMEOUT);
+
+    Summary summary = generator.run(jobs, output);
+
+    assertThat(summary.failed()).isEqualTo(2);
+    assertThat(readResults(output)).isEmpty();
+  }
+
+  @Test
+  void runsJobsInParallel() throws Exception {
+    Duration latency = Duration.ofMillis(200);
+    Path jobs = writeJobs(8);
+    WorldGenerator generator = new WorldGenerator(
+      OpenAiClient.createNull("my_lore", Latency.fixed(latency)), 8, UNLIMITED_RATE, GENEROUS_TIMEOUT);
+
+    Summary summary = generator.run(jobs, directory.resolve("output.jsonl"));
+
+    assertThat(summary.elapsed())
+      .isLessThan(latency.multipliedBy(4));
+  }
+
+  @Test
+  void pacesRequestsToRateLimit() throws Exception {
+    Path jobs = writeJobs(5);
+    WorldGenerator generator = new WorldGenerator(OpenAiClient.createNull("my_lore"), 5, 20, GENEROUS_TIMEOUT);
+
+    Summary summary = generator.run(jobs, directory.resolve("output.jsonl"));
+
+    // five requests at 20 per second are spaced 50ms apart
+    assertThat(summary.elapsed())
+      .isGreaterThanOrEqualTo(Duration.ofMillis(200));
+  }
+
+  @Test
+  void reportsProgressAfterEveryJob() throws Exception {
+    Path jobs = writeJobs(3);
+    WorldGenerator generator = new WorldGenerator(OpenAiClient.createNull("my_lore"), 1, UNLIMITED_RATE, GENEROUS_TIMEOUT);
+    var progress = generator.trackProgress();
+
+    generator.run(jobs, directory.resolve("output.jsonl"));
+
+    assertThat(progress.output())
+      .extracting(Progress::completed)
+      .containsExactly(1, 2, 3);
+    Progress last = progress.output().get(2);
+    assertThat(last.total()).isEqualTo(3);
+    assertThat(last.eta()).isZero();
+    assertThat(last.jobsPerMinute()).isPositive();
+  }
+
+  private Path writeJobs(int count) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i : IntStream.range(0, count).toArray()) {
+      lines.add(objectMapper.writeValueAsString(new WorldGenerator.Job("job-" + i, "prompt " + i)));
+    }
+    return Files.write(directory.resolve("jobs.jsonl"), lines, StandardCharsets.UTF_8);
+  }
+
+  private List<Result> readResults(Path output) throws IOException {
+    List<Result> results = new ArrayList<>();
+    for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+      results.add(objectMapper.readValue(line, Result.class));
+    }
+    return results;
+  }
+}
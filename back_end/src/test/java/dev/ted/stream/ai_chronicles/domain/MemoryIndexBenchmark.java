@@ -0,0 +1,69 @@
+package dev.ted.stream.ai_chronicles.domain;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+@Tag("benchmark")
+class MemoryIndexBenchmark {
+
+  private static final String[] PLACES = {"hangar", "reactor", "bridge", "crater", "canyon", "foundry", "archive", "dome"};
+  private static final String[] ITEMS = {"wrench", "fuse", "lantern", "rope", "battery", "map", "beacon", "crowbar"};
+  private static final String[] ROBOTS = {"Gizmo", "Bolt", "Sprocket", "Cog", "Widget", "Rivet", "Servo", "Diode"};
+  private static final int QUERIES = 2_000;
+  private static final int TOP_K = 4;
+
+  // Retrieval happens on the request path, so that's what's timed; indexing
+  // happens in the background and is only reported for scale.
+  @Test
+  void retrievalLatencyByTranscriptLength() {
+    Random random = new Random(42);
+    for (int exchanges : new int[]{100, 1_000, 10_000, 50_000}) {
+      List<Exchange> transcript = transcript(exchanges, random);
+      MemoryIndex index = new MemoryIndex();
+
+      long indexStart = System.nanoTime();
+      index.addFrom(transcript);
+      long indexNanos = System.nanoTime() - indexStart;
+
+      for (int warmUp = 0; warmUp < QUERIES; warmUp++) {
+        index.search(query(random), TOP_K, exchanges);
+      }
+      long[] latencies = new long[QUERIES];
+      for (int i = 0; i < QUERIES; i++) {
+        String query = query(random);
+        long start = System.nanoTime();
+        index.search(query, TOP_K, exchanges);
+        latencies[i] = System.nanoTime() - start;
+      }
+      Arrays.sort(latencies);
+
+      System.out.printf("%,6d exchanges: indexed in %,5d ms; top-%d retrieval p50 %,7d ns, p99 %,8d ns%n",
+        exchanges, indexNanos / 1_000_000, TOP_K,
+        latencies[QUERIES / 2], latencies[QUERIES * 99 / 100]);
+    }
+  }
+
+  private static List<Exchange> transcript(int exchanges, Random random) {
+    List<Exchange> transcript = new ArrayList<>(exchanges);
+    for (int i = 0; i < exchanges; i++) {
+      transcript.add(new Exchange(
+        "I take the " + pick(ITEMS, random) + " to the " + pick(PLACES, random) + " and ask " + pick(ROBOTS, random) + " about it",
+        pick(ROBOTS, random) + " says the " + pick(ITEMS, random) + " was last seen near the " + pick(PLACES, random)
+          + ", before the storm of cycle " + i + "."));
+    }
+    return transcript;
+  }
+
+  private static String query(Random random) {
+    return "Should I bring the " + pick(ITEMS, random) + " when " + pick(ROBOTS, random) + " and I go to the " + pick(PLACES, random) + "?";
+  }
+
+  private static String pick(String[] words, Random random) {
+    return words[random.nextInt(words.length)];
+  }
+}
@@ -0,0 +1,72 @@
+package dev.ted.stream.ai_chronicles.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoryIndexTest {
+
+  private static final List<Exchange> TRANSCRIPT = List.of(
+    new Exchange("I pick up the rusty wrench", "Gizmo eyes the wrench nervously."),
+    new Exchange("Where is the coolant leak?", "Behind the reactor, hissing."),
+    new Exchange("Ask Bolt about the fuel cells", "Bolt says the fuel cells are in the hangar."),
+    new Exchange("Go to the hangar", "The hangar doors are jammed."));
+
+  private final MemoryIndex index = new MemoryIndex();
+
+  @Test
+  void findsExchangesSharingWordsWithQuery() {
+    index.addFrom(TRANSCRIPT);
+
+    assertThat(index.search("Do I still have the wrench?", 1, TRANSCRIPT.size()))
+      .containsExactly(0);
+  }
+
+  @Test
+  void ranksRareWordsAboveCommonOnes() {
+    index.addFrom(TRANSCRIPT);
+
+    // "hangar" appears twice, "fuel" once: fuel is more telling
+    assertThat(index.search("fuel hangar", 1, TRANSCRIPT.size()))
+      .containsExactly(2);
+  }
+
+  @Test
+  void returnsUpToKPositionsInTranscriptOrder() {
+    index.addFrom(TRANSCRIPT);
+
+    assertThat(index.search("wrench reactor hangar", 2, TRANSCRIPT.size()))
+      .hasSize(2)
+      .isSorted();
+  }
+
+  @Test
+  void onlySearchesBeforeGivenPosition() {
+    index.addFrom(TRANSCRIPT);
+
+    assertThat(index.search("hangar doors", 3, 3))
+      .containsExactly(2);
+  }
+
+  @Test
+  void findsNothingWithoutSharedWords() {
+    index.addFrom(TRANSCRIPT);
+
+    assertThat(index.search("the and of", 3, TRANSCRIPT.size()))
+      .isEmpty();
+  }
+
+  @Test
+  void addsOnlyExchangesNotYetIndexed() {
+    index.addFrom(TRANSCRIPT.subList(0, 2));
+    index.addFrom(TRANSCRIPT);
+    index.addFrom(TRANSCRIPT);
+
+    assertThat(index.size())
+      .isEqualTo(4);
+    assertThat(index.search("wrench", 4, 4))
+      .containsExactly(0);
+  }
+}
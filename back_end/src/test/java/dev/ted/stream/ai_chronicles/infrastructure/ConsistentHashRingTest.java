@@ -0,0 +1,55 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+  @Test
+  void sameKeyAlwaysMapsToSameNode() {
+    ConsistentHashRing ring = new ConsistentHashRing(List.of("node1", "node2", "node3"));
+
+    assertThat(ring.nodeFor("key"))
+      .isEqualTo(ring.nodeFor("key"));
+  }
+
+  @Test
+  void spreadsKeysAcrossNodes() {
+    ConsistentHashRing ring = new ConsistentHashRing(List.of("node1", "node2", "node3"));
+
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      counts.merge(ring.nodeFor("key" + i), 1, Integer::sum);
+    }
+
+    assertThat(counts.values())
+      .hasSize(3)
+      .allSatisfy(count -> assertThat(count).isBetween(700, 1300));
+  }
+
+  @Test
+  void addingNodeOnlyMovesKeysToThatNode() {
+    ConsistentHashRing before = new ConsistentHashRing(List.of("node1", "node2"));
+    ConsistentHashRing after = new ConsistentHashRing(List.of("node1", "node2", "node3"));
+
+    for (int i = 0; i < 1000; i++) {
+      String key = "key" + i;
+      String newOwner = after.nodeFor(key);
+      if (!newOwner.equals("node3")) {
+        assertThat(newOwner).isEqualTo(before.nodeFor(key));
+      }
+    }
+  }
+
+  @Test
+  void requiresAtLeastOneNode() {
+    assertThatThrownBy(() -> new ConsistentHashRing(List.of()))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Consistent hash ring needs at least one node");
+  }
+}
@@ -0,0 +1,105 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.domain.GameEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GameStateParserTest {
+
+  private static final String STRUCTURED_TURN = """
+    {"narrative": "The hatch groans open.",
+     "inventory": [{"item": "fuse", "quantity": 2}, {"item": "wrench", "quantity": -1}],
+     "hazards": [{"name": "coolant leak", "severity": "high"}],
+     "attitudes": [{"robot": "Gizmo", "attitude": "wary"}]}
+    """;
+
+  private final List<GameEvent> events = new ArrayList<>();
+  private final GameStateParser parser = new GameStateParser(events::add);
+
+  @Test
+  void emitsEventForEveryPartOfTurn() {
+    parser.accept(STRUCTURED_TURN);
+    parser.finish();
+
+    assertThat(events)
+      .containsExactly(
+        new GameEvent.Narrative("The hatch groans open."),
+        new GameEvent.InventoryChange("fuse", 2),
+        new GameEvent.InventoryChange("wrench", -1),
+        new GameEvent.Hazard("coolant leak", "high"),
+        new GameEvent.RobotAttitude("Gizmo", "wary"));
+    assertThat(parser.narrative())
+      .isEqualTo("The hatch groans open.");
+  }
+
+  @Test
+  void emitsEventsAsSoonAsTheyAreComplete() {
+    parser.accept("{\"narrative\": \"The hatch groans open.\", \"inventory\": [{\"item\": \"fuse\", ");
+
+    assertThat(events)
+      .containsExactly(new GameEvent.Narrative("The hatch groans open."));
+
+    parser.accept("\"quantity\": 2}, {\"item\": \"wre");
+
+    assertThat(events)
+      .containsExactly(
+        new GameEvent.Narrative("The hatch groans open."),
+        new GameEvent.InventoryChange("fuse", 2));
+  }
+
+  @Test
+  void fragmentsMaySplitAnywhere() {
+    for (int i = 0; i < STRUCTURED_TURN.length(); i++) {
+      parser.accept(STRUCTURED_TURN.substring(i, i + 1));
+    }
+    parser.finish();
+
+    assertThat(events)
+      .hasSize(5);
+  }
+
+  @Test
+  void fragmentsMaySplitMultiByteCharacters() {
+    parser.accept("{\"narrative\": \"caf");
+    parser.accept("é\"}");
+    parser.finish();
+
+    assertThat(parser.narrative())
+      .isEqualTo("café");
+  }
+
+  @Test
+  void skipsUnknownAndNestedFields() {
+    parser.accept("""
+      {"mood": {"narrative": "not this one"},
+       "inventory": [{"item": "fuse", "notes": {"item": "not this one"}}],
+       "weather": [{"item": "nor this one"}],
+       "narrative": "Quiet."}
+      """);
+    parser.finish();
+
+    assertThat(events)
+      .containsExactly(
+        new GameEvent.InventoryChange("fuse", 1),
+        new GameEvent.Narrative("Quiet."));
+  }
+
+  @Test
+  void failsWhenDocumentIsCutOff() {
+    parser.accept("{\"narrative\": \"The hatch");
+
+    assertThatThrownBy(parser::finish)
+      .isInstanceOf(GameStateParser.MalformedGameStateException.class);
+  }
+
+  @Test
+  void failsOnInvalidJson() {
+    assertThatThrownBy(() -> parser.accept("{\"narrative\" \"no colon\"}"))
+      .isInstanceOf(GameStateParser.MalformedGameStateException.class);
+  }
+}
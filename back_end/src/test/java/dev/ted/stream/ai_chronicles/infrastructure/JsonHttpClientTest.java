@@ -1,13 +1,31 @@
 package dev.ted.stream.ai_chronicles.infrastructure;
 
+import com.sun.net.httpserver.HttpServer;
 import dev.ted.stream.ai_chronicles.OutputTracker;
+import dev.ted.stream.ai_chronicles.infrastructure.JsonHttpClient.NulledEndpoint;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Outcome;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Phase;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
-
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.NoSuchElementException;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -248,6 +266,411 @@ class JsonHttpClientTest {
         JsonHttpRequest.createPost("/post-endpoint", headers, postedBody));
   }
 
+  @Test
+  void completedRequestPhasesAreTrackedAndRecorded() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(
+      Map.of("/endpoint", new ExampleResponse()));
+    OutputTracker<RequestPhases> tracker = jsonHttpClient.trackPhases();
+
+    jsonHttpClient.get("/endpoint", ExampleResponse.class);
+    jsonHttpClient.post("/endpoint", ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY);
+
+    assertThat(tracker.output())
+      .extracting(RequestPhases::request)
+      .containsExactly(
+        JsonHttpRequest.createGet("/endpoint"),
+        JsonHttpRequest.createPost("/endpoint", IRRELEVANT_HEADERS, IRRELEVANT_BODY));
+    assertThat(jsonHttpClient.phaseHistograms().summarize(Outcome.OK).get(Phase.TIME_TO_FIRST_BYTE).count())
+      .isEqualTo(2);
+  }
+
+  @Test
+  void failedRequestsAreTrackedAndRecordedWithTheirOutcome() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull();
+    OutputTracker<RequestPhases> tracker = jsonHttpClient.trackPhases();
+
+    assertThatThrownBy(() -> jsonHttpClient.get("/unconfigured", ExampleResponse.class))
+      .isInstanceOf(NoSuchElementException.class);
+
+    assertThat(tracker.output())
+      .extracting(RequestPhases::outcome)
+      .containsExactly(Outcome.FAILED);
+    assertThat(jsonHttpClient.phaseHistograms().summarize(Outcome.FAILED).get(Phase.TIME_TO_FIRST_BYTE).count())
+      .isEqualTo(1);
+    assertThat(jsonHttpClient.phaseHistograms().summarize(Outcome.OK).get(Phase.TIME_TO_FIRST_BYTE).count())
+      .isZero();
+  }
+
+  @Test
+  void postWithExpiredDeadlineIsNotSent() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(
+      Map.of("/endpoint", new ExampleResponse()));
+    OutputTracker<JsonHttpRequest> tracker = jsonHttpClient.trackRequests();
+
+    assertThatThrownBy(() -> jsonHttpClient.post("/endpoint", ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY,
+      Deadline.after(Duration.ZERO)))
+      .isInstanceOf(DeadlineExceededException.class)
+      .hasMessage("Deadline expired before sending POST to /endpoint");
+    assertThat(tracker.output())
+      .isEmpty();
+  }
+
+  @Test
+  void nulledPostThrowsConfiguredException() {
+    IllegalStateException failure = new IllegalStateException("configured failure");
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(
+      Map.of("/endpoint", List.of(failure, new ExampleResponse("dto"))));
+
+    assertThatThrownBy(() -> jsonHttpClient.post("/endpoint", ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY))
+      .isSameAs(failure);
+    assertThat(jsonHttpClient.post("/endpoint", ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY).getContent())
+      .isEqualTo("dto");
+  }
+
+  @Test
+  void nulledEndpointWaitsForConfiguredLatency() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "/endpoint", NulledEndpoint.responding(new ExampleResponse("dto"))
+        .withLatency(Latency.fixed(Duration.ofMillis(50)))));
+    OutputTracker<RequestPhases> phases = jsonHttpClient.trackPhases();
+    long start = System.nanoTime();
+
+    ExampleResponse response = jsonHttpClient.get("/endpoint", ExampleResponse.class);
+
+    assertThat(response.getContent())
+      .isEqualTo("dto");
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+      .isGreaterThanOrEqualTo(Duration.ofMillis(50));
+    assertThat(phases.output().get(0).duration(Phase.TIME_TO_FIRST_BYTE))
+      .isGreaterThanOrEqualTo(Duration.ofMillis(50));
+  }
+
+  @Test
+  void nulledEndpointSlowerThanDeadlineTimesOut() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "/endpoint", NulledEndpoint.responding(new ExampleResponse())
+        .withLatency(Latency.fixed(Duration.ofSeconds(10)))));
+    long start = System.nanoTime();
+
+    assertThatThrownBy(() -> jsonHttpClient.post("/endpoint", ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY,
+      Deadline.after(Duration.ofMillis(50))))
+      .isInstanceOf(DeadlineExceededException.class);
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+      .isLessThan(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void nulledEndpointFailsAtConfiguredRate() {
+    IllegalStateException failure = new IllegalStateException("injected failure");
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "/always-fails", NulledEndpoint.responding(new ExampleResponse())
+        .failingAtRate(1.0, () -> failure),
+      "/never-fails", NulledEndpoint.responding(new ExampleResponse("dto"))
+        .failingAtRate(0.0, () -> failure)));
+
+    assertThatThrownBy(() -> jsonHttpClient.get("/always-fails", ExampleResponse.class))
+      .isSameAs(failure);
+    assertThat(jsonHttpClient.get("/never-fails", ExampleResponse.class).getContent())
+      .isEqualTo("dto");
+  }
+
+  @Test
+  void nulledEndpointTimesOutAtConfiguredRate() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "/endpoint", NulledEndpoint.responding(new ExampleResponse())
+        .timingOutAtRate(1.0)));
+
+    assertThatThrownBy(() -> jsonHttpClient.post("/endpoint", ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY,
+      Deadline.after(Duration.ofMillis(10))))
+      .isInstanceOf(DeadlineExceededException.class);
+    assertThatThrownBy(() -> jsonHttpClient.post("/endpoint", ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY))
+      .isInstanceOf(ResourceAccessException.class)
+      .hasRootCauseInstanceOf(SocketTimeoutException.class);
+  }
+
+  @Test
+  void nulledResponseSequenceIsSharedSafelyBetweenThreads() throws Exception {
+    int threads = 8;
+    int requestsPerThread = 500;
+    List<ExampleResponse> sequence = IntStream.range(0, threads * requestsPerThread)
+      .mapToObj(i -> new ExampleResponse("dto " + i))
+      .toList();
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of("/endpoint", sequence));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        results.add(executor.submit(() -> IntStream.range(0, requestsPerThread)
+          .mapToObj(j -> jsonHttpClient.get("/endpoint", ExampleResponse.class).getContent())
+          .toList()));
+      }
+      Set<String> received = new HashSet<>();
+      for (Future<List<String>> result : results) {
+        received.addAll(result.get(10, TimeUnit.SECONDS));
+      }
+
+      assertThat(received)
+        .hasSize(threads * requestsPerThread);
+      assertThatThrownBy(() -> jsonHttpClient.get("/endpoint", ExampleResponse.class))
+        .isInstanceOf(NoSuchElementException.class);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void realPostIsCutOffWhenDeadlinePasses() throws Exception {
+    HttpServer server = startSlowServer(Duration.ofSeconds(5));
+    HttpServer fastServer = startSlowServer(Duration.ZERO);
+    try {
+      JsonHttpClient jsonHttpClient = JsonHttpClient.create();
+      // so that the cut-off request doesn't spend its deadline on one-off setup
+      jsonHttpClient.post("http://localhost:" + fastServer.getAddress().getPort() + "/slow", ExampleResponse.class,
+        IRRELEVANT_HEADERS, IRRELEVANT_BODY);
+      OutputTracker<RequestPhases> tracker = jsonHttpClient.trackPhases();
+      String url = "http://localhost:" + server.getAddress().getPort() + "/slow";
+      long start = System.nanoTime();
+
+      assertThatThrownBy(() -> jsonHttpClient.post(url, ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY,
+        Deadline.after(Duration.ofMillis(200))))
+        .isInstanceOf(DeadlineExceededException.class);
+      assertThat(Duration.ofNanos(System.nanoTime() - start))
+        .isLessThan(Duration.ofSeconds(2));
+      // no byte ever arrived: time to first byte runs until the deadline cut the request off
+      assertThat(tracker.output().get(0).duration(Phase.TIME_TO_FIRST_BYTE))
+        .isBetween(Duration.ofMillis(150), Duration.ofSeconds(2));
+      PhaseHistograms.Summary timeToFirstByte =
+        jsonHttpClient.phaseHistograms().summarize(Outcome.DEADLINE_EXCEEDED).get(Phase.TIME_TO_FIRST_BYTE);
+      assertThat(timeToFirstByte.count())
+        .isEqualTo(1);
+      assertThat(timeToFirstByte.meanMillis())
+        .isBetween(150.0, 2000.0);
+    } finally {
+      server.stop(0);
+      fastServer.stop(0);
+    }
+  }
+
+  @Test
+  void realPostIsCutOffWhenDeadlineIsCancelled() throws Exception {
+    HttpServer server = startSlowServer(Duration.ofSeconds(5));
+    try {
+      JsonHttpClient jsonHttpClient = JsonHttpClient.create();
+      String url = "http://localhost:" + server.getAddress().getPort() + "/slow";
+      Deadline deadline = Deadline.none().cancellable();
+      cancelAfter(deadline, Duration.ofMillis(100));
+      long start = System.nanoTime();
+
+      assertThatThrownBy(() -> jsonHttpClient.post(url, ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY,
+        deadline))
+        .isInstanceOf(DeadlineExceededException.class)
+        .hasMessageContaining("cancelled");
+      assertThat(Duration.ofNanos(System.nanoTime() - start))
+        .isLessThan(Duration.ofSeconds(2));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void nulledPostIsCutOffWhenDeadlineIsCancelled() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "https://example.com",
+      NulledEndpoint.responding(new ExampleResponse("irrelevant"))
+        .withLatency(Latency.fixed(Duration.ofSeconds(10)))));
+    Deadline deadline = Deadline.after(Duration.ofSeconds(30)).cancellable();
+    cancelAfter(deadline, Duration.ofMillis(100));
+    long start = System.nanoTime();
+
+    assertThatThrownBy(() -> jsonHttpClient.post("https://example.com", ExampleResponse.class, IRRELEVANT_HEADERS,
+      IRRELEVANT_BODY, deadline))
+      .isInstanceOf(DeadlineExceededException.class)
+      .hasMessageContaining("cancelled");
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+      .isLessThan(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void realRequestMeasuresServerTimeAsTimeToFirstByte() throws Exception {
+    HttpServer server = startSlowServer(Duration.ofMillis(100));
+    try {
+      JsonHttpClient jsonHttpClient = JsonHttpClient.create();
+      OutputTracker<RequestPhases> tracker = jsonHttpClient.trackPhases();
+      String url = "http://localhost:" + server.getAddress().getPort() + "/slow";
+
+      ExampleResponse response = jsonHttpClient.post(url, ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY);
+
+      assertThat(response.getContent())
+        .isEqualTo("slow");
+      RequestPhases phases = tracker.output().get(0);
+      assertThat(phases.duration(Phase.TIME_TO_FIRST_BYTE))
+        .isGreaterThanOrEqualTo(Duration.ofMillis(100));
+      assertThat(phases.duration(Phase.TLS))
+        .isZero();
+      assertThat(phases.duration(Phase.DESERIALIZE))
+        .isPositive();
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void getWithHeadersIsTracked() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of("/endpoint", "configured"));
+    OutputTracker<JsonHttpRequest> tracker = jsonHttpClient.trackRequests();
+
+    String response = jsonHttpClient.get("/endpoint", String.class, Map.of("Authorization", "Bearer key"), Deadline.none());
+
+    assertThat(response)
+      .isEqualTo("configured");
+    assertThat(tracker.output())
+      .containsExactly(JsonHttpRequest.createGet("/endpoint", Map.of("Authorization", "Bearer key")));
+  }
+
+  @Test
+  void exercisingJsonSendsNothing() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.create();
+    OutputTracker<JsonHttpRequest> tracker = jsonHttpClient.trackRequests();
+
+    jsonHttpClient.exerciseJson(IRRELEVANT_BODY, new ExampleBody("sample response"));
+
+    assertThat(tracker.output())
+      .isEmpty();
+  }
+
+  @Test
+  void nulledStreamingPostDeliversConfiguredEvents() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "/stream", JsonHttpClient.StreamedResponse.of(List.of("one", "two"))));
+    OutputTracker<JsonHttpRequest> tracker = jsonHttpClient.trackRequests();
+    List<String> received = new ArrayList<>();
+
+    jsonHttpClient.postStreaming("/stream", IRRELEVANT_HEADERS, IRRELEVANT_BODY, Deadline.none(), received::add);
+
+    assertThat(received)
+      .containsExactly("one", "two");
+    assertThat(tracker.output())
+      .containsExactly(JsonHttpRequest.createPost("/stream", IRRELEVANT_HEADERS, IRRELEVANT_BODY));
+  }
+
+  @Test
+  void nulledEndpointAlsoStreamingAnswersBothKindsOfPost() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "/endpoint", JsonHttpClient.NulledEndpoint.responding("whole response")
+        .alsoStreaming(JsonHttpClient.StreamedResponse.of(List.of("one", "two")))));
+    List<String> received = new ArrayList<>();
+
+    jsonHttpClient.postStreaming("/endpoint", IRRELEVANT_HEADERS, IRRELEVANT_BODY, Deadline.none(), received::add);
+    String response = jsonHttpClient.post("/endpoint", String.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY, Deadline.none());
+
+    assertThat(received)
+      .containsExactly("one", "two");
+    assertThat(response)
+      .isEqualTo("whole response");
+  }
+
+  @Test
+  void nulledStreamSlowerThanDeadlineTimesOutPartWayThrough() {
+    JsonHttpClient jsonHttpClient = JsonHttpClient.createNull(Map.of(
+      "/stream", JsonHttpClient.StreamedResponse.of(List.of("one", "two", "three"))
+        .withInterval(Duration.ofMillis(60))));
+    List<String> received = new ArrayList<>();
+
+    assertThatThrownBy(() -> jsonHttpClient.postStreaming("/stream", IRRELEVANT_HEADERS, IRRELEVANT_BODY,
+      Deadline.after(Duration.ofMillis(100)), received::add))
+      .isInstanceOf(DeadlineExceededException.class);
+    assertThat(received)
+      .containsExactly("one");
+  }
+
+  @Test
+  void realStreamingPostReadsServerSentEventsUntilDone() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/stream", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+      exchange.sendResponseHeaders(200, 0);
+      String events = "data: {\"n\":1}\n\n: comment\n\ndata: {\"n\":2}\n\ndata: [DONE]\n\ndata: ignored\n\n";
+      exchange.getResponseBody().write(events.getBytes(StandardCharsets.UTF_8));
+      exchange.close();
+    });
+    server.start();
+    try {
+      JsonHttpClient jsonHttpClient = JsonHttpClient.create();
+      String url = "http://localhost:" + server.getAddress().getPort() + "/stream";
+      List<String> received = new ArrayList<>();
+
+      jsonHttpClient.postStreaming(url, Map.of("Content-Type", "application/json"), IRRELEVANT_BODY,
+        Deadline.after(Duration.ofSeconds(5)), received::add);
+
+      assertThat(received)
+        .containsExactly("{\"n\":1}", "{\"n\":2}");
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void realRequestIsRecordedAsFlightRecorderEvent(@TempDir Path directory) throws Exception {
+    HttpServer server = startSlowServer(Duration.ZERO);
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("dev.ted.stream.ai_chronicles.HttpExchange");
+      recording.start();
+      String url = "http://localhost:" + server.getAddress().getPort() + "/slow";
+
+      JsonHttpClient.create().post(url, ExampleResponse.class, IRRELEVANT_HEADERS, IRRELEVANT_BODY);
+
+      recording.stop();
+      Path file = directory.resolve("http.jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    } finally {
+      server.stop(0);
+    }
+
+    assertThat(events)
+      .singleElement()
+      .satisfies(event -> {
+        assertThat(event.getString("method")).isEqualTo("POST");
+        assertThat(event.getString("outcome")).isEqualTo("OK");
+        assertThat(event.getLong("requestBytes")).isEqualTo("{\"bodyText\":\"irrelevant body\"}".length());
+        assertThat(event.getLong("responseBytes")).isEqualTo("{\"content\":\"slow\"}".length());
+      });
+  }
+
+  private static void cancelAfter(Deadline deadline, Duration delay) {
+    Thread canceller = new Thread(() -> {
+      try {
+        Thread.sleep(delay.toMillis());
+      } catch (InterruptedException e) {
+        return;
+      }
+      deadline.cancel();
+    });
+    canceller.setDaemon(true);
+    canceller.start();
+  }
+
+  private static HttpServer startSlowServer(Duration delay) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/slow", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      try {
+        Thread.sleep(delay.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] response = "{\"content\":\"slow\"}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, response.length);
+      exchange.getResponseBody().write(response);
+      exchange.close();
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    return server;
+  }
 
   public static class ExampleResponse {
     private String content;
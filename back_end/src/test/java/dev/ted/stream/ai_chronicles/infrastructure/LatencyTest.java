@@ -0,0 +1,36 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyTest {
+
+  @Test
+  void uniformLatencyStaysWithinBounds() {
+    Latency latency = Latency.uniform(Duration.ofMillis(10), Duration.ofMillis(20));
+
+    assertThat(Stream.generate(latency::sample).limit(1_000))
+      .allSatisfy(sample -> assertThat(sample)
+        .isBetween(Duration.ofMillis(10), Duration.ofMillis(20)));
+  }
+
+  @Test
+  void logNormalLatencyHasConfiguredMedianAndTail() {
+    Latency latency = Latency.logNormal(Duration.ofMillis(100), Duration.ofMillis(1000));
+
+    long[] sortedNanos = Stream.generate(latency::sample)
+      .limit(100_000)
+      .mapToLong(Duration::toNanos)
+      .sorted()
+      .toArray();
+
+    assertThat(Duration.ofNanos(sortedNanos[50_000]))
+      .isBetween(Duration.ofMillis(95), Duration.ofMillis(105));
+    assertThat(Duration.ofNanos(sortedNanos[99_000]))
+      .isBetween(Duration.ofMillis(900), Duration.ofMillis(1100));
+  }
+}
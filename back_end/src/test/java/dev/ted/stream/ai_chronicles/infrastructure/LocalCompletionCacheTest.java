@@ -0,0 +1,34 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalCompletionCacheTest {
+
+  @Test
+  void returnsStoredCompletion() {
+    LocalCompletionCache cache = new LocalCompletionCache(10);
+
+    cache.put("key", "completion");
+
+    assertThat(cache.get("key"))
+      .contains("completion");
+    assertThat(cache.get("other_key"))
+      .isEmpty();
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedEntryWhenFull() {
+    LocalCompletionCache cache = new LocalCompletionCache(2);
+    cache.put("a", "completion a");
+    cache.put("b", "completion b");
+    cache.get("a");
+
+    cache.put("c", "completion c");
+
+    assertThat(cache.get("a")).contains("completion a");
+    assertThat(cache.get("b")).isEmpty();
+    assertThat(cache.get("c")).contains("completion c");
+  }
+}
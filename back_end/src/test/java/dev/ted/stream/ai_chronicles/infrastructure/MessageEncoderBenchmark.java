@@ -0,0 +1,158 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+@Tag("benchmark")
+class MessageEncoderBenchmark {
+
+  private static final List<OpenAiRequestBody.Message> PREFIX =
+    PromptPrefix.of("benchmark", "You are a robot on a crash-landed planet. ".repeat(20)).messages();
+  private static final int SESSIONS = 50;
+  private static final int TURNS_PER_SESSION = 20;
+  private static final int RECENT_EXCHANGES = 6;
+  private static final int TOP_K = 4;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  // Times what each turn costs to build, key and write its request, in
+  // sessions whose history has grown to a given length. The output stream
+  // discards bytes, so only encoding is measured, not sending.
+  @Test
+  void costPerTurnByHistoryLength() throws IOException {
+    for (int warmUp = 0; warmUp < 3; warmUp++) {
+      measure(100);
+    }
+
+    for (int exchanges : new int[]{10, 50, 200, 800}) {
+      Result result = measure(exchanges);
+      System.out.printf("History of %,4d exchanges: re-encoding all %,7d ns/turn, incremental %,6d ns/turn%n",
+        exchanges, result.fullNanos(), result.incrementalNanos());
+    }
+  }
+
+  // With long-term memory on, each turn sends topK recalled exchanges and the
+  // recentExchanges latest ones, so the history never just grows. Times the
+  // same three steps for such a history, at the default memory settings.
+  @Test
+  void costPerTurnWithRecalledHistory() throws IOException {
+    // histories this short need more turns before the JIT has settled
+    for (int warmUp = 0; warmUp < 30; warmUp++) {
+      measureRecalled(100);
+    }
+
+    for (int exchanges : new int[]{10, 50, 200, 800}) {
+      Result result = measureRecalled(exchanges);
+      System.out.printf("Transcript of %,4d exchanges, recalled history: re-encoding all %,6d ns/turn, incremental %,6d ns/turn%n",
+        exchanges, result.fullNanos(), result.incrementalNanos());
+    }
+  }
+
+  private Result measureRecalled(int exchanges) throws IOException {
+    long full = 0;
+    long incremental = 0;
+    Random random = new Random(42);
+    MessageEncoder encoder = new MessageEncoder(PREFIX);
+    for (int session = 0; session < SESSIONS; session++) {
+      String sessionId = "session " + session;
+      List<Exchange> transcript = history(exchanges);
+      for (int turn = 0; turn < TURNS_PER_SESSION; turn++) {
+        String prompt = "What now, robot? " + turn;
+        List<Exchange> history = recalled(transcript, random);
+
+        long start = System.nanoTime();
+        OpenAiRequestBody plain = body(MessageEncoderTest.plainMessages(PREFIX, history, prompt));
+        OpenAiClient.cacheKey(plain);
+        objectMapper.writeValue(OutputStream.nullOutputStream(), plain);
+        long middle = System.nanoTime();
+        OpenAiRequestBody encoded = body(encoder.messages(sessionId, history, prompt));
+        OpenAiClient.cacheKey(encoded);
+        objectMapper.writeValue(OutputStream.nullOutputStream(), encoded);
+        long end = System.nanoTime();
+
+        full += middle - start;
+        incremental += end - middle;
+        transcript = append(transcript, new Exchange(prompt, "I scan the horizon and check my fuel cells. " + turn));
+      }
+    }
+    int turns = SESSIONS * TURNS_PER_SESSION;
+    return new Result(full / turns, incremental / turns);
+  }
+
+  // Like LongTermMemory.recall: a few earlier exchanges (here, random ones
+  // that tend to come back from turn to turn), then the latest ones
+  private static List<Exchange> recalled(List<Exchange> transcript, Random random) {
+    int recentStart = Math.max(0, transcript.size() - RECENT_EXCHANGES);
+    TreeSet<Integer> positions = new TreeSet<>();
+    while (positions.size() < Math.min(TOP_K, recentStart)) {
+      positions.add(random.nextInt(Math.min(recentStart, TOP_K * 2)));
+    }
+    List<Exchange> history = new ArrayList<>();
+    positions.forEach(position -> history.add(transcript.get(position)));
+    history.addAll(transcript.subList(recentStart, transcript.size()));
+    return history;
+  }
+
+  private Result measure(int exchanges) throws IOException {
+    long full = 0;
+    long incremental = 0;
+    MessageEncoder encoder = new MessageEncoder(PREFIX);
+    for (int session = 0; session < SESSIONS; session++) {
+      String sessionId = "session " + session;
+      List<Exchange> history = history(exchanges);
+      encoder.messages(sessionId, history, "first turn after restart");
+      for (int turn = 0; turn < TURNS_PER_SESSION; turn++) {
+        String prompt = "What now, robot? " + turn;
+
+        long start = System.nanoTime();
+        OpenAiRequestBody plain = body(MessageEncoderTest.plainMessages(PREFIX, history, prompt));
+        OpenAiClient.cacheKey(plain);
+        objectMapper.writeValue(OutputStream.nullOutputStream(), plain);
+        long middle = System.nanoTime();
+        OpenAiRequestBody encoded = body(encoder.messages(sessionId, history, prompt));
+        OpenAiClient.cacheKey(encoded);
+        objectMapper.writeValue(OutputStream.nullOutputStream(), encoded);
+        long end = System.nanoTime();
+
+        full += middle - start;
+        incremental += end - middle;
+        history = append(history, new Exchange(prompt, "I scan the horizon and check my fuel cells. " + turn));
+      }
+    }
+    int turns = SESSIONS * TURNS_PER_SESSION;
+    return new Result(full / turns, incremental / turns);
+  }
+
+  private static OpenAiRequestBody body(List<OpenAiRequestBody.Message> messages) {
+    return new OpenAiRequestBody("gpt-3.5-turbo", messages, 0.7, 256);
+  }
+
+  // Like Transcript.add: a new list holding the same exchanges, plus one
+  private static List<Exchange> append(List<Exchange> history, Exchange exchange) {
+    List<Exchange> appended = new ArrayList<>(history);
+    appended.add(exchange);
+    return appended;
+  }
+
+  private static List<Exchange> history(int exchanges) {
+    List<Exchange> history = new ArrayList<>();
+    for (int i = 0; i < exchanges; i++) {
+      history.add(new Exchange(
+        "What do you do next, robot " + i + "?",
+        "I scan the horizon for signs of the other robots, and then I check my fuel cells again. " + i));
+    }
+    return history;
+  }
+
+  private record Result(long fullNanos, long incrementalNanos) {
+  }
+}
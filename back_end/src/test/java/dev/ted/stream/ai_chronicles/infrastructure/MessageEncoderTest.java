@@ -0,0 +1,183 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageEncoderTest {
+
+  private static final List<OpenAiRequestBody.Message> PREFIX = List.of(
+    new OpenAiRequestBody.Message("system", "You are a robot on a crash-landed planet."));
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final MessageEncoder encoder = new MessageEncoder(PREFIX);
+
+  @Test
+  void serializesExactlyAsPlainMessagesWould() throws Exception {
+    List<Exchange> history = List.of(
+      new Exchange("Hello \"robot\"", "Bzzt. Héllo, human.\n"),
+      new Exchange("What now?", "We look for fuel."));
+
+    OpenAiRequestBody encoded = body(encoder.messages(history, "Go on"));
+    OpenAiRequestBody plain = body(plainMessages(PREFIX, history, "Go on"));
+
+    assertThat(objectMapper.writeValueAsString(encoded))
+      .isEqualTo(objectMapper.writeValueAsString(plain));
+    assertThat(new String(objectMapper.writeValueAsBytes(encoded), StandardCharsets.UTF_8))
+      .isEqualTo(objectMapper.writeValueAsString(plain));
+    assertThat(encoded)
+      .isEqualTo(plain);
+  }
+
+  @Test
+  void serializesWithoutPrefixOrHistory() throws Exception {
+    MessageEncoder noPrefix = new MessageEncoder(List.of());
+
+    OpenAiRequestBody encoded = body(noPrefix.messages(List.of(), "Hello"));
+
+    assertThat(objectMapper.writeValueAsString(encoded))
+      .isEqualTo(objectMapper.writeValueAsString(body(List.of(new OpenAiRequestBody.Message("user", "Hello")))));
+  }
+
+  @Test
+  void continuesConversationAsItGrows() throws Exception {
+    List<Exchange> history = new ArrayList<>();
+    for (int turn = 0; turn < 5; turn++) {
+      OpenAiRequestBody encoded = body(encoder.messages("my_session", history, "prompt " + turn));
+
+      assertThat(objectMapper.writeValueAsString(encoded))
+        .isEqualTo(objectMapper.writeValueAsString(body(plainMessages(PREFIX, history, "prompt " + turn))));
+      history.add(new Exchange("prompt " + turn, "answer " + turn));
+    }
+    assertThat(encoder.conversations())
+      .isEqualTo(1);
+  }
+
+  @Test
+  void startsOverWhenHistoryNoLongerContinuesConversation() throws Exception {
+    Exchange first = new Exchange("first prompt", "first answer");
+    Exchange second = new Exchange("second prompt", "second answer");
+    encoder.messages("my_session", List.of(first, second), "third prompt");
+
+    OpenAiRequestBody encoded = body(encoder.messages("my_session", List.of(first), "another second prompt"));
+
+    assertThat(objectMapper.writeValueAsString(encoded))
+      .isEqualTo(objectMapper.writeValueAsString(body(plainMessages(PREFIX, List.of(first), "another second prompt"))));
+  }
+
+  @Test
+  void reusesSharedExchangesWhenRecalledHistoryMovesOn() throws Exception {
+    List<Exchange> transcript = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      transcript.add(new Exchange("prompt " + i, "answer " + i));
+    }
+    // recalled exchanges, then the recent window, as LongTermMemory sends them
+    List<Exchange> before = List.of(transcript.get(1), transcript.get(4), transcript.get(5), transcript.get(6));
+    List<Exchange> after = List.of(transcript.get(0), transcript.get(1), transcript.get(5), transcript.get(6), transcript.get(7));
+    encoder.messages("my_session", before, "prompt 7");
+
+    OpenAiRequestBody encoded = body(encoder.messages("my_session", after, "prompt 8"));
+
+    OpenAiRequestBody fresh = body(new MessageEncoder(PREFIX).messages(after, "prompt 8"));
+    assertThat(objectMapper.writeValueAsString(encoded))
+      .isEqualTo(objectMapper.writeValueAsString(body(plainMessages(PREFIX, after, "prompt 8"))));
+    assertThat(OpenAiClient.cacheKey(encoded))
+      .isEqualTo(OpenAiClient.cacheKey(fresh));
+    List<Exchange> continued = new ArrayList<>(after);
+    continued.add(new Exchange("prompt 8", "answer 8"));
+    assertThat(objectMapper.writeValueAsString(body(encoder.messages("my_session", continued, "prompt 9"))))
+      .isEqualTo(objectMapper.writeValueAsString(body(plainMessages(PREFIX, continued, "prompt 9"))));
+  }
+
+  @Test
+  void keepsConversationUntilForgotten() {
+    encoder.messages("my_session", List.of(new Exchange("prompt", "answer")), "next");
+    assertThat(encoder.conversations()).isEqualTo(1);
+    assertThat(encoder.retainedBytes()).isPositive();
+
+    encoder.forget("my_session");
+
+    assertThat(encoder.conversations()).isZero();
+    assertThat(encoder.retainedBytes()).isZero();
+  }
+
+  @Test
+  void keepsNothingForMessagesOutsideConversation() throws Exception {
+    List<Exchange> history = List.of(new Exchange("prompt", "answer"));
+
+    OpenAiRequestBody encoded = body(encoder.messages(history, "next"));
+
+    assertThat(objectMapper.writeValueAsString(encoded))
+      .isEqualTo(objectMapper.writeValueAsString(body(plainMessages(PREFIX, history, "next"))));
+    assertThat(encoder.conversations())
+      .isZero();
+  }
+
+  @Test
+  void cacheKeyDependsOnWholeRequest() {
+    Exchange first = new Exchange("first prompt", "first answer");
+
+    String key = OpenAiClient.cacheKey(body(encoder.messages("my_session", List.of(first), "second prompt")));
+
+    assertThat(OpenAiClient.cacheKey(body(encoder.messages("my_session", List.of(first), "second prompt"))))
+      .isEqualTo(key);
+    assertThat(OpenAiClient.cacheKey(body(encoder.messages(List.of(first), "other prompt"))))
+      .isNotEqualTo(key);
+    assertThat(OpenAiClient.cacheKey(body(encoder.messages(List.of(new Exchange("first prompt", "other answer")), "second prompt"))))
+      .isNotEqualTo(key);
+    assertThat(OpenAiClient.cacheKey(new OpenAiRequestBody("other_model", encoder.messages(List.of(first), "second prompt"), 0.7, 100)))
+      .isNotEqualTo(key);
+  }
+
+  @Test
+  void realRequestSendsEncodedMessages() throws Exception {
+    AtomicReference<String> received = new AtomicReference<>();
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/echo", exchange -> {
+      received.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+      byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, response.length);
+      exchange.getResponseBody().write(response);
+      exchange.close();
+    });
+    server.start();
+    try {
+      List<Exchange> history = List.of(new Exchange("Hello", "Bzzt."));
+      String url = "http://localhost:" + server.getAddress().getPort() + "/echo";
+
+      JsonHttpClient.create().post(url, Map.class, Map.of("Content-Type", "application/json"),
+        body(encoder.messages(history, "Go on")));
+
+      assertThat(objectMapper.readTree(received.get()))
+        .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsString(body(plainMessages(PREFIX, history, "Go on")))));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  private static OpenAiRequestBody body(List<OpenAiRequestBody.Message> messages) {
+    return new OpenAiRequestBody("my_model", messages, 0.7, 100);
+  }
+
+  static List<OpenAiRequestBody.Message> plainMessages(List<OpenAiRequestBody.Message> prefix, List<Exchange> history, String prompt) {
+    List<OpenAiRequestBody.Message> messages = new ArrayList<>(prefix);
+    for (Exchange exchange : history) {
+      messages.add(new OpenAiRequestBody.Message("user", exchange.prompt()));
+      messages.add(new OpenAiRequestBody.Message("assistant", exchange.answer()));
+    }
+    messages.add(new OpenAiRequestBody.Message("user", prompt));
+    return messages;
+  }
+}
@@ -43,6 +43,19 @@ class OpenAiClientJsonTests {
                            {"id":"irrelevant_id","object":"irrelevant_object","created":42,"model":"irrelevant_model","usage":{"prompt_tokens":42,"completion_tokens":42,"total_tokens":42},"choices":[{"message":{"role":"irrelevant role","content":"my_open_ai_response"},"finish_reason":"irrelevant_reason","index":42}]}""");
     }
 
+    @Test
+    void cachedPromptTokensAreReadFromUsageDetails() throws JsonProcessingException {
+        String json = """
+                {"prompt_tokens":2006,"completion_tokens":300,"total_tokens":2306,
+                "prompt_tokens_details":{"cached_tokens":1920}}
+                """;
+
+        Usage usage = objectMapper.readValue(json, Usage.class);
+
+        assertThat(usage.cachedTokens())
+                .isEqualTo(1920);
+    }
+
     @Test
     void jsonDeserializesToResponseBodyObject() throws JsonProcessingException {
         String json = """
@@ -1,9 +1,23 @@
 package dev.ted.stream.ai_chronicles.infrastructure;
 
 import dev.ted.stream.ai_chronicles.OutputTracker;
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.GameEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -118,6 +132,352 @@ class OpenAiClientTest {
       .isEqualTo("my_response");
   }
 
+  @Test
+  void answersRepeatedPromptFromCache() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, IRRELEVANT_RESPONSE_BODY
+    ));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key", new LocalCompletionCache(10));
+
+    openAi.prompt("my_prompt");
+    String cachedResponse = openAi.prompt("my_prompt");
+
+    assertThat(cachedResponse)
+      .isEqualTo("my_open_ai_response");
+    assertThat(httpRequests.output())
+      .hasSize(1);
+  }
+
+  @Test
+  void differentPromptsAreNotAnsweredFromCache() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, IRRELEVANT_RESPONSE_BODY
+    ));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key", new LocalCompletionCache(10));
+
+    openAi.prompt("prompt 1");
+    openAi.prompt("prompt 2");
+
+    assertThat(httpRequests.output())
+      .hasSize(2);
+  }
+
+  @Test
+  void completionIncludesTokenUsage() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, new OpenAiResponseBody(
+        "irrelevant_id",
+        "irrelevant_object",
+        42,
+        "irrelevant_model",
+        new Usage(37, 183, 220),
+        new Choice[]{new Choice(
+          new Message("irrelevant role", "my_open_ai_response"),
+          "irrelevant_reason",
+          42
+        )}
+      )
+    ));
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    OpenAiClient.Completion completion = openAi.complete("my_prompt", OpenAiClient.Options.DEFAULT);
+
+    assertThat(completion)
+      .isEqualTo(new OpenAiClient.Completion("my_open_ai_response", 37, 183));
+  }
+
+  @Test
+  void cachedCompletionUsesNoTokens() {
+    OpenAiClient openAi = new OpenAiClient(createNulledHttpClient(), "irrelevant_api_key", new LocalCompletionCache(10));
+    openAi.complete("my_prompt", OpenAiClient.Options.DEFAULT);
+
+    OpenAiClient.Completion cached = openAi.complete("my_prompt", OpenAiClient.Options.DEFAULT);
+
+    assertThat(cached)
+      .isEqualTo(new OpenAiClient.Completion("my_open_ai_response", 0, 0));
+  }
+
+  @Test
+  void sendsRequestedModelAndMaxTokens() {
+    JsonHttpClient httpClient = createNulledHttpClient();
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    openAi.complete("my_prompt", new OpenAiClient.Options("my_model", 16));
+
+    assertThat(httpRequests.output().get(0).body())
+      .isEqualTo(new OpenAiRequestBody("my_model",
+        List.of(new OpenAiRequestBody.Message("user", "my_prompt")),
+        0.7,
+        16));
+  }
+
+  @Test
+  void sendsFrozenPrefixThenHistoryThenPrompt() {
+    JsonHttpClient httpClient = createNulledHttpClient();
+    var httpRequests = httpClient.trackRequests();
+    PromptPrefix prefix = PromptPrefix.of("my_version", "my_system_prompt");
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key", CompletionCache.disabled(), prefix);
+
+    openAi.complete(
+      List.of(new Exchange("earlier prompt", "earlier answer")),
+      "my_prompt",
+      OpenAiClient.Options.DEFAULT,
+      Deadline.none());
+
+    OpenAiRequestBody body = (OpenAiRequestBody) httpRequests.output().get(0).body();
+    assertThat(body.messages())
+      .containsExactly(
+        new OpenAiRequestBody.Message("system", "my_system_prompt"),
+        new OpenAiRequestBody.Message("user", "earlier prompt"),
+        new OpenAiRequestBody.Message("assistant", "earlier answer"),
+        new OpenAiRequestBody.Message("user", "my_prompt"));
+  }
+
+  @Test
+  void everyRequestStartsWithIdenticalPrefix() {
+    JsonHttpClient httpClient = createNulledHttpClient();
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key", CompletionCache.disabled(),
+      PromptPrefix.of("my_version", "my_system_prompt"));
+
+    openAi.complete(List.of(), "prompt 1", OpenAiClient.Options.DEFAULT, Deadline.none());
+    openAi.complete(List.of(new Exchange("prompt 1", "answer 1")), "prompt 2", OpenAiClient.Options.DEFAULT, Deadline.none());
+
+    assertThat(httpRequests.output())
+      .extracting(request -> ((OpenAiRequestBody) request.body()).messages().get(0))
+      .containsOnly(new OpenAiRequestBody.Message("system", "my_system_prompt"));
+  }
+
+  @Test
+  void completionIncludesCachedPromptTokens() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, new OpenAiResponseBody(
+        "irrelevant_id",
+        "irrelevant_object",
+        42,
+        "irrelevant_model",
+        new Usage(2006, 300, 2306, new PromptTokensDetails(1920)),
+        new Choice[]{new Choice(
+          new Message("irrelevant role", "my_open_ai_response"),
+          "irrelevant_reason",
+          42
+        )}
+      )
+    ));
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    OpenAiClient.Completion completion = openAi.complete("my_prompt", OpenAiClient.Options.DEFAULT);
+
+    assertThat(completion)
+      .isEqualTo(new OpenAiClient.Completion("my_open_ai_response", 2006, 300, 1920));
+  }
+
+  @Test
+  void retriesTransientFailures() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, List.of(
+        new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE),
+        new ResourceAccessException("connection reset"),
+        IRRELEVANT_RESPONSE_BODY)
+    ));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    String response = openAi.prompt("my_prompt", Deadline.after(Duration.ofSeconds(10)));
+
+    assertThat(response)
+      .isEqualTo("my_open_ai_response");
+    assertThat(httpRequests.output())
+      .hasSize(3);
+  }
+
+  @Test
+  void doesNotRetryClientErrors() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, List.of(
+        new HttpClientErrorException(HttpStatus.BAD_REQUEST),
+        IRRELEVANT_RESPONSE_BODY)
+    ));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    assertThatThrownBy(() -> openAi.prompt("my_prompt"))
+      .isInstanceOf(HttpClientErrorException.class);
+    assertThat(httpRequests.output())
+      .hasSize(1);
+  }
+
+  @Test
+  void givesUpAfterMaximumAttempts() {
+    HttpServerErrorException unavailable = new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, unavailable
+    ));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    assertThatThrownBy(() -> openAi.prompt("my_prompt"))
+      .isSameAs(unavailable);
+    assertThat(httpRequests.output())
+      .hasSize(OpenAiClient.MAX_ATTEMPTS);
+  }
+
+  @Test
+  void doesNotRetryWhenDeadlineLeavesNoTimeForBackoff() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, List.of(
+        new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE),
+        IRRELEVANT_RESPONSE_BODY)
+    ));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    assertThatThrownBy(() -> openAi.prompt("my_prompt", Deadline.after(OpenAiClient.RETRY_BACKOFF.dividedBy(2))))
+      .isInstanceOf(HttpServerErrorException.class);
+    assertThat(httpRequests.output())
+      .hasSize(1);
+  }
+
+  @Test
+  void abandonsRequestWhenDeadlineHasExpired() {
+    JsonHttpClient httpClient = createNulledHttpClient();
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+
+    assertThatThrownBy(() -> openAi.prompt("my_prompt", Deadline.after(Duration.ZERO)))
+      .isInstanceOf(DeadlineExceededException.class);
+    assertThat(httpRequests.output())
+      .isEmpty();
+  }
+
+  @Test
+  void failedPromptIsRecordedAsFlightRecorderEvent(@TempDir Path directory) throws Exception {
+    OpenAiClient openAi = new OpenAiClient(createNulledHttpClient(), "my_api_key");
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("dev.ted.stream.ai_chronicles.Prompt");
+      recording.start();
+
+      assertThatThrownBy(() -> openAi.complete("my_prompt", OpenAiClient.Options.DEFAULT, Deadline.after(Duration.ZERO)))
+        .isInstanceOf(DeadlineExceededException.class);
+
+      recording.stop();
+      Path file = directory.resolve("prompt.jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    }
+
+    assertThat(events)
+      .singleElement()
+      .satisfies(event -> {
+        assertThat(event.getString("outcome")).isEqualTo("DeadlineExceededException");
+        assertThat(event.getBoolean("cacheHit")).isFalse();
+      });
+  }
+
+  @Test
+  void warmingUpConnectionCostsNoTokens() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(OpenAiClient.MODELS_ENDPOINT, "{}"));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "my_api_key");
+
+    openAi.warmUpConnection(Deadline.none());
+
+    assertThat(httpRequests.output())
+      .containsExactly(JsonHttpRequest.createGet(OpenAiClient.MODELS_ENDPOINT,
+        Map.of("Authorization", "Bearer my_api_key")));
+  }
+
+  @Test
+  void warmingUpCodecSendsNothingAndPromptsNothing() {
+    JsonHttpClient httpClient = createNulledHttpClient();
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "irrelevant_api_key");
+    var prompts = openAi.trackPrompts();
+
+    openAi.warmUpCodec(10);
+
+    assertThat(httpRequests.output()).isEmpty();
+    assertThat(prompts.output()).isEmpty();
+  }
+
+  @Test
+  void streamedTurnEmitsGameEventsBeforeStreamEnds() {
+    // eight characters per chunk: the narrative is complete after 4 of the 23 chunks
+    OpenAiClient openAi = OpenAiClient.createNullStreaming(
+      "{\"narrative\": \"Sparks fly.\", \"attitudes\": [" +
+        "{\"robot\": \"Gizmo\", \"attitude\": \"alarmed\"}, " +
+        "{\"robot\": \"Bolt\", \"attitude\": \"curious\"}, " +
+        "{\"robot\": \"Sprocket\", \"attitude\": \"indifferent\"}]}",
+      Duration.ofMillis(10));
+    List<GameEvent> events = new ArrayList<>();
+    long[] narrativeNanos = new long[1];
+
+    OpenAiClient.Completion completion = openAi.streamTurn(List.of(), "Light the torch", OpenAiClient.Options.DEFAULT,
+      Deadline.none(), event -> {
+        if (event instanceof GameEvent.Narrative) narrativeNanos[0] = System.nanoTime();
+        events.add(event);
+      });
+    long end = System.nanoTime();
+
+    assertThat(events)
+      .hasSize(4)
+      .first()
+      .isEqualTo(new GameEvent.Narrative("Sparks fly."));
+    assertThat(Duration.ofNanos(end - narrativeNanos[0]))
+      .isGreaterThanOrEqualTo(Duration.ofMillis(150));
+    assertThat(completion.answer())
+      .isEqualTo("Sparks fly.");
+    assertThat(completion.promptTokens())
+      .isEqualTo(42);
+  }
+
+  @Test
+  void streamedTurnAsksForStreamedToolCall() {
+    JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, JsonHttpClient.StreamedResponse.of(List.of(
+        "{\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"{\\\"narrative\\\":\\\"Hi\\\"}\"}}]}}]}"))));
+    var httpRequests = httpClient.trackRequests();
+    OpenAiClient openAi = new OpenAiClient(httpClient, "my_api_key");
+
+    OpenAiClient.Completion completion = openAi.streamTurn(List.of(), "Say hi", OpenAiClient.Options.DEFAULT,
+      Deadline.none(), event -> {});
+
+    assertThat(completion.answer())
+      .isEqualTo("Hi");
+    OpenAiRequestBody body = (OpenAiRequestBody) httpRequests.output().get(0).body();
+    assertThat(body.stream())
+      .isTrue();
+    assertThat(body.tool_choice().function().name())
+      .isEqualTo("narrate_turn");
+  }
+
+  @Test
+  void streamedTurnFailsWhenStructuredOutputIsCutOff() {
+    OpenAiClient openAi = OpenAiClient.createNullStreaming("{\"narrative\": \"Sparks", Duration.ZERO);
+
+    assertThatThrownBy(() -> openAi.streamTurn(List.of(), "Light the torch", OpenAiClient.Options.DEFAULT,
+      Deadline.none(), event -> {}))
+      .isInstanceOf(GameStateParser.MalformedGameStateException.class);
+  }
+
+  @Test
+  void nulledClientCanWarmUp() {
+    OpenAiClient openAi = OpenAiClient.createNull();
+
+    openAi.warmUpConnection(Deadline.none());
+    openAi.warmUpCodec(1);
+  }
+
+  private static JsonHttpClient createNulledHttpClient() {
+    return JsonHttpClient.createNull(Map.of(
+      OpenAiClient.OPEN_AI_ENDPOINT, IRRELEVANT_RESPONSE_BODY
+    ));
+  }
+
   @NotNull
   private static OpenAiClient createOpenAiClient() {
     JsonHttpClient httpClient = JsonHttpClient.createNull(Map.of(
@@ -0,0 +1,178 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.infrastructure.JsonHttpClient.NulledEndpoint;
+import dev.ted.stream.ai_chronicles.infrastructure.PartitionedCompletionCache.CacheEntry;
+import dev.ted.stream.ai_chronicles.infrastructure.PartitionedCompletionCache.PeerFailure;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class PartitionedCompletionCacheTest {
+
+  private static final String SELF = "http://self";
+  private static final String PEER = "http://peer";
+  private static final String SECRET = "peer_secret";
+
+  @Test
+  void keysOwnedBySelfUseLocalPartition() {
+    LocalCompletionCache localPartition = new LocalCompletionCache(10);
+    JsonHttpClient peers = JsonHttpClient.createNull();
+    var requests = peers.trackRequests();
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(SELF), localPartition, peers, SECRET);
+
+    cache.put("key", "completion");
+
+    assertThat(cache.get("key")).contains("completion");
+    assertThat(localPartition.get("key")).contains("completion");
+    assertThat(requests.output()).isEmpty();
+  }
+
+  @Test
+  void keysOwnedByPeerAreFetchedFromPeer() {
+    JsonHttpClient peers = JsonHttpClient.createNull(Map.of(
+      PEER + "/cache/key", new CacheEntry("peer_completion")
+    ));
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), peers, SECRET);
+
+    assertThat(cache.get("key"))
+      .contains("peer_completion");
+  }
+
+  @Test
+  void keysOwnedByPeerAreStoredOnPeer() {
+    JsonHttpClient peers = JsonHttpClient.createNull(Map.of(
+      PEER + "/cache/key", new CacheEntry("completion")
+    ));
+    var requests = peers.trackRequests();
+    LocalCompletionCache localPartition = new LocalCompletionCache(10);
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), localPartition, peers, SECRET);
+
+    cache.put("key", "completion");
+
+    assertThat(requests.output())
+      .containsExactly(JsonHttpRequest.createPost(PEER + "/cache/key", Map.of("X-Cache-Secret", SECRET), new CacheEntry("completion")));
+    assertThat(localPartition.get("key"))
+      .isEmpty();
+  }
+
+  @Test
+  void peerLookupsSendSharedSecret() {
+    JsonHttpClient peers = JsonHttpClient.createNull(Map.of(
+      PEER + "/cache/key", new CacheEntry("peer_completion")
+    ));
+    var requests = peers.trackRequests();
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), peers, SECRET);
+
+    cache.get("key");
+
+    assertThat(requests.output())
+      .containsExactly(JsonHttpRequest.createGet(PEER + "/cache/key", Map.of("X-Cache-Secret", SECRET)));
+  }
+
+  @Test
+  void requiresSharedSecret() {
+    assertThatIllegalArgumentException()
+      .isThrownBy(() -> new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), JsonHttpClient.createNull(), " "));
+  }
+
+  @Test
+  void failedPeerLookupIsTreatedAsMiss() {
+    JsonHttpClient unreachablePeers = JsonHttpClient.createNull();
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), unreachablePeers, SECRET);
+
+    assertThat(cache.get("key"))
+      .isEmpty();
+  }
+
+  @Test
+  void failedPeerStoreIsIgnored() {
+    JsonHttpClient unreachablePeers = JsonHttpClient.createNull();
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), unreachablePeers, SECRET);
+
+    cache.put("key", "completion");
+  }
+
+  @Test
+  void peerNotFoundIsAnOrdinaryMiss() {
+    JsonHttpClient peers = JsonHttpClient.createNull(Map.of(
+      PEER + "/cache/key", NulledEndpoint.responding(new CacheEntry("irrelevant"))
+        .failingAtRate(1.0, () -> peerError(HttpStatus.NOT_FOUND))
+    ));
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), peers, SECRET);
+    var failures = cache.trackPeerFailures();
+
+    assertThat(cache.get("key"))
+      .isEmpty();
+    assertThat(failures.output())
+      .isEmpty();
+  }
+
+  @Test
+  void rejectedSecretIsWarnedAboutOncePerInterval() {
+    JsonHttpClient peers = JsonHttpClient.createNull(Map.of(
+      PEER + "/cache/key", NulledEndpoint.responding(new CacheEntry("irrelevant"))
+        .failingAtRate(1.0, () -> peerError(HttpStatus.FORBIDDEN))
+    ));
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), peers, SECRET);
+    var failures = cache.trackPeerFailures();
+
+    assertThat(cache.get("key")).isEmpty();
+    assertThat(cache.get("key")).isEmpty();
+
+    assertThat(failures.output())
+      .containsExactly(
+        new PeerFailure("lookup", PEER, true),
+        new PeerFailure("lookup", PEER, false));
+  }
+
+  @Test
+  void peerLookupGivesUpAtTheDeadline() {
+    JsonHttpClient slowPeers = JsonHttpClient.createNull(Map.of(
+      PEER + "/cache/key", NulledEndpoint.responding(new CacheEntry("peer_completion"))
+        .withLatency(Latency.fixed(Duration.ofSeconds(10)))
+    ));
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), slowPeers, SECRET);
+    var failures = cache.trackPeerFailures();
+    long start = System.nanoTime();
+
+    assertThat(cache.get("key", Deadline.after(Duration.ofMillis(100))))
+      .isEmpty();
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+      .isLessThan(Duration.ofSeconds(2));
+    assertThat(failures.output())
+      .as("running out of the say's time isn't the peer's fault")
+      .isEmpty();
+  }
+
+  @Test
+  void storesOnPeerInTheBackground() {
+    JsonHttpClient peers = JsonHttpClient.createNull(Map.of(
+      PEER + "/cache/key", new CacheEntry("completion")
+    ));
+    var requests = peers.trackRequests();
+    List<Runnable> pendingStores = new ArrayList<>();
+    PartitionedCompletionCache cache = new PartitionedCompletionCache(SELF, List.of(PEER), new LocalCompletionCache(10), peers, SECRET,
+      pendingStores::add);
+
+    cache.put("key", "completion");
+
+    assertThat(requests.output())
+      .isEmpty();
+    pendingStores.forEach(Runnable::run);
+    assertThat(requests.output())
+      .hasSize(1);
+  }
+
+  private static HttpClientErrorException peerError(HttpStatus status) {
+    return HttpClientErrorException.create(status, status.getReasonPhrase(), HttpHeaders.EMPTY, new byte[0], null);
+  }
+}
@@ -0,0 +1,63 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.infrastructure.PhaseHistograms.Summary;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Outcome;
+import dev.ted.stream.ai_chronicles.infrastructure.RequestPhases.Phase;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PhaseHistogramsTest {
+
+  private static final JsonHttpRequest IRRELEVANT_REQUEST = JsonHttpRequest.createGet("/irrelevant");
+
+  @Test
+  void unmeasuredPhasesAreRecordedAsZero() {
+    PhaseHistograms histograms = new PhaseHistograms();
+
+    histograms.record(new RequestPhases(IRRELEVANT_REQUEST, Map.of()));
+
+    assertThat(histograms.summarize(Outcome.OK).get(Phase.TLS))
+      .isEqualTo(new Summary(1, 0, 0.001, 0.001, 0.001));
+  }
+
+  @Test
+  void percentilesAreRoundedUpToPowerOfTwoMicroseconds() {
+    PhaseHistograms histograms = new PhaseHistograms();
+
+    for (int i = 0; i < 99; i++) {
+      histograms.record(phases(Duration.ofMillis(1)));
+    }
+    histograms.record(phases(Duration.ofMillis(100)));
+
+    Summary summary = histograms.summarize(Outcome.OK).get(Phase.TIME_TO_FIRST_BYTE);
+    assertThat(summary.count()).isEqualTo(100);
+    assertThat(summary.meanMillis()).isEqualTo(1.99);
+    assertThat(summary.p50Millis()).isEqualTo(1.024);
+    assertThat(summary.p99Millis()).isEqualTo(1.024);
+    assertThat(histograms.summarize(Outcome.OK).get(Phase.SERIALIZE).count()).isEqualTo(100);
+  }
+
+  @Test
+  void slowestPercentileShowsOutliers() {
+    PhaseHistograms histograms = new PhaseHistograms();
+
+    for (int i = 0; i < 90; i++) {
+      histograms.record(phases(Duration.ofMillis(1)));
+    }
+    for (int i = 0; i < 10; i++) {
+      histograms.record(phases(Duration.ofMillis(100)));
+    }
+
+    Summary summary = histograms.summarize(Outcome.OK).get(Phase.TIME_TO_FIRST_BYTE);
+    assertThat(summary.p90Millis()).isEqualTo(1.024);
+    assertThat(summary.p99Millis()).isEqualTo(131.072);
+  }
+
+  private static RequestPhases phases(Duration timeToFirstByte) {
+    return new RequestPhases(IRRELEVANT_REQUEST, Map.of(Phase.TIME_TO_FIRST_BYTE, timeToFirstByte));
+  }
+}
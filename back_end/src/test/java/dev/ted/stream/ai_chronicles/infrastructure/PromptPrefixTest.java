@@ -0,0 +1,43 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PromptPrefixTest {
+
+  @Test
+  void loadsVersionedPrefixFromClasspath() {
+    PromptPrefix prefix = PromptPrefix.fromResource("world-v1");
+
+    assertThat(prefix.version())
+      .isEqualTo("world-v1");
+    assertThat(prefix.messages())
+      .singleElement()
+      .satisfies(message -> {
+        assertThat(message.role()).isEqualTo("system");
+        assertThat(message.content()).startsWith("You are the narrator of The AI Chronicles");
+      });
+  }
+
+  @Test
+  void unknownVersionFailsFast() {
+    assertThatThrownBy(() -> PromptPrefix.fromResource("no-such-version"))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("No prompt prefix resource for version no-such-version: /prompts/no-such-version.txt");
+  }
+
+  @Test
+  void fingerprintChangesOnlyWithText() {
+    assertThat(PromptPrefix.of("v1", "same text").fingerprint())
+      .isEqualTo(PromptPrefix.of("v2", "same text").fingerprint())
+      .isNotEqualTo(PromptPrefix.of("v1", "different text").fingerprint());
+  }
+
+  @Test
+  void noPrefixHasNoMessages() {
+    assertThat(PromptPrefix.none().messages())
+      .isEmpty();
+  }
+}
@@ -0,0 +1,38 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Tag("benchmark")
+class TranscriptJournalBenchmark {
+
+  private static final Exchange EXCHANGE = new Exchange(
+    "Pretend you have crashed on a planet populated by robots. What is the first thing you say?",
+    "I would maintain a positive attitude and keep an open mind as I navigate this new and unfamiliar world.");
+
+  @Test
+  void recoveryTimeByJournalSize(@TempDir Path directory) {
+    for (int entries : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+      Path journalDirectory = directory.resolve("journal-" + entries);
+      try (TranscriptJournal journal = TranscriptJournal.create(journalDirectory)) {
+        for (int i = 0; i < entries; i++) {
+          journal.append("session-" + (i % 1000), EXCHANGE);
+        }
+      }
+
+      long start = System.nanoTime();
+      try (TranscriptJournal restarted = TranscriptJournal.create(journalDirectory, TranscriptJournal.DEFAULT_SEGMENT_SIZE, Duration.ofSeconds(1))) {
+        restarted.recover();
+      }
+      long elapsed = System.nanoTime() - start;
+
+      System.out.printf("Recovered %,d journal entries in %,d ms%n", entries, elapsed / 1_000_000);
+    }
+  }
+
+}
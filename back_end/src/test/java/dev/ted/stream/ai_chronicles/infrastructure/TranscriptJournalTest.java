@@ -0,0 +1,128 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.Transcript;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TranscriptJournalTest {
+
+  private static final Exchange EXCHANGE_1 = new Exchange("prompt 1", "answer 1");
+  private static final Exchange EXCHANGE_2 = new Exchange("prompt 2", "answer 2");
+  private static final Exchange EXCHANGE_3 = new Exchange("prompt 3", "answer 3");
+
+  @Test
+  void recoversAppendedExchangesBySession() {
+    TranscriptJournal journal = TranscriptJournal.createNull();
+
+    journal.append("session_a", EXCHANGE_1);
+    journal.append("session_b", EXCHANGE_2);
+    journal.append("session_a", EXCHANGE_3);
+
+    assertThat(journal.recover())
+      .isEqualTo(Map.of(
+        "session_a", new Transcript(List.of(EXCHANGE_1, EXCHANGE_3)),
+        "session_b", new Transcript(List.of(EXCHANGE_2))));
+  }
+
+  @Test
+  void rollsToNewSegmentWhenCurrentSegmentIsFull() {
+    TranscriptJournal journal = TranscriptJournal.createNull(64);
+
+    journal.append("session", EXCHANGE_1);
+    journal.append("session", EXCHANGE_2);
+    journal.append("session", EXCHANGE_3);
+
+    assertThat(journal.recover().get("session").exchanges())
+      .containsExactly(EXCHANGE_1, EXCHANGE_2, EXCHANGE_3);
+  }
+
+  @Test
+  void rejectsEntriesLargerThanSegment() {
+    TranscriptJournal journal = TranscriptJournal.createNull(32);
+
+    assertThatThrownBy(() -> journal.append("session", new Exchange("x".repeat(100), "answer")))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("larger than segment size of 32 bytes");
+  }
+
+  @Test
+  void recoversFromSnapshotPlusJournalTail() {
+    TranscriptJournal journal = TranscriptJournal.createNull();
+    journal.append("session", EXCHANGE_1);
+    journal.append("session", EXCHANGE_2);
+    journal.snapshot(Map.of("session", new Transcript(List.of(EXCHANGE_1, EXCHANGE_2))));
+
+    journal.append("session", EXCHANGE_3);
+
+    assertThat(journal.recover().get("session").exchanges())
+      .containsExactly(EXCHANGE_1, EXCHANGE_2, EXCHANGE_3);
+  }
+
+  @Test
+  void appendsCompleteWhenCommitted() {
+    TranscriptJournal journal = TranscriptJournal.createNull();
+
+    CompletableFuture<Void> first = journal.append("session", EXCHANGE_1);
+    CompletableFuture<Void> second = journal.append("session", EXCHANGE_2);
+    assertThat(first).isNotDone();
+    assertThat(second).isNotDone();
+
+    journal.commit();
+
+    assertThat(first).isDone();
+    assertThat(second).isDone();
+  }
+
+  @Test
+  void tracksEntries() {
+    TranscriptJournal journal = TranscriptJournal.createNull();
+    var entries = journal.trackEntries();
+
+    journal.append("session", EXCHANGE_1);
+
+    assertThat(entries.output())
+      .containsExactly(new TranscriptJournal.JournalEntry("session", EXCHANGE_1));
+  }
+
+  @Test
+  void survivesRestartOnDisk(@TempDir Path directory) {
+    try (TranscriptJournal journal = TranscriptJournal.create(directory, 1024, Duration.ofMillis(1))) {
+      journal.append("session", EXCHANGE_1).join();
+      journal.snapshot(Map.of("session", new Transcript(List.of(EXCHANGE_1))));
+      journal.append("session", EXCHANGE_2).join();
+    }
+
+    try (TranscriptJournal restarted = TranscriptJournal.create(directory, 1024, Duration.ofMillis(1))) {
+      assertThat(restarted.recover().get("session").exchanges())
+        .containsExactly(EXCHANGE_1, EXCHANGE_2);
+    }
+  }
+
+  @Test
+  void snapshotCompactsCoveredSegments(@TempDir Path directory) throws IOException {
+    try (TranscriptJournal journal = TranscriptJournal.create(directory, 64, Duration.ofMillis(1))) {
+      journal.append("session", EXCHANGE_1);
+      journal.append("session", EXCHANGE_2);
+      journal.append("session", EXCHANGE_3);
+      journal.snapshot(Map.of("session", new Transcript(List.of(EXCHANGE_1, EXCHANGE_2, EXCHANGE_3))));
+    }
+
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.map(path -> path.getFileName().toString()))
+        .containsExactlyInAnyOrder("snapshot.bin", "segment-000000000004.log");
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.Transcript;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Resident heap per idle session in each tier, for sizing nodes. Run with
+// -Pbenchmark; heap numbers are approximate (used heap after GC).
+@Tag("benchmark")
+class TranscriptStoreBenchmark {
+
+  private static final int SESSIONS = 10_000;
+  private static final int EXCHANGES_PER_SESSION = 20;
+
+  @Test
+  void residentMemoryPerIdleSession(@TempDir Path directory) {
+    Transcript transcript = transcriptOf(EXCHANGES_PER_SESSION);
+    Duration compressAfter = Duration.ofMinutes(2);
+    Duration spillAfter = Duration.ofMinutes(15);
+
+    long baseline = usedHeapAfterGc();
+    TranscriptStore store = TranscriptStore.create(directory, compressAfter, spillAfter);
+    for (int i = 0; i < SESSIONS; i++) {
+      // copy the strings, as sessions built from separate requests would
+      store.put("session-" + i, TranscriptStore.decompress(TranscriptStore.compress(transcript)));
+    }
+    report("hot", baseline, store);
+
+    store.sweep(System.nanoTime() + compressAfter.toNanos());
+    report("compressed", baseline, store);
+
+    long start = System.nanoTime();
+    store.sweep(System.nanoTime() + spillAfter.toNanos());
+    System.out.printf("Spilled %,d sessions in %,d ms%n", SESSIONS, (System.nanoTime() - start) / 1_000_000);
+    report("spilled", baseline, store);
+
+    start = System.nanoTime();
+    for (int i = 0; i < SESSIONS; i++) {
+      store.get("session-" + i);
+    }
+    System.out.printf("Rehydrated %,d spilled sessions in %,d ms (%,d us each)%n", SESSIONS,
+      (System.nanoTime() - start) / 1_000_000, (System.nanoTime() - start) / 1_000 / SESSIONS);
+  }
+
+  private static void report(String tier, long baseline, TranscriptStore store) {
+    long perSession = (usedHeapAfterGc() - baseline) / SESSIONS;
+    System.out.printf("%-10s %,7d bytes per session (%d exchanges) %s%n",
+      tier, perSession, EXCHANGES_PER_SESSION, store.stats());
+  }
+
+  private static Transcript transcriptOf(int exchanges) {
+    List<Exchange> list = new ArrayList<>();
+    for (int i = 0; i < exchanges; i++) {
+      list.add(new Exchange(
+        "Turn " + i + ": I walk towards the rusted gate and ask the robot guarding it what lies beyond.",
+        "The robot's optics flicker. \"Beyond the gate is the Foundry, traveller. Few who enter return with "
+          + "their circuits intact.\" It steps aside, gears grinding, and gestures at the path (turn " + i + ")."));
+    }
+    return new Transcript(list);
+  }
+
+  private static long usedHeapAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
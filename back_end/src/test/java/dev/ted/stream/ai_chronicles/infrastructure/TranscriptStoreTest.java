@@ -0,0 +1,204 @@
+package dev.ted.stream.ai_chronicles.infrastructure;
+
+import dev.ted.stream.ai_chronicles.domain.Exchange;
+import dev.ted.stream.ai_chronicles.domain.Transcript;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranscriptStoreTest {
+
+  private static final Duration COMPRESS_AFTER = Duration.ofMinutes(2);
+  private static final Duration SPILL_AFTER = Duration.ofMinutes(15);
+  private static final Transcript TRANSCRIPT = new Transcript(List.of(
+    new Exchange("prompt 1", "answer 1"),
+    new Exchange("prompt 2", "answer 2")));
+
+  @Test
+  void unknownSessionHasEmptyTranscript() {
+    TranscriptStore store = TranscriptStore.createNull();
+
+    assertThat(store.get("unknown"))
+      .isEqualTo(Transcript.empty());
+  }
+
+  @Test
+  void keepsRecentlyUsedTranscriptsAsTheyAre() {
+    TranscriptStore store = createStore();
+    store.put("my_session", TRANSCRIPT);
+
+    store.sweep(idleFor(Duration.ofMinutes(1)));
+
+    assertThat(store.stats())
+      .isEqualTo(new TranscriptStore.Stats(1, 0, 0, 0));
+  }
+
+  @Test
+  void compressesIdleTranscripts() {
+    TranscriptStore store = createStore();
+    store.put("my_session", TRANSCRIPT);
+
+    store.sweep(idleFor(COMPRESS_AFTER));
+
+    TranscriptStore.Stats stats = store.stats();
+    assertThat(stats.compressedSessions()).isEqualTo(1);
+    assertThat(stats.compressedBytes()).isPositive();
+  }
+
+  @Test
+  void spillsLongIdleTranscripts() {
+    TranscriptStore store = createStore();
+    store.put("my_session", TRANSCRIPT);
+
+    store.sweep(idleFor(COMPRESS_AFTER));
+    store.sweep(idleFor(SPILL_AFTER));
+
+    assertThat(store.stats())
+      .isEqualTo(new TranscriptStore.Stats(0, 0, 1, 0));
+  }
+
+  @Test
+  void sweepReturnsSessionsThatJustWentIdle() {
+    TranscriptStore store = createStore();
+    store.put("compressed_session", TRANSCRIPT);
+    store.put("spilled_session", TRANSCRIPT);
+    store.sweep(idleFor(COMPRESS_AFTER));
+    store.put("spilled_session", TRANSCRIPT);
+    store.put("hot_session", TRANSCRIPT);
+
+    List<String> wentIdle = store.sweep(idleFor(SPILL_AFTER));
+
+    assertThat(wentIdle)
+      .containsExactlyInAnyOrder("spilled_session", "hot_session");
+  }
+
+  @Test
+  void rehydratesCompressedAndSpilledTranscriptsOnGet() {
+    TranscriptStore store = createStore();
+    store.put("compressed_session", TRANSCRIPT);
+    store.put("spilled_session", TRANSCRIPT);
+    store.sweep(idleFor(COMPRESS_AFTER));
+    store.get("compressed_session");
+    store.sweep(idleFor(SPILL_AFTER));
+    store.put("compressed_session", TRANSCRIPT);
+    store.sweep(idleFor(COMPRESS_AFTER));
+
+    assertThat(store.get("compressed_session")).isEqualTo(TRANSCRIPT);
+    assertThat(store.get("spilled_session")).isEqualTo(TRANSCRIPT);
+    assertThat(store.stats())
+      .isEqualTo(new TranscriptStore.Stats(2, 0, 0, 0));
+  }
+
+  @Test
+  void snapshotIncludesEveryTierWithoutRehydrating() {
+    TranscriptStore store = createStore();
+    store.put("spilled_session", TRANSCRIPT);
+    store.sweep(idleFor(SPILL_AFTER));
+    store.put("hot_session", TRANSCRIPT);
+
+    assertThat(store.snapshot())
+      .isEqualTo(Map.of("spilled_session", TRANSCRIPT, "hot_session", TRANSCRIPT));
+    assertThat(store.stats().spilledSessions())
+      .isEqualTo(1);
+  }
+
+  @Test
+  void snapshotUsesPrefetchedSpilledTranscripts(@TempDir Path directory) throws IOException {
+    TranscriptStore store = TranscriptStore.create(directory, COMPRESS_AFTER, SPILL_AFTER);
+    store.put("spilled_session", TRANSCRIPT);
+    store.sweep(idleFor(SPILL_AFTER));
+    TranscriptStore.Prefetched prefetched = store.prefetchSpilled();
+    for (Path file : spillFiles(directory)) {
+      Files.delete(file);
+    }
+
+    assertThat(store.snapshot(prefetched))
+      .isEqualTo(Map.of("spilled_session", TRANSCRIPT));
+  }
+
+  @Test
+  void snapshotIgnoresPrefetchedTranscriptsReplacedSince() {
+    TranscriptStore store = createStore();
+    store.put("my_session", TRANSCRIPT);
+    store.sweep(idleFor(SPILL_AFTER));
+    TranscriptStore.Prefetched prefetched = store.prefetchSpilled();
+    Transcript newer = TRANSCRIPT.add(new Exchange("prompt 3", "answer 3"));
+
+    store.put("my_session", newer);
+
+    assertThat(store.snapshot(prefetched))
+      .isEqualTo(Map.of("my_session", newer));
+  }
+
+  @Test
+  void inMemoryStoreCompressesButNeverSpills() {
+    TranscriptStore store = TranscriptStore.createInMemory(COMPRESS_AFTER);
+    store.put("my_session", TRANSCRIPT);
+
+    store.sweep(idleFor(Duration.ofDays(365)));
+
+    assertThat(store.stats().compressedSessions())
+      .isEqualTo(1);
+    assertThat(store.get("my_session"))
+      .isEqualTo(TRANSCRIPT);
+  }
+
+  @Test
+  void spillFilesAreNotNamedAfterSessionId(@TempDir Path directory) throws IOException {
+    TranscriptStore store = TranscriptStore.create(directory, COMPRESS_AFTER, SPILL_AFTER);
+    store.put("../../etc/passwd", TRANSCRIPT);
+
+    store.sweep(idleFor(SPILL_AFTER));
+
+    assertThat(spillFiles(directory))
+      .singleElement()
+      .satisfies(file -> assertThat(file.getFileName().toString()).matches("[0-9]+\\.transcript"));
+    assertThat(store.get("../../etc/passwd"))
+      .isEqualTo(TRANSCRIPT);
+    assertThat(spillFiles(directory))
+      .isEmpty();
+  }
+
+  @Test
+  void clearsStaleSpillFilesAtStartup(@TempDir Path directory) throws IOException {
+    TranscriptStore before = TranscriptStore.create(directory, COMPRESS_AFTER, SPILL_AFTER);
+    before.put("my_session", TRANSCRIPT);
+    before.sweep(idleFor(SPILL_AFTER));
+
+    TranscriptStore.create(directory, COMPRESS_AFTER, SPILL_AFTER);
+
+    assertThat(spillFiles(directory))
+      .isEmpty();
+  }
+
+  @Test
+  void compressionRoundTripsUnicode() {
+    Transcript transcript = new Transcript(List.of(new Exchange("Grüße 🤖", "こんにちは")));
+
+    assertThat(TranscriptStore.decompress(TranscriptStore.compress(transcript)))
+      .isEqualTo(transcript);
+  }
+
+  private TranscriptStore createStore() {
+    return TranscriptStore.createNull(COMPRESS_AFTER, SPILL_AFTER);
+  }
+
+  private static long idleFor(Duration idle) {
+    return System.nanoTime() + idle.toNanos();
+  }
+
+  private static List<Path> spillFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.toList();
+    }
+  }
+}